@@ -29,6 +29,7 @@ val dcm4cheVersion = "5.34.2"
 
 val ioVersion = "2.21.0"
 val cliVersion = "1.11.0"
+val compressVersion = "1.28.0"
 
 val slf4jVersion = "2.0.17"
 val logbackVersion = "1.5.32"
@@ -43,6 +44,7 @@ dependencies {
 
     implementation("commons-io:commons-io:$ioVersion")
     implementation("commons-cli:commons-cli:$cliVersion")
+    implementation("org.apache.commons:commons-compress:$compressVersion")
 
     implementation("org.slf4j:slf4j-api:$slf4jVersion")
     implementation("ch.qos.logback:logback-classic:$logbackVersion")
@@ -86,6 +88,51 @@ tasks.check {
     dependsOn(tasks.jacocoTestCoverageVerification)
 }
 
+sourceSets {
+    create("benchmark") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+    create("generator") {
+        // classes only, the main resources contain the generated output
+        compileClasspath += files(sourceSets.main.get().output.classesDirs)
+        runtimeClasspath += files(sourceSets.main.get().output.classesDirs)
+    }
+}
+
+val benchmarkImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
+val generatorImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
+val generateKeywordTable by tasks.registering(JavaExec::class) {
+    description = "Generates the tag keyword table of the standard dictionary from dcm4che."
+    group = "build"
+    val outputDir = layout.buildDirectory.dir("generated/resources/keywords")
+    classpath = sourceSets["generator"].runtimeClasspath
+    mainClass.set("de.famst.dicom.visualizer.KeywordTableGenerator")
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(outputDir.get().file("de/famst/dicom/visualizer/keywords.bin").asFile.path)
+    })
+    outputs.dir(outputDir)
+}
+
+sourceSets.main {
+    resources.srcDir(generateKeywordTable)
+}
+
+tasks.register<JavaExec>("benchmark") {
+    description = "Runs a benchmark from the benchmark source set, selected with -Pbenchmark=<class>."
+    group = "verification"
+    classpath = sourceSets["benchmark"].runtimeClasspath
+    mainClass.set(providers.gradleProperty("benchmark").map { "de.famst.dicom.visualizer.$it" })
+    args = providers.gradleProperty("benchmarkArgs").map { it.split(" ") }.getOrElse(emptyList())
+    systemProperty("logback.configurationFile", file("src/benchmark/resources/logback-benchmark.xml").path)
+    maxHeapSize = "1g"
+}
 
 application {
     mainClass.set("de.famst.dicom.visualizer.Main")
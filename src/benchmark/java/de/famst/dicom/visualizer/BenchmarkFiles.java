@@ -0,0 +1,104 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Utility class writing synthetic DICOM files for the benchmarks.
+ * Existing files are reused, so large files are only written once per work directory.
+ */
+public final class BenchmarkFiles
+{
+  private static final int FRAGMENT_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Private constructor to prevent instantiation of utility class.
+   */
+  private BenchmarkFiles()
+  {
+    throw new AssertionError("Utility class should not be instantiated");
+  }
+
+  /**
+   * Writes a CT-like file with native pixel data of the given size.
+   *
+   * @param path the file to write
+   * @param pixelBytes the length of the pixel data in bytes
+   * @return the path of the file
+   * @throws IOException if writing fails
+   */
+  public static Path writeNative(Path path, int pixelBytes) throws IOException
+  {
+    if (Files.exists(path))
+    {
+      return path;
+    }
+
+    Attributes attrs = createAttributes(path.getFileName().toString());
+    attrs.setBytes(Tag.PixelData, VR.OW, new byte[pixelBytes]);
+
+    write(path, attrs, UID.ExplicitVRLittleEndian);
+    return path;
+  }
+
+  /**
+   * Writes a file with encapsulated pixel data of roughly the given size, split into fragments
+   * of at most 64 MiB that share one buffer, so even multi-GB files need little heap.
+   *
+   * @param path the file to write
+   * @param pixelBytes the total length of the fragments in bytes
+   * @return the path of the file
+   * @throws IOException if writing fails
+   */
+  public static Path writeEncapsulated(Path path, long pixelBytes) throws IOException
+  {
+    if (Files.exists(path))
+    {
+      return path;
+    }
+
+    int fragmentSize = (int) Math.min(FRAGMENT_SIZE, pixelBytes);
+    int fragmentCount = (int) Math.max(1, pixelBytes / fragmentSize);
+    byte[] fragment = new byte[fragmentSize];
+
+    Attributes attrs = createAttributes(path.getFileName().toString());
+    Fragments frags = attrs.newFragments(Tag.PixelData, VR.OB, fragmentCount + 1);
+    frags.add(new byte[0]);
+    for (int i = 0; i < fragmentCount; i++)
+    {
+      frags.add(fragment);
+    }
+
+    write(path, attrs, UID.JPEGBaseline8Bit);
+    return path;
+  }
+
+  private static Attributes createAttributes(String name)
+  {
+    Attributes attrs = new Attributes();
+    attrs.setString(Tag.PatientName, VR.PN, "Benchmark^Patient");
+    attrs.setString(Tag.PatientID, VR.LO, "BENCH");
+    attrs.setString(Tag.StudyInstanceUID, VR.UI, "1.2.826.0.1.3680043.2.1125.1");
+    attrs.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.826.0.1.3680043.2.1125.1.1");
+    attrs.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+    attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.826.0.1.3680043.2.1125.1.1." + Math.abs(name.hashCode()));
+    attrs.setString(Tag.Modality, VR.CS, "CT");
+    return attrs;
+  }
+
+  private static void write(Path path, Attributes attrs, String transferSyntax) throws IOException
+  {
+    try (DicomOutputStream dos = new DicomOutputStream(path.toFile()))
+    {
+      dos.writeDataset(attrs.createFileMetaInformation(transferSyntax), attrs);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package de.famst.dicom.visualizer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Benchmark comparing the buffered stream input path of the {@link DicomParser} with the
+ * memory-mapped one on a small, a medium and a multi-GB file.
+ * <p>
+ * Arguments: [work directory] [size of the large file in MiB, default 3072]
+ */
+public final class InputPathBenchmark
+{
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int MEASURED_ITERATIONS = 20;
+  private static final long MIB = 1024L * 1024L;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private InputPathBenchmark()
+  {
+    throw new AssertionError("Benchmark should not be instantiated");
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    Path workDir = args.length > 0 ? Paths.get(args[0]) : Files.createTempDirectory("dicom-benchmark");
+    long largeMiB = args.length > 1 ? Long.parseLong(args[1]) : 3072;
+
+    Path small = BenchmarkFiles.writeNative(workDir.resolve("small.dcm"), 512 * 512 * 2);
+    Path medium = BenchmarkFiles.writeEncapsulated(workDir.resolve("medium.dcm"), 256 * MIB);
+    Path large = BenchmarkFiles.writeEncapsulated(workDir.resolve("large-" + largeMiB + ".dcm"), largeMiB * MIB);
+
+    System.out.printf("%-20s %-8s %12s %14s%n", "file", "input", "ms/parse", "bytes alloc");
+
+    for (Path file : new Path[]{small, medium, large})
+    {
+      run(file, false);
+      run(file, true);
+    }
+  }
+
+  private static void run(Path file, boolean memoryMapped)
+  {
+    ParserOptions options = new ParserOptions();
+    options.setStructureOnly(true);
+    options.setMemoryMapped(memoryMapped);
+
+    String fileName = file.toAbsolutePath().toString();
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++)
+    {
+      DicomParser.parseFile(fileName, options);
+    }
+
+    long allocated = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++)
+    {
+      allocated += DicomParser.parseFile(fileName, options).getAllocatedBytes();
+    }
+    double millis = (System.nanoTime() - start) / 1.0e6 / MEASURED_ITERATIONS;
+
+    System.out.printf("%-20s %-8s %12.3f %14d%n", file.getFileName(), memoryMapped ? "mapped" : "stream",
+      millis, allocated / MEASURED_ITERATIONS);
+  }
+}
@@ -0,0 +1,135 @@
+package de.famst.dicom.visualizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.log;
+
+/**
+ * Benchmark of the {@link LayoutEngine} on synthetic entry tables, without any file I/O.
+ * Compares the previous multi-pass per-file layout with the single-pass per-file layout and the
+ * two-phase study-wide layout.
+ * <p>
+ * Arguments: [number of files, default 3000] [entries per file, default 200]
+ */
+public final class LayoutBenchmark
+{
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int MEASURED_ITERATIONS = 20;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private LayoutBenchmark()
+  {
+    throw new AssertionError("Benchmark should not be instantiated");
+  }
+
+  public static void main(String[] args)
+  {
+    int files = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+    int entries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    List<DicomEntryTable> tables = createTables(files, entries);
+    long total = (long) files * entries;
+
+    System.out.printf("%-12s %12s %12s%n", "layout", "ms/study", "ns/entry");
+
+    report("multi-pass", total, () -> tables.forEach(LayoutBenchmark::multiPassLayout));
+    report("per-file", total, () -> tables.forEach(table -> LayoutEngine.forFile(table).layout(table)));
+    report("study", total, () -> {
+      LayoutEngine engine = LayoutEngine.forStudy(tables);
+      tables.forEach(engine::layout);
+    });
+  }
+
+  private static void report(String name, long entries, Runnable layout)
+  {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++)
+    {
+      layout.run();
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++)
+    {
+      layout.run();
+    }
+    long nanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+    System.out.printf("%-12s %12.3f %12.2f%n", name, nanos / 1.0e6, (double) nanos / entries);
+  }
+
+  /**
+   * Creates tables of mostly short values, some sequences and items of undefined length and a
+   * large pixel data element at the end.
+   */
+  private static List<DicomEntryTable> createTables(int files, int entries)
+  {
+    Random random = new Random(42);
+    List<DicomEntryTable> tables = new ArrayList<>(files);
+
+    for (int file = 0; file < files; file++)
+    {
+      DicomEntryTable table = new DicomEntryTable(entries);
+      long offset = 132;
+
+      for (int row = 0; row < entries - 1; row++)
+      {
+        int length = random.nextInt(20) == 0 ? -1 : random.nextInt(64);
+        table.add(0x00080000 + row * 2, null, 0, offset, length);
+        offset += 8 + Math.max(length, 0);
+      }
+      table.add(0x7FE00010, null, 0, offset, 512 * 512 * 2);
+
+      tables.add(table);
+    }
+
+    return tables;
+  }
+
+  /**
+   * The previous per-file layout, with separate passes for clamping, maximum, minimum and scaling.
+   */
+  private static float multiPassLayout(DicomEntryTable table)
+  {
+    int size = table.size();
+
+    for (int row = 0; row < size; row++)
+    {
+      int valueLength = table.getLength(row);
+      float v = valueLength == -1 ? 1.0f : (float) (valueLength & 0xFFFFFFFFL);
+      table.setLogLength(row, Math.max(v, 1.0f));
+    }
+
+    float maxV = table.getLogLength(0);
+    for (int row = 1; row < size; row++)
+    {
+      maxV = Math.max(maxV, table.getLogLength(row));
+    }
+    table.setLogPosition(size - 1, maxV);
+
+    float minV = table.getLogLength(0);
+    for (int row = 1; row < size; row++)
+    {
+      minV = Math.min(minV, table.getLogLength(row));
+    }
+
+    float minT = 1.0f;
+    float maxT = 70.0f;
+    float pos = 0.0f;
+
+    for (int row = 0; row < size; row++)
+    {
+      double v = table.getLogLength(row);
+      v = (maxT - minT) * (log(v) - log(minV)) / (log(1.2E7f) - minT) + minT;
+      table.setLogLength(row, (float) v);
+      table.setLogPosition(row, pos);
+
+      pos = pos + (float) v;
+    }
+
+    return pos;
+  }
+}
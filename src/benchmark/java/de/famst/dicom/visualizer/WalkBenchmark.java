@@ -0,0 +1,77 @@
+package de.famst.dicom.visualizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark comparing the sequential walk with the DICM prefix filter against the parallel
+ * {@link DicomDirectoryWalker} on a generated directory tree, or on an existing one.
+ * <p>
+ * Arguments: [directory to walk, default a generated tree] [parallelism, default
+ * {@link DicomDirectoryWalker#DEFAULT_PARALLELISM}]
+ */
+public final class WalkBenchmark
+{
+  private static final int MEASURED_ITERATIONS = 5;
+  private static final int BRANCHES = 8;
+  private static final int FILES_PER_DIRECTORY = 50;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private WalkBenchmark()
+  {
+    throw new AssertionError("Benchmark should not be instantiated");
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    Path root = args.length > 0 ? Paths.get(args[0]) : createTree(Files.createTempDirectory("dicom-walk"));
+    int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : DicomDirectoryWalker.DEFAULT_PARALLELISM;
+
+    System.out.printf("%-12s %10s %10s %14s %14s%n", "walk", "ms/walk", "files", "dirs/s", "candidates/s");
+
+    for (int i = 0; i < MEASURED_ITERATIONS; i++)
+    {
+      long start = System.nanoTime();
+      long files;
+      try (Stream<Path> paths = Files.walk(root))
+      {
+        files = paths.filter(Files::isRegularFile).filter(DicomFileDetector::isDCMFile).count();
+      }
+      double millis = (System.nanoTime() - start) / 1.0e6;
+      System.out.printf("%-12s %10.1f %10d %14s %14s%n", "sequential", millis, files, "-", "-");
+
+      DicomDirectoryWalker walker = new DicomDirectoryWalker(parallelism);
+      files = walker.walk(root, DetectedDicomFile::getPath).size();
+      System.out.printf("%-12s %10.1f %10d %14.1f %14.1f%n", "parallel", walker.getElapsedNanos() / 1.0e6, files,
+        walker.getDirectoriesPerSecond(), walker.getCandidatesPerSecond());
+    }
+  }
+
+  /**
+   * Creates a tree of three directory levels with small DICOM files and some other files.
+   */
+  private static Path createTree(Path root) throws IOException
+  {
+    Path template = BenchmarkFiles.writeNative(root.resolve("template.dcm"), 64);
+
+    for (int i = 0; i < BRANCHES; i++)
+    {
+      for (int j = 0; j < BRANCHES; j++)
+      {
+        Path directory = Files.createDirectories(root.resolve("p" + i).resolve("s" + j));
+        for (int k = 0; k < FILES_PER_DIRECTORY; k++)
+        {
+          Files.copy(template, directory.resolve("IM" + k + ".dcm"));
+        }
+        Files.writeString(directory.resolve("README.txt"), "not a DICOM file");
+      }
+    }
+
+    return root;
+  }
+}
@@ -0,0 +1,67 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.ElementDictionary;
+import org.dcm4che3.data.Tag;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates the {@link KeywordTable} resource from the tags and keywords of the dcm4che standard
+ * dictionary. Runs as part of the build, see the generateKeywordTable task.
+ * <p>
+ * Arguments: [output file]
+ */
+public final class KeywordTableGenerator
+{
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private KeywordTableGenerator()
+  {
+    throw new AssertionError("Generator should not be instantiated");
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    if (args.length != 1)
+    {
+      throw new IllegalArgumentException("Output file required");
+    }
+
+    // ordered like the binary search of the table, by signed tag value
+    Map<Integer, String> table = new TreeMap<>();
+    for (Field field : Tag.class.getFields())
+    {
+      int modifiers = field.getModifiers();
+      if (field.getType() == int.class && Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers))
+      {
+        int tag = field.getInt(null);
+        String keyword = ElementDictionary.keywordOf(tag, null);
+        if (keyword != null && !keyword.isEmpty())
+        {
+          table.put(tag, keyword);
+        }
+      }
+    }
+
+    int[] tags = table.keySet().stream().mapToInt(Integer::intValue).toArray();
+    String[] keywords = table.values().toArray(new String[0]);
+
+    Path output = Paths.get(args[0]);
+    Files.createDirectories(output.toAbsolutePath().getParent());
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output))))
+    {
+      KeywordTable.write(out, tags, keywords);
+    }
+
+    System.out.printf("Generated [%d] keywords to [%s]%n", tags.length, output);
+  }
+}
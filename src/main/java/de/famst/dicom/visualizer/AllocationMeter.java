@@ -0,0 +1,63 @@
+package de.famst.dicom.visualizer;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Utility class reading the number of bytes allocated by the current thread.
+ * Used to publish the allocation per parsed file so regressions become visible.
+ */
+public final class AllocationMeter
+{
+  private static final com.sun.management.ThreadMXBean THREAD_BEAN = lookupThreadBean();
+
+  /**
+   * Private constructor to prevent instantiation of utility class.
+   */
+  private AllocationMeter()
+  {
+    throw new AssertionError("Utility class should not be instantiated");
+  }
+
+  /**
+   * Checks if the JVM supports measuring the allocation of a thread.
+   *
+   * @return true if allocations can be measured
+   */
+  public static boolean isSupported()
+  {
+    return THREAD_BEAN != null;
+  }
+
+  /**
+   * Gets the total number of bytes allocated by the current thread so far.
+   *
+   * @return the allocated bytes, or -1 if not supported by the JVM
+   */
+  public static long currentThreadAllocatedBytes()
+  {
+    if (THREAD_BEAN == null)
+    {
+      return -1;
+    }
+
+    return THREAD_BEAN.getCurrentThreadAllocatedBytes();
+  }
+
+  private static com.sun.management.ThreadMXBean lookupThreadBean()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+    {
+      return null;
+    }
+
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    if (!threadBean.isThreadAllocatedMemorySupported())
+    {
+      return null;
+    }
+
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    return threadBean;
+  }
+}
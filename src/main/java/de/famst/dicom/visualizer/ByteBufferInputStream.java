@@ -0,0 +1,100 @@
+package de.famst.dicom.visualizer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining content of a {@link ByteBuffer}.
+ * Skips only move the position of the buffer and mark and reset are supported,
+ * so no buffering stream is needed on top.
+ */
+public class ByteBufferInputStream extends InputStream
+{
+  private final ByteBuffer buffer;
+
+  /**
+   * Creates a stream reading the given buffer from its position to its limit.
+   * The stream moves the position of the buffer.
+   *
+   * @param buffer the buffer to read
+   * @throws IllegalArgumentException if the buffer is null
+   */
+  public ByteBufferInputStream(ByteBuffer buffer)
+  {
+    if (buffer == null)
+    {
+      throw new IllegalArgumentException("Buffer cannot be null");
+    }
+
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read()
+  {
+    if (!buffer.hasRemaining())
+    {
+      return -1;
+    }
+
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len)
+  {
+    if (off < 0 || len < 0 || len > b.length - off)
+    {
+      throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len + ") out of bounds for length " + b.length);
+    }
+    if (len == 0)
+    {
+      return 0;
+    }
+    if (!buffer.hasRemaining())
+    {
+      return -1;
+    }
+
+    int count = Math.min(len, buffer.remaining());
+    buffer.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n)
+  {
+    if (n <= 0)
+    {
+      return 0;
+    }
+
+    int skipped = (int) Math.min(n, buffer.remaining());
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available()
+  {
+    return buffer.remaining();
+  }
+
+  @Override
+  public boolean markSupported()
+  {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readLimit)
+  {
+    buffer.mark();
+  }
+
+  @Override
+  public synchronized void reset()
+  {
+    buffer.reset();
+  }
+}
@@ -0,0 +1,101 @@
+package de.famst.dicom.visualizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A file recognized as DICOM by the {@link DicomFileDetector}, kept open for parsing.
+ * It holds the channel the detection was read from, positioned behind the preamble and the DICM
+ * prefix, together with those first bytes and the file attributes collected before. Parsing or
+ * the pre-scan replays the first bytes and continues on the channel, so the file is neither checked nor opened
+ * a second time.
+ * <p>
+ * The file can be read once, the reading stream takes over the channel. Closing the file as well
+ * releases the channel in any case.
+ */
+public final class DetectedDicomFile implements Closeable
+{
+  private final Path path;
+  private final BasicFileAttributes attributes;
+  private final FileChannel channel;
+  private final byte[] preamble;
+  private boolean read;
+
+  DetectedDicomFile(Path path, BasicFileAttributes attributes, FileChannel channel, byte[] preamble)
+  {
+    this.path = path;
+    this.attributes = attributes;
+    this.channel = channel;
+    this.preamble = preamble;
+  }
+
+  /**
+   * Gets the path of the file.
+   *
+   * @return the path as given to the detector
+   */
+  public Path getPath()
+  {
+    return path;
+  }
+
+  /**
+   * Gets the attributes of the file as collected before the detection.
+   *
+   * @return the file attributes
+   */
+  public BasicFileAttributes getAttributes()
+  {
+    return attributes;
+  }
+
+  /**
+   * Opens the stream reading the file from its start. The first bytes are taken from the
+   * detection, the rest is read from the open channel.
+   *
+   * @param memoryMapped true to read the channel through memory mapping
+   * @return the stream, which closes the channel
+   * @throws IOException if the channel cannot be read
+   * @throws IllegalStateException if the file was already read
+   */
+  InputStream openStream(boolean memoryMapped) throws IOException
+  {
+    if (read)
+    {
+      throw new IllegalStateException("File was already read: " + path);
+    }
+    read = true;
+
+    if (memoryMapped)
+    {
+      // the mapping covers the first bytes as well, reading them again causes no system call
+      channel.position(0);
+      return new MappedFileInputStream(channel);
+    }
+
+    return new SequenceInputStream(new ByteArrayInputStream(preamble), Channels.newInputStream(channel));
+  }
+
+  /**
+   * Closes the channel, unless a stream reading the file has already closed it.
+   */
+  @Override
+  public void close()
+  {
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      // nothing was written, a failure to release the read-only channel loses no data
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package de.famst.dicom.visualizer;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Utility class to read the DICOM members of ZIP and TAR archives without extracting them.
+ * ZIP archives are read through their central directory, opening each entry directly.
+ * TAR archives (optionally gzip compressed) are streamed sequentially in a single pass.
+ * Members are detected with the DICM prefix check of {@link DicomFileDetector}.
+ */
+public final class DicomArchiveReader
+{
+  private static final Logger LOG = LoggerFactory.getLogger(DicomArchiveReader.class);
+
+  private static final byte[] ZIP_MAGIC = new byte[]{'P', 'K', 3, 4};
+  private static final byte[] ZIP_EMPTY_MAGIC = new byte[]{'P', 'K', 5, 6};
+  private static final byte[] GZIP_MAGIC = new byte[]{(byte) 0x1F, (byte) 0x8B};
+  private static final byte[] TAR_MAGIC = new byte[]{'u', 's', 't', 'a', 'r'};
+  private static final int TAR_MAGIC_OFFSET = 257;
+  private static final int SIGNATURE_LENGTH = TAR_MAGIC_OFFSET + TAR_MAGIC.length;
+
+  /**
+   * Supported archive formats.
+   */
+  public enum Format
+  {
+    ZIP,
+    TAR,
+    TAR_GZ
+  }
+
+  /**
+   * Callback receiving the DICOM members of an archive.
+   */
+  @FunctionalInterface
+  public interface MemberHandler
+  {
+    /**
+     * Handles one DICOM member. The stream is positioned at the start of the member,
+     * supports mark and reset and is only valid during the call.
+     *
+     * @param name the name of the member inside the archive
+     * @param inStream the content of the member
+     * @throws IOException if the member cannot be read
+     */
+    void accept(String name, InputStream inStream) throws IOException;
+  }
+
+  /**
+   * Private constructor to prevent instantiation of utility class.
+   */
+  private DicomArchiveReader()
+  {
+    throw new AssertionError("Utility class should not be instantiated");
+  }
+
+  /**
+   * Detects the archive format of a file from its signature bytes.
+   * Gzip compressed files are only taken as TAR archives if their name ends with .tar.gz or .tgz.
+   *
+   * @param filePath the path to the file to check
+   * @return the archive format, or null if the file is not a supported archive
+   */
+  public static Format detectFormat(Path filePath)
+  {
+    if (filePath == null || !Files.isRegularFile(filePath))
+    {
+      return null;
+    }
+
+    byte[] signature;
+    try (InputStream inStream = Files.newInputStream(filePath))
+    {
+      signature = inStream.readNBytes(SIGNATURE_LENGTH);
+    }
+    catch (IOException e)
+    {
+      LOG.warn("Error reading file [{}]: {}", filePath, e.getMessage());
+      return null;
+    }
+
+    if (startsWith(signature, 0, ZIP_MAGIC) || startsWith(signature, 0, ZIP_EMPTY_MAGIC))
+    {
+      return Format.ZIP;
+    }
+    if (startsWith(signature, TAR_MAGIC_OFFSET, TAR_MAGIC))
+    {
+      return Format.TAR;
+    }
+
+    String name = filePath.getFileName().toString().toLowerCase();
+    if (startsWith(signature, 0, GZIP_MAGIC) && (name.endsWith(".tar.gz") || name.endsWith(".tgz")))
+    {
+      return Format.TAR_GZ;
+    }
+
+    return null;
+  }
+
+  /**
+   * Checks if a file is a supported archive.
+   *
+   * @param filePath the path to the file to check
+   * @return true if the file is a ZIP or TAR archive
+   */
+  public static boolean isArchive(Path filePath)
+  {
+    return detectFormat(filePath) != null;
+  }
+
+  /**
+   * Passes every DICOM member of an archive to the handler, in archive order.
+   * Members without the DICM prefix and directory entries are skipped.
+   *
+   * @param archivePath the path to the archive
+   * @param handler the handler receiving the DICOM members
+   * @return the number of DICOM members passed to the handler
+   * @throws IOException if the archive cannot be read
+   * @throws IllegalArgumentException if the path or handler is null, or the file is not a supported archive
+   */
+  public static int forEachDicomMember(Path archivePath, MemberHandler handler) throws IOException
+  {
+    if (handler == null)
+    {
+      throw new IllegalArgumentException("Member handler cannot be null");
+    }
+
+    Format format = detectFormat(archivePath);
+    if (format == null)
+    {
+      throw new IllegalArgumentException("Not a supported archive: " + archivePath);
+    }
+
+    LOG.debug("Reading {} archive [{}]", format, archivePath);
+
+    if (format == Format.ZIP)
+    {
+      return readZip(archivePath, handler);
+    }
+
+    try (InputStream fileStream = new BufferedInputStream(Files.newInputStream(archivePath)))
+    {
+      InputStream tarStream = format == Format.TAR_GZ ? new GZIPInputStream(fileStream) : fileStream;
+      return readTar(new TarArchiveInputStream(tarStream), handler);
+    }
+  }
+
+  /**
+   * Reads the members of a ZIP archive through random access to its entries.
+   */
+  private static int readZip(Path archivePath, MemberHandler handler) throws IOException
+  {
+    int count = 0;
+
+    try (ZipFile zipFile = new ZipFile(archivePath.toFile()))
+    {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements())
+      {
+        ZipEntry entry = entries.nextElement();
+        if (entry.isDirectory())
+        {
+          continue;
+        }
+
+        try (InputStream inStream = new BufferedInputStream(zipFile.getInputStream(entry)))
+        {
+          if (handleMember(entry.getName(), inStream, handler))
+          {
+            count++;
+          }
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Reads the members of a TAR archive sequentially.
+   */
+  private static int readTar(TarArchiveInputStream tarStream, MemberHandler handler) throws IOException
+  {
+    int count = 0;
+
+    TarArchiveEntry entry;
+    while ((entry = tarStream.getNextEntry()) != null)
+    {
+      if (!entry.isFile() || !tarStream.canReadEntryData(entry))
+      {
+        continue;
+      }
+
+      // reads are bounded by the current entry, so buffering cannot run into the next member
+      InputStream inStream = new BufferedInputStream(tarStream);
+      if (handleMember(entry.getName(), inStream, handler))
+      {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Passes a member to the handler if it has the DICM prefix.
+   */
+  private static boolean handleMember(String name, InputStream inStream, MemberHandler handler) throws IOException
+  {
+    if (!DicomFileDetector.isDCMStream(inStream))
+    {
+      LOG.debug("Skipping non-DICOM member [{}]", name);
+      return false;
+    }
+
+    handler.accept(name, inStream);
+    return true;
+  }
+
+  private static boolean startsWith(byte[] data, int offset, byte[] prefix)
+  {
+    return data.length >= offset + prefix.length
+      && Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+  }
+}
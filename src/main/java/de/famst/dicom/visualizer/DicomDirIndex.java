@@ -0,0 +1,161 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.media.DicomDirReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Utility class to enumerate the instances of a study from a DICOMDIR instead of the files.
+ * The directory records already list the Study, Series and SOP Instance UIDs and the Modality of
+ * every referenced file, so the headers of the instances are taken from the DICOMDIR alone and no
+ * referenced file is opened. Inactive records are skipped.
+ */
+public final class DicomDirIndex
+{
+  private static final Logger LOG = LoggerFactory.getLogger(DicomDirIndex.class);
+
+  /**
+   * File name of the DICOMDIR in the root of a file-set.
+   */
+  public static final String FILE_NAME = "DICOMDIR";
+
+  private static final int RECORD_INACTIVE = 0;
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private DicomDirIndex()
+  {
+    throw new AssertionError("Utility class should not be instantiated");
+  }
+
+  /**
+   * Finds the DICOMDIR of a file-set. The path may be the DICOMDIR itself or the root directory
+   * of the file-set, media mounted with lower case names are accepted as well.
+   *
+   * @param root the root directory or the DICOMDIR
+   * @return the path of the DICOMDIR, or null if there is none
+   */
+  public static Path find(Path root)
+  {
+    if (root == null)
+    {
+      return null;
+    }
+
+    if (isDicomDirName(root) && Files.isRegularFile(root))
+    {
+      return root;
+    }
+
+    for (String name : new String[]{FILE_NAME, FILE_NAME.toLowerCase(Locale.ROOT)})
+    {
+      Path dicomDir = root.resolve(name);
+      if (Files.isRegularFile(dicomDir))
+      {
+        return dicomDir;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Reads the headers of all instances referenced by a DICOMDIR, in the order of its records.
+   *
+   * @param dicomDir the path of the DICOMDIR
+   * @return the headers of the referenced instances
+   * @throws IOException if the DICOMDIR cannot be read
+   * @throws IllegalArgumentException if the path is null
+   */
+  public static List<InstanceHeader> read(Path dicomDir) throws IOException
+  {
+    if (dicomDir == null)
+    {
+      throw new IllegalArgumentException("DICOMDIR path cannot be null");
+    }
+
+    // file IDs are upper case, media mounted with lower case names need them in lower case
+    boolean lowerCase = dicomDir.getFileName().toString().equals(FILE_NAME.toLowerCase(Locale.ROOT));
+
+    List<InstanceHeader> headers = new ArrayList<>();
+    try (DicomDirReader reader = new DicomDirReader(dicomDir.toFile()))
+    {
+      readRecords(reader, reader.readFirstRootDirectoryRecord(), new RecordContext(), lowerCase, headers);
+    }
+
+    LOG.info("Read [{}] instances from [{}]", headers.size(), dicomDir);
+    return headers;
+  }
+
+  /**
+   * Reads a record and the records following it on the same level, descending into lower levels.
+   * Every record referencing a file becomes an instance with the UIDs of its higher records.
+   */
+  private static void readRecords(DicomDirReader reader, Attributes record, RecordContext parent,
+                                  boolean lowerCase, List<InstanceHeader> headers) throws IOException
+  {
+    for (; record != null; record = reader.readNextDirectoryRecord(record))
+    {
+      if (record.getInt(Tag.RecordInUseFlag, -1) == RECORD_INACTIVE)
+      {
+        continue;
+      }
+
+      RecordContext context = parent.with(record);
+
+      String[] fileIDs = record.getStrings(Tag.ReferencedFileID);
+      if (fileIDs != null && fileIDs.length > 0)
+      {
+        if (lowerCase)
+        {
+          for (int i = 0; i < fileIDs.length; i++)
+          {
+            fileIDs[i] = fileIDs[i].toLowerCase(Locale.ROOT);
+          }
+        }
+
+        Path path = reader.toFile(fileIDs).toPath();
+        headers.add(InstanceHeader.of(path, context.stuid, context.seuid,
+          record.getString(Tag.ReferencedSOPInstanceUIDInFile, record.getString(Tag.SOPInstanceUID)),
+          context.modality));
+      }
+
+      readRecords(reader, reader.readLowerDirectoryRecord(record), context, lowerCase, headers);
+    }
+  }
+
+  private static boolean isDicomDirName(Path path)
+  {
+    Path name = path.getFileName();
+    return name != null && name.toString().equalsIgnoreCase(FILE_NAME);
+  }
+
+  /**
+   * The UIDs and Modality inherited from the higher records.
+   */
+  private record RecordContext(String stuid, String seuid, String modality)
+  {
+    RecordContext()
+    {
+      this(null, null, null);
+    }
+
+    RecordContext with(Attributes record)
+    {
+      return new RecordContext(
+        record.getString(Tag.StudyInstanceUID, stuid),
+        record.getString(Tag.SeriesInstanceUID, seuid),
+        record.getString(Tag.Modality, modality));
+    }
+  }
+}
@@ -0,0 +1,374 @@
+package de.famst.dicom.visualizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Walks a directory tree on a fork/join pool, listing directories and detecting DICOM files in
+ * parallel. Each detected file is handed to a visitor on the worker that detected it, the results
+ * are returned in walk order, with the entries of each directory sorted by name.
+ * <p>
+ * Symbolic links are followed. Directories and files are identified by their file key, so every
+ * directory is listed once and every file is visited once, even if it is reachable through hard
+ * links, bind mounts or links. This also stops link loops. Which of several paths of the same
+ * file is reported is not defined.
+ * <p>
+ * The number of directories, candidate files and detected files of the last walk are kept to
+ * report the throughput. A walker runs one walk at a time.
+ */
+public final class DicomDirectoryWalker
+{
+  private static final Logger LOG = LoggerFactory.getLogger(DicomDirectoryWalker.class);
+
+  /**
+   * Default number of worker threads, more than the processors since the workers mostly wait
+   * for the file system.
+   */
+  public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private final int parallelism;
+
+  private final LongAdder directories = new LongAdder();
+  private final LongAdder candidates = new LongAdder();
+  private final LongAdder detectedFiles = new LongAdder();
+  private long elapsedNanos;
+
+  /**
+   * Creates a walker with the default parallelism.
+   */
+  public DicomDirectoryWalker()
+  {
+    this(DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Creates a walker with the given number of worker threads.
+   *
+   * @param parallelism the number of worker threads
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public DicomDirectoryWalker(int parallelism)
+  {
+    if (parallelism <= 0)
+    {
+      throw new IllegalArgumentException("Parallelism must be positive, got: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Walks a directory tree and visits every DICOM file in it. The visitor runs on the worker
+   * threads, it must not depend on the order of the visits and must not modify shared state
+   * without synchronization. The detected file is closed once visited.
+   *
+   * @param root the directory to walk, or a single file
+   * @param visitor the function visiting a detected file, its results are collected
+   * @param <T> the type of the visitor results
+   * @return the visitor results in walk order, without null results
+   * @throws IOException if the root cannot be read
+   * @throws IllegalArgumentException if the root or the visitor is null
+   */
+  public <T> List<T> walk(Path root, Function<DetectedDicomFile, T> visitor) throws IOException
+  {
+    return walk(root, (file, attributes) -> null, visitor);
+  }
+
+  /**
+   * Walks a directory tree and visits every DICOM file in it, unless a lookup already has a
+   * result for the file. The lookup runs before the file is opened, e.g. to take the result from
+   * a cache keyed by the file attributes, a file it returns a result for is neither detected nor
+   * visited. Both functions run on the worker threads.
+   *
+   * @param root the directory to walk, or a single file
+   * @param lookup the function returning a known result for a file and its attributes, or null
+   * @param visitor the function visiting a detected file, its results are collected
+   * @param <T> the type of the results
+   * @return the lookup and visitor results in walk order, without null results
+   * @throws IOException if the root cannot be read
+   * @throws IllegalArgumentException if the root, the lookup or the visitor is null
+   */
+  public <T> List<T> walk(Path root, BiFunction<Path, BasicFileAttributes, T> lookup,
+                          Function<DetectedDicomFile, T> visitor) throws IOException
+  {
+    if (root == null)
+    {
+      throw new IllegalArgumentException("Root path cannot be null");
+    }
+    if (lookup == null)
+    {
+      throw new IllegalArgumentException("Lookup cannot be null");
+    }
+    if (visitor == null)
+    {
+      throw new IllegalArgumentException("Visitor cannot be null");
+    }
+
+    directories.reset();
+    candidates.reset();
+    detectedFiles.reset();
+    long start = System.nanoTime();
+
+    BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+    Walk<T> walk = new Walk<>(lookup, visitor);
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try
+    {
+      return pool.invoke(attributes.isDirectory()
+        ? walk.new DirectoryTask(root, attributes)
+        : walk.new FileTask(root, attributes));
+    }
+    finally
+    {
+      pool.shutdown();
+
+      elapsedNanos = System.nanoTime() - start;
+      LOG.info("Walked [{}] directories and [{}] candidates in [{}] ms, [{}] directories/s, [{}] candidates/s, "
+          + "detected [{}] DICOM files", getDirectories(), getCandidates(), elapsedNanos / 1_000_000,
+        String.format("%.1f", getDirectoriesPerSecond()), String.format("%.1f", getCandidatesPerSecond()),
+        getDetectedFiles());
+    }
+  }
+
+  /**
+   * Gets the number of directories listed by the last walk.
+   *
+   * @return the number of directories
+   */
+  public long getDirectories()
+  {
+    return directories.sum();
+  }
+
+  /**
+   * Gets the number of distinct regular files checked by the last walk.
+   *
+   * @return the number of candidate files
+   */
+  public long getCandidates()
+  {
+    return candidates.sum();
+  }
+
+  /**
+   * Gets the number of DICOM files detected or looked up by the last walk.
+   *
+   * @return the number of detected files
+   */
+  public long getDetectedFiles()
+  {
+    return detectedFiles.sum();
+  }
+
+  /**
+   * Gets the duration of the last walk.
+   *
+   * @return the duration in nanoseconds
+   */
+  public long getElapsedNanos()
+  {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gets the directories listed per second by the last walk.
+   *
+   * @return the directory throughput, 0 if nothing was walked
+   */
+  public double getDirectoriesPerSecond()
+  {
+    return perSecond(getDirectories());
+  }
+
+  /**
+   * Gets the candidate files checked per second by the last walk.
+   *
+   * @return the candidate throughput, 0 if nothing was walked
+   */
+  public double getCandidatesPerSecond()
+  {
+    return perSecond(getCandidates());
+  }
+
+  private double perSecond(long count)
+  {
+    return elapsedNanos <= 0 ? 0.0 : count * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * Identifies a file or directory by its file key, or by its normalized path if the file
+   * system has no file keys.
+   */
+  private static Object keyOf(Path path, BasicFileAttributes attributes)
+  {
+    Object key = attributes.fileKey();
+    return key != null ? key : path.toAbsolutePath().normalize();
+  }
+
+  /**
+   * The state of one walk shared by its tasks.
+   */
+  private final class Walk<T>
+  {
+    private final BiFunction<Path, BasicFileAttributes, T> lookup;
+    private final Function<DetectedDicomFile, T> visitor;
+    private final Set<Object> visitedDirectories = ConcurrentHashMap.newKeySet();
+    private final Set<Object> visitedFiles = ConcurrentHashMap.newKeySet();
+
+    Walk(BiFunction<Path, BasicFileAttributes, T> lookup, Function<DetectedDicomFile, T> visitor)
+    {
+      this.lookup = lookup;
+      this.visitor = visitor;
+    }
+
+    /**
+     * Lists one directory and walks its entries in parallel.
+     */
+    private final class DirectoryTask extends RecursiveTask<List<T>>
+    {
+      private final Path directory;
+      private final BasicFileAttributes attributes;
+
+      DirectoryTask(Path directory, BasicFileAttributes attributes)
+      {
+        this.directory = directory;
+        this.attributes = attributes;
+      }
+
+      @Override
+      protected List<T> compute()
+      {
+        if (!visitedDirectories.add(keyOf(directory, attributes)))
+        {
+          LOG.debug("Skipping directory visited before [{}]", directory);
+          return Collections.emptyList();
+        }
+        directories.increment();
+
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+        {
+          stream.forEach(entries::add);
+        }
+        catch (IOException e)
+        {
+          LOG.warn("Error listing directory [{}]: {}", directory, e.getMessage());
+          return Collections.emptyList();
+        }
+        Collections.sort(entries);
+
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>(entries.size());
+        for (Path entry : entries)
+        {
+          BasicFileAttributes entryAttributes = readAttributes(entry);
+          if (entryAttributes == null)
+          {
+            continue;
+          }
+
+          if (entryAttributes.isDirectory())
+          {
+            tasks.add(new DirectoryTask(entry, entryAttributes));
+          }
+          else if (entryAttributes.isRegularFile())
+          {
+            tasks.add(new FileTask(entry, entryAttributes));
+          }
+        }
+
+        invokeAll(tasks);
+
+        List<T> results = new ArrayList<>();
+        for (ForkJoinTask<List<T>> task : tasks)
+        {
+          results.addAll(task.join());
+        }
+        return results;
+      }
+
+      /**
+       * Reads the attributes of an entry, of the target for links.
+       */
+      private BasicFileAttributes readAttributes(Path entry)
+      {
+        try
+        {
+          BasicFileAttributes entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class,
+            LinkOption.NOFOLLOW_LINKS);
+          return entryAttributes.isSymbolicLink()
+            ? Files.readAttributes(entry, BasicFileAttributes.class)
+            : entryAttributes;
+        }
+        catch (IOException e)
+        {
+          LOG.debug("Skipping unreadable entry [{}]: {}", entry, e.getMessage());
+          return null;
+        }
+      }
+    }
+
+    /**
+     * Looks up one file, or detects it and visits it if it is a DICOM file.
+     */
+    private final class FileTask extends RecursiveTask<List<T>>
+    {
+      private final Path file;
+      private final BasicFileAttributes attributes;
+
+      FileTask(Path file, BasicFileAttributes attributes)
+      {
+        this.file = file;
+        this.attributes = attributes;
+      }
+
+      @Override
+      protected List<T> compute()
+      {
+        if (!visitedFiles.add(keyOf(file, attributes)))
+        {
+          LOG.debug("Skipping file visited before [{}]", file);
+          return Collections.emptyList();
+        }
+        candidates.increment();
+
+        T known = lookup.apply(file, attributes);
+        if (known != null)
+        {
+          detectedFiles.increment();
+          return List.of(known);
+        }
+
+        DetectedDicomFile detected = DicomFileDetector.detect(file, attributes);
+        if (detected == null)
+        {
+          return Collections.emptyList();
+        }
+        detectedFiles.increment();
+
+        try (detected)
+        {
+          T result = visitor.apply(detected);
+          return result != null ? List.of(result) : Collections.emptyList();
+        }
+      }
+    }
+  }
+}
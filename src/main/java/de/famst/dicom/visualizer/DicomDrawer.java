@@ -10,12 +10,15 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Drawer for DICOM files that creates an SVG visualization of DICOM tag structure.
  * Renders tags as colored rectangles based on group and element numbers, with special
- * handling for sequences, pixel data, and private tags.
+ * handling for sequences, pixel data, and private tags. A run of fragment items is drawn as
+ * one pixel data box labeled with its item count, a run of repeated sequence items as its first
+ * item marked with its count. A sequence aggregated below the depth limit is marked with the
+ * number of elements it contains. A drawing standing for several instances of the same structure
+ * shows their count in its label.
  */
 public class DicomDrawer
 {
@@ -60,6 +63,7 @@ public class DicomDrawer
   private final int width;
   private final int height;
   private final int verticalOffset;
+  private int instanceCount = 1;
 
   /**
    * Creates a new DicomDrawer with no vertical offset.
@@ -110,6 +114,21 @@ public class DicomDrawer
     this.verticalOffset = verticalOffset;
   }
 
+  /**
+   * Sets the number of instances of the same structure this drawing stands for.
+   *
+   * @param instanceCount the number of instances, shown in the label if more than one
+   * @throws IllegalArgumentException if the count is not positive
+   */
+  public void setInstanceCount(int instanceCount)
+  {
+    if (instanceCount <= 0)
+    {
+      throw new IllegalArgumentException("Instance count must be positive, got: " + instanceCount);
+    }
+    this.instanceCount = instanceCount;
+  }
+
   /**
    * Draws the DICOM visualization onto the graphics context.
    *
@@ -129,12 +148,39 @@ public class DicomDrawer
     setupFont();
     FontMetrics fontMetrics = graph.getFontMetrics();
 
-    AtomicBoolean multiFrameMode = new AtomicBoolean(false);
+    // items between encapsulated pixel data and its delimiter are the offset table and fragments
+    boolean encapsulated = false;
+    int encapsulatedItems = 0;
+    int frameCount = dicomParser.getFrameCount();
 
-    dicomParser.getEntries().forEach(entry ->
+    DicomEntryTable entries = dicomParser.getEntries();
+    for (int row = 0; row < entries.size(); row++)
     {
-      drawEntry(entry, scaleX, yPosition, fontMetrics, multiFrameMode, originalTransform);
-    });
+      int tag = entries.getTag(row);
+      if (entries.getLevel(row) == 0)
+      {
+        if (tag == Tag.PixelData)
+        {
+          encapsulated = entries.getLength(row) == -1;
+          encapsulatedItems = 0;
+        }
+        else if (tag == Tag.SequenceDelimitationItem)
+        {
+          encapsulated = false;
+        }
+      }
+
+      boolean fragment = tag == Tag.Item && encapsulated;
+      if (fragment)
+      {
+        encapsulatedItems++;
+      }
+
+      // the frame count is shown on the first fragment behind the offset table
+      int frames = fragment && encapsulatedItems == 2 ? frameCount : 0;
+      boolean pixelData = tag == Tag.PixelData || fragment;
+      drawEntry(entries, row, scaleX, yPosition, fontMetrics, pixelData, frames, originalTransform);
+    }
 
     drawLabel(originalTransform);
 
@@ -171,67 +217,65 @@ public class DicomDrawer
   /**
    * Draws a single DICOM entry.
    */
-  private void drawEntry(DicomEntry entry, float scaleX, float yPosition, FontMetrics fontMetrics,
-                         AtomicBoolean multiFrameMode, AffineTransform originalTransform)
+  private void drawEntry(DicomEntryTable entries, int row, float scaleX, float yPosition, FontMetrics fontMetrics,
+                         boolean pixelData, int frames, AffineTransform originalTransform)
   {
-    float xPosition = BORDER_X + (entry.getLogPosition() * scaleX);
-    float entryWidth = entry.getLogLength() * scaleX;
+    float logLength = entries.getLogLength(row);
+    float xPosition = BORDER_X + (entries.getLogPosition(row) * scaleX);
+    float entryWidth = logLength * scaleX;
     float maxHeight = DRAWING_HEIGHT - 4 * BORDER_Y;
-    float entryHeight = maxHeight - (LEVEL_HEIGHT * entry.getLevel());
+    float entryHeight = maxHeight - (LEVEL_HEIGHT * entries.getLevel(row));
 
-    float hue = ColorMapper.groupToHue(entry.getGroup());
-    float saturation = ColorMapper.elementToSat(entry.getElement());
+    int group = entries.getGroup(row);
+    int element = entries.getElement(row);
+    float hue = ColorMapper.groupToHue(group);
+    float saturation = ColorMapper.elementToSat(element);
 
     LOG.trace("Drawing entry [{},{},{}] -> HSB [{},{},{}]",
-              entry.getGroup(), entry.getElement(), entry.getLogLength(),
+              group, element, logLength,
               hue, saturation, MAX_BRIGHTNESS);
 
     graph.translate(xPosition, yPosition);
 
-    if (isPixelDataOrMultiFrameItem(entry, multiFrameMode))
+    if (pixelData)
     {
-      drawPixelData(entry, entryWidth, entryHeight, hue, fontMetrics, multiFrameMode);
+      drawPixelData(entries.getRunCount(row), frames, entryWidth, entryHeight, hue, fontMetrics);
     }
     else
     {
-      drawRegularTag(entry, entryWidth, entryHeight, hue, saturation);
+      drawRegularTag(entryWidth, entryHeight, hue, saturation);
+
+      if (entries.isRun(row))
+      {
+        drawCountMarker("\u00D7" + entries.getRunCount(row), entryWidth, entryHeight, hue, fontMetrics);
+      }
+      else if (entries.isAggregate(row))
+      {
+        drawCountMarker("+" + entries.getAggregateElements(row), entryWidth, entryHeight, hue, fontMetrics);
+      }
     }
 
     graph.translate(0.0f, maxHeight);
 
-    if (entry.getVr() == VR.SQ)
+    if (entries.getVr(row) == VR.SQ)
     {
       drawSequenceMarker();
     }
 
-    if (entry.isPrivateTag())
+    if (entries.isPrivateTag(row))
     {
-      drawPrivateTagMarker(entry, entryWidth, hue, saturation);
+      drawPrivateTagMarker(entryWidth, hue, saturation);
     }
 
     graph.setTransform(originalTransform);
   }
 
   /**
-   * Checks if the entry is pixel data or a multi-frame item.
-   */
-  private boolean isPixelDataOrMultiFrameItem(DicomEntry entry, AtomicBoolean multiFrameMode)
-  {
-    return (entry.getTag() == Tag.PixelData) ||
-           ((entry.getTag() == Tag.Item) && multiFrameMode.get());
-  }
-
-  /**
-   * Draws pixel data as a black rectangle with a "P" marker.
+   * Draws pixel data as a black rectangle with a "P" marker, followed by the frame count if one is
+   * given, otherwise by the item count for runs.
    */
-  private void drawPixelData(DicomEntry entry, float width, float height, float hue,
-                             FontMetrics fontMetrics, AtomicBoolean multiFrameMode)
+  private void drawPixelData(int count, int frames, float width, float height, float hue, FontMetrics fontMetrics)
   {
-    if (entry.getLogLength() == 1.0f)
-    {
-      multiFrameMode.set(true);
-    }
-
     // Draw black filled rectangle
     graph.setColor(ColorMapper.HSBtoRGB(hue, ZERO_SATURATION, ZERO_SATURATION));
     graph.fill(new Rectangle2D.Float(0.0f, 0.0f, width - RECTANGLE_GAP, height));
@@ -240,21 +284,53 @@ public class DicomDrawer
     graph.setColor(ColorMapper.HSBtoRGB(hue, ZERO_SATURATION, MAX_BRIGHTNESS));
     graph.draw(new Rectangle2D.Float(0.0f, 0.0f, width - RECTANGLE_GAP, height));
 
-    // Draw "P" label if there's enough space
+    // Draw "P" label if there's enough space, with the count only if it fits as well
     if (width > MIN_WIDTH_FOR_TEXT)
     {
-      float pWidth = fontMetrics.stringWidth("P");
+      String label = "P";
+      if (frames > 0)
+      {
+        label = "P " + frames + (frames == 1 ? " frame" : " frames");
+      }
+      else if (count > 1)
+      {
+        label = "P \u00D7" + count;
+      }
+
+      if (fontMetrics.stringWidth(label) > width - RECTANGLE_GAP)
+      {
+        label = "P";
+      }
+
+      float pWidth = fontMetrics.stringWidth(label);
       float pHeight = fontMetrics.getHeight();
       float textX = width / 2.0f - pWidth / TEXT_WIDTH_DIVISOR;
       float textY = height * TEXT_VERTICAL_POSITION - pHeight / TEXT_HEIGHT_DIVISOR;
-      graph.drawString("P", textX, textY);
+      graph.drawString(label, textX, textY);
+    }
+  }
+
+  /**
+   * Draws the item count of a run or the element count of an aggregate onto its entry, if it fits.
+   */
+  private void drawCountMarker(String label, float width, float height, float hue, FontMetrics fontMetrics)
+  {
+    float labelWidth = fontMetrics.stringWidth(label);
+    if (labelWidth > width - RECTANGLE_GAP)
+    {
+      return;
     }
+
+    float textX = width / 2.0f - labelWidth / TEXT_WIDTH_DIVISOR;
+    float textY = height * TEXT_VERTICAL_POSITION - fontMetrics.getHeight() / TEXT_HEIGHT_DIVISOR;
+    graph.setColor(ColorMapper.HSBtoRGB(hue, ZERO_SATURATION, ZERO_SATURATION));
+    graph.drawString(label, textX, textY);
   }
 
   /**
    * Draws a regular DICOM tag as a colored rectangle or line.
    */
-  private void drawRegularTag(DicomEntry entry, float width, float height, float hue, float saturation)
+  private void drawRegularTag(float width, float height, float hue, float saturation)
   {
     Color color = ColorMapper.HSBtoRGB(hue, saturation, MAX_BRIGHTNESS);
     graph.setColor(color);
@@ -289,7 +365,7 @@ public class DicomDrawer
   /**
    * Draws a marker for private tags using a complementary color.
    */
-  private void drawPrivateTagMarker(DicomEntry entry, float width, float hue, float saturation)
+  private void drawPrivateTagMarker(float width, float hue, float saturation)
   {
     float complementaryHue = hue + HUE_SHIFT;
     if (complementaryHue > MAX_HUE)
@@ -311,6 +387,10 @@ public class DicomDrawer
     graph.setColor(ColorMapper.HSBtoRGB(0.0f, ZERO_SATURATION, MAX_BRIGHTNESS));
 
     String label = dicomParser.getModality() + " - " + dicomParser.getSiuid();
+    if (instanceCount > 1)
+    {
+      label += " (\u00D7" + instanceCount + " instances)";
+    }
     graph.drawString(label, 0.0f, 0.0f);
 
     graph.setTransform(originalTransform);
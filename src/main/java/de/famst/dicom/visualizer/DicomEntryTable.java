@@ -0,0 +1,918 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.VR;
+import org.dcm4che3.util.TagUtils;
+
+import java.util.Arrays;
+
+/**
+ * Columnar table of the DICOM data element entries of one file.
+ * Each entry is a row index into primitive arrays holding the tag, offset, length, level,
+ * VR ordinal and flag bits, plus the scaled length and position computed for the layout.
+ * The accessors work on the row index, so iterating the table creates no objects.
+ * For deflated files a separate column holds the offsets in the compressed file, it is only
+ * allocated once the first file offset differs from the stream offset.
+ * <p>
+ * Consecutive items of the same kind, like the fragments of encapsulated pixel data, can be
+ * collapsed into one run entry. The item count, total length and smallest and largest item length
+ * of runs are kept in sparse columns ordered by row, the layout uses the total length of a run.
+ * A run of structurally identical sequence items keeps the entries of its first item as the
+ * template for all of them.
+ * <p>
+ * A sequence below the depth limit of the parser is kept as one aggregate entry instead of the
+ * entries of its items, holding the total value length, the number of elements and the nesting
+ * depth of the sequence in another sparse column.
+ * <p>
+ * The structural fingerprint hashes the tag, VR, level and length bucket of every entry, so files
+ * with the same layout of elements get the same fingerprint even if their values differ.
+ */
+public class DicomEntryTable
+{
+  private static final int INITIAL_CAPACITY = 64;
+  private static final byte NO_VR = -1;
+  private static final VR[] VRS = VR.values();
+
+  private static final byte FLAG_PRIVATE_CREATOR = 1;
+  private static final byte FLAG_PRIVATE_TAG = 1 << 1;
+
+  // 64 bit FNV-1a parameters of the structural fingerprint
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private int size;
+  private long minLength = Long.MAX_VALUE;
+  private long maxLength;
+  private boolean lengthRangeStale;
+
+  private int[] tags;
+  private long[] offsets;
+  private long[] fileOffsets;
+  private int[] lengths;
+  private byte[] levels;
+  private byte[] vrs;
+  private byte[] flags;
+
+  private float[] logLengths;
+  private float[] logPositions;
+
+  // sparse columns of the run entries, ordered by row
+  private int runs;
+  private int[] runRows;
+  private int[] runCounts;
+  private long[] runLengths;
+  private int[] runMinLengths;
+  private int[] runMaxLengths;
+
+  // sparse columns of the aggregate entries, ordered by row
+  private int aggregates;
+  private int[] aggregateRows;
+  private long[] aggregateLengths;
+  private int[] aggregateElements;
+  private int[] aggregateDepths;
+
+  /**
+   * Creates a new empty table.
+   */
+  public DicomEntryTable()
+  {
+    this(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Creates a new empty table with the given initial capacity.
+   *
+   * @param capacity the number of entries to reserve space for
+   * @throws IllegalArgumentException if the capacity is negative
+   */
+  public DicomEntryTable(int capacity)
+  {
+    if (capacity < 0)
+    {
+      throw new IllegalArgumentException("Capacity must be non-negative, got: " + capacity);
+    }
+
+    tags = new int[capacity];
+    offsets = new long[capacity];
+    lengths = new int[capacity];
+    levels = new byte[capacity];
+    vrs = new byte[capacity];
+    flags = new byte[capacity];
+    logLengths = new float[capacity];
+    logPositions = new float[capacity];
+  }
+
+  /**
+   * Appends an entry to the table.
+   *
+   * @param tag the DICOM tag
+   * @param vr the Value Representation, or null for items and delimiters
+   * @param level the nesting level (for sequences)
+   * @param offset the byte offset of the element header in the stream
+   * @param length the value length as given in the header, -1 for undefined length
+   * @return the row index of the new entry
+   */
+  public int add(int tag, VR vr, int level, long offset, int length)
+  {
+    if (size == tags.length)
+    {
+      grow();
+    }
+
+    int row = size++;
+
+    tags[row] = tag;
+    offsets[row] = offset;
+    if (fileOffsets != null)
+    {
+      fileOffsets[row] = offset;
+    }
+    lengths[row] = length;
+
+    long clamped = layoutLength(length);
+    minLength = Math.min(minLength, clamped);
+    maxLength = Math.max(maxLength, clamped);
+    levels[row] = (byte) Math.min(level, Byte.MAX_VALUE);
+    vrs[row] = vr == null ? NO_VR : (byte) vr.ordinal();
+
+    byte flag = 0;
+    if (TagUtils.isPrivateCreator(tag))
+    {
+      flag |= FLAG_PRIVATE_CREATOR;
+    }
+    if (TagUtils.isPrivateTag(tag))
+    {
+      flag |= FLAG_PRIVATE_TAG;
+    }
+    flags[row] = flag;
+
+    logLengths[row] = 0.0f;
+    logPositions[row] = 0.0f;
+
+    return row;
+  }
+
+  private void grow()
+  {
+    int capacity = Math.max(INITIAL_CAPACITY, tags.length * 2);
+
+    tags = Arrays.copyOf(tags, capacity);
+    offsets = Arrays.copyOf(offsets, capacity);
+    if (fileOffsets != null)
+    {
+      fileOffsets = Arrays.copyOf(fileOffsets, capacity);
+    }
+    lengths = Arrays.copyOf(lengths, capacity);
+    levels = Arrays.copyOf(levels, capacity);
+    vrs = Arrays.copyOf(vrs, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+    logLengths = Arrays.copyOf(logLengths, capacity);
+    logPositions = Arrays.copyOf(logPositions, capacity);
+  }
+
+  /**
+   * Adds an item to the run of items ending with the last entry of the table. The last entry
+   * becomes a run if it is not one already, its own length is the length of the first item.
+   *
+   * @param row the row index of the last entry
+   * @param length the value length of the added item
+   * @throws IllegalArgumentException if the row is not the last entry or the length is undefined
+   */
+  public void addToRun(int row, int length)
+  {
+    checkRow(row);
+    if (row != size - 1)
+    {
+      throw new IllegalArgumentException("Only the last entry can be extended, got row: " + row);
+    }
+
+    addToRun(row, lengths[row], length);
+  }
+
+  /**
+   * Adds an item to the run of items starting at an entry. The entry becomes a run if it is not
+   * one already, with the given length of its first item. The entries following a run entry up
+   * to the next entry on its level describe the structure shared by all items of the run.
+   *
+   * @param row the row index of the run entry
+   * @param firstLength the value length of the first item, used when the run is created
+   * @param length the value length of the added item
+   * @throws IllegalArgumentException if one of the lengths is undefined
+   */
+  public void addToRun(int row, int firstLength, int length)
+  {
+    checkRow(row);
+    if (length == -1 || firstLength == -1)
+    {
+      throw new IllegalArgumentException("Runs cannot contain items of undefined length");
+    }
+
+    long previous = getLayoutLength(row);
+
+    int run = runIndex(row);
+    if (run < 0)
+    {
+      run = addRun(row, 1, firstLength & 0xFFFFFFFFL, firstLength, firstLength);
+    }
+
+    runCounts[run]++;
+    runLengths[run] += length & 0xFFFFFFFFL;
+    if (Integer.compareUnsigned(length, runMinLengths[run]) < 0)
+    {
+      runMinLengths[run] = length;
+    }
+    if (Integer.compareUnsigned(length, runMaxLengths[run]) > 0)
+    {
+      runMaxLengths[run] = length;
+    }
+
+    // the run only grows, it can no longer be the minimum it may have been
+    maxLength = Math.max(maxLength, getLayoutLength(row));
+    if (previous == minLength)
+    {
+      lengthRangeStale = true;
+    }
+  }
+
+  /**
+   * Sets the run details of an entry, used when restoring a table.
+   */
+  void setRun(int row, int count, long length, int minLength, int maxLength)
+  {
+    checkRow(row);
+    if (runs > 0 && runRows[runs - 1] >= row)
+    {
+      throw new IllegalArgumentException("Runs must be set in ascending row order, got row: " + row);
+    }
+
+    addRun(row, count, length, minLength, maxLength);
+    lengthRangeStale = true;
+  }
+
+  /**
+   * Removes all entries from the given row on, e.g. the entries of an item that repeats a
+   * previous one.
+   *
+   * @param newSize the number of entries to keep
+   * @throws IllegalArgumentException if the size is negative or larger than the current size
+   */
+  public void truncate(int newSize)
+  {
+    if (newSize < 0 || newSize > size)
+    {
+      throw new IllegalArgumentException("Size must be between 0 and " + size + ", got: " + newSize);
+    }
+
+    size = newSize;
+    while (runs > 0 && runRows[runs - 1] >= newSize)
+    {
+      runs--;
+    }
+    while (aggregates > 0 && aggregateRows[aggregates - 1] >= newSize)
+    {
+      aggregates--;
+    }
+    lengthRangeStale = true;
+  }
+
+  /**
+   * Checks if two ranges of entries have the same structure: the same tags, VRs and levels,
+   * undefined lengths at the same entries, runs of the same item count and aggregates of the same
+   * element count. Value lengths otherwise may differ. The first entries of the ranges are the
+   * items compared, their own run counts are left out, so an item still matches the first item
+   * of a run after it grew.
+   *
+   * @param row the first row of the first range
+   * @param end the end (exclusive) of the first range
+   * @param otherRow the first row of the second range
+   * @param otherEnd the end (exclusive) of the second range
+   * @return true if both ranges have the same structure
+   */
+  public boolean hasSameStructure(int row, int end, int otherRow, int otherEnd)
+  {
+    if (end - row != otherEnd - otherRow)
+    {
+      return false;
+    }
+    if (row < 0 || end > size || otherRow < 0 || otherEnd > size)
+    {
+      throw new IndexOutOfBoundsException("Range out of bounds for size " + size);
+    }
+
+    for (int i = row, j = otherRow; i < end; i++, j++)
+    {
+      if (tags[i] != tags[j]
+        || vrs[i] != vrs[j]
+        || levels[i] != levels[j]
+        || (lengths[i] == -1) != (lengths[j] == -1))
+      {
+        return false;
+      }
+    }
+
+    // the first entries are the compared items themselves, the first one may already be a run
+    for (int i = row + 1, j = otherRow + 1; i < end && runs > 0; i++, j++)
+    {
+      if (getRunCount(i) != getRunCount(j))
+      {
+        return false;
+      }
+    }
+
+    for (int i = row, j = otherRow; i < end && aggregates > 0; i++, j++)
+    {
+      if (getAggregateElements(i) != getAggregateElements(j))
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private int addRun(int row, int count, long length, int minLength, int maxLength)
+  {
+    if (runRows == null)
+    {
+      runRows = new int[4];
+      runCounts = new int[4];
+      runLengths = new long[4];
+      runMinLengths = new int[4];
+      runMaxLengths = new int[4];
+    }
+    else if (runs == runRows.length)
+    {
+      runRows = Arrays.copyOf(runRows, runs * 2);
+      runCounts = Arrays.copyOf(runCounts, runs * 2);
+      runLengths = Arrays.copyOf(runLengths, runs * 2);
+      runMinLengths = Arrays.copyOf(runMinLengths, runs * 2);
+      runMaxLengths = Arrays.copyOf(runMaxLengths, runs * 2);
+    }
+
+    // an item run can start before the runs nested in its first item, keep the columns ordered
+    int run = -(Arrays.binarySearch(runRows, 0, runs, row) + 1);
+    int tail = runs - run;
+    System.arraycopy(runRows, run, runRows, run + 1, tail);
+    System.arraycopy(runCounts, run, runCounts, run + 1, tail);
+    System.arraycopy(runLengths, run, runLengths, run + 1, tail);
+    System.arraycopy(runMinLengths, run, runMinLengths, run + 1, tail);
+    System.arraycopy(runMaxLengths, run, runMaxLengths, run + 1, tail);
+    runs++;
+
+    runRows[run] = row;
+    runCounts[run] = count;
+    runLengths[run] = length;
+    runMinLengths[run] = minLength;
+    runMaxLengths[run] = maxLength;
+    return run;
+  }
+
+  private int runIndex(int row)
+  {
+    return runs == 0 ? -1 : Arrays.binarySearch(runRows, 0, runs, row);
+  }
+
+  /**
+   * Checks if an entry is a run of several items.
+   *
+   * @param row the row index
+   * @return true if the entry is a run
+   */
+  public boolean isRun(int row)
+  {
+    checkRow(row);
+    return runIndex(row) >= 0;
+  }
+
+  /**
+   * Gets the number of items of an entry.
+   *
+   * @param row the row index
+   * @return the number of items of a run, 1 for other entries
+   */
+  public int getRunCount(int row)
+  {
+    checkRow(row);
+    int run = runIndex(row);
+    return run < 0 ? 1 : runCounts[run];
+  }
+
+  /**
+   * Gets the total value length of all items of an entry.
+   *
+   * @param row the row index
+   * @return the total length of a run, the value length of other entries, -1 for undefined length
+   */
+  public long getRunLength(int row)
+  {
+    checkRow(row);
+    int run = runIndex(row);
+    if (run >= 0)
+    {
+      return runLengths[run];
+    }
+    return lengths[row] == -1 ? -1 : lengths[row] & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Gets the smallest item value length of an entry.
+   *
+   * @param row the row index
+   * @return the smallest length of the items of a run, the value length of other entries
+   */
+  public int getRunMinLength(int row)
+  {
+    checkRow(row);
+    int run = runIndex(row);
+    return run < 0 ? lengths[row] : runMinLengths[run];
+  }
+
+  /**
+   * Gets the largest item value length of an entry.
+   *
+   * @param row the row index
+   * @return the largest length of the items of a run, the value length of other entries
+   */
+  public int getRunMaxLength(int row)
+  {
+    checkRow(row);
+    int run = runIndex(row);
+    return run < 0 ? lengths[row] : runMaxLengths[run];
+  }
+
+  /**
+   * Gets the number of run entries in the table.
+   *
+   * @return the number of runs
+   */
+  public int getRunEntries()
+  {
+    return runs;
+  }
+
+  /**
+   * Turns an entry into the aggregate of a sequence whose items have not been added as entries.
+   * Aggregates are set in ascending row order, usually on the last entry of the table.
+   *
+   * @param row the row index of the sequence entry
+   * @param length the total value length of the sequence, including a sequence delimitation item
+   * @param elements the number of data elements nested in the sequence
+   * @param depth the number of nesting levels below the sequence
+   * @throws IllegalArgumentException if the row is not behind the last aggregate or a count is negative
+   */
+  public void setAggregate(int row, long length, int elements, int depth)
+  {
+    checkRow(row);
+    if (aggregates > 0 && aggregateRows[aggregates - 1] >= row)
+    {
+      throw new IllegalArgumentException("Aggregates must be set in ascending row order, got row: " + row);
+    }
+    if (length < 0 || elements < 0 || depth < 0)
+    {
+      throw new IllegalArgumentException("Aggregate length, elements and depth must be non-negative");
+    }
+
+    if (aggregateRows == null)
+    {
+      aggregateRows = new int[4];
+      aggregateLengths = new long[4];
+      aggregateElements = new int[4];
+      aggregateDepths = new int[4];
+    }
+    else if (aggregates == aggregateRows.length)
+    {
+      aggregateRows = Arrays.copyOf(aggregateRows, aggregates * 2);
+      aggregateLengths = Arrays.copyOf(aggregateLengths, aggregates * 2);
+      aggregateElements = Arrays.copyOf(aggregateElements, aggregates * 2);
+      aggregateDepths = Arrays.copyOf(aggregateDepths, aggregates * 2);
+    }
+
+    int aggregate = aggregates++;
+    aggregateRows[aggregate] = row;
+    aggregateLengths[aggregate] = length;
+    aggregateElements[aggregate] = elements;
+    aggregateDepths[aggregate] = depth;
+    lengthRangeStale = true;
+  }
+
+  private int aggregateIndex(int row)
+  {
+    return aggregates == 0 ? -1 : Arrays.binarySearch(aggregateRows, 0, aggregates, row);
+  }
+
+  /**
+   * Checks if an entry is the aggregate of a sequence whose items have no entries.
+   *
+   * @param row the row index
+   * @return true if the entry is an aggregate
+   */
+  public boolean isAggregate(int row)
+  {
+    checkRow(row);
+    return aggregateIndex(row) >= 0;
+  }
+
+  /**
+   * Gets the total value length of an aggregate sequence.
+   *
+   * @param row the row index
+   * @return the total length including a sequence delimitation item, or -1 for other entries
+   */
+  public long getAggregateLength(int row)
+  {
+    checkRow(row);
+    int aggregate = aggregateIndex(row);
+    return aggregate < 0 ? -1 : aggregateLengths[aggregate];
+  }
+
+  /**
+   * Gets the number of data elements nested in an aggregate sequence.
+   *
+   * @param row the row index
+   * @return the number of nested elements, 0 for other entries
+   */
+  public int getAggregateElements(int row)
+  {
+    checkRow(row);
+    int aggregate = aggregateIndex(row);
+    return aggregate < 0 ? 0 : aggregateElements[aggregate];
+  }
+
+  /**
+   * Gets the number of nesting levels below an aggregate sequence.
+   *
+   * @param row the row index
+   * @return the depth of the nested items, 0 for other entries
+   */
+  public int getAggregateDepth(int row)
+  {
+    checkRow(row);
+    int aggregate = aggregateIndex(row);
+    return aggregate < 0 ? 0 : aggregateDepths[aggregate];
+  }
+
+  /**
+   * Gets the number of aggregate entries in the table.
+   *
+   * @return the number of aggregates
+   */
+  public int getAggregateEntries()
+  {
+    return aggregates;
+  }
+
+  /**
+   * Gets the length of an entry as used by the layout, the total length for runs and aggregates.
+   *
+   * @param row the row index
+   * @return the length used by the layout, at least 1
+   */
+  public long getLayoutLength(int row)
+  {
+    checkRow(row);
+    int run = runIndex(row);
+    if (run >= 0)
+    {
+      return Math.max(runLengths[run], 1);
+    }
+    int aggregate = aggregateIndex(row);
+    return aggregate < 0 ? layoutLength(lengths[row]) : Math.max(aggregateLengths[aggregate], 1);
+  }
+
+  /**
+   * Gets the number of entries in the table.
+   *
+   * @return the number of entries
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Gets the smallest length of all entries as used by the layout, see {@link #getLayoutLength(int)}.
+   *
+   * @return the minimum length, or 1 if the table is empty
+   */
+  public long getMinLength()
+  {
+    updateLengthRange();
+    return size == 0 ? 1 : minLength;
+  }
+
+  /**
+   * Gets the largest length of all entries as used by the layout, see {@link #getLayoutLength(int)}.
+   *
+   * @return the maximum length, or 1 if the table is empty
+   */
+  public long getMaxLength()
+  {
+    updateLengthRange();
+    return size == 0 ? 1 : maxLength;
+  }
+
+  /**
+   * Gets the sum of the natural logarithms of the lengths of all entries as used by the layout,
+   * which together with the number of entries determines the total scaled length, see
+   * {@link LayoutEngine#getTotalLength(int, double)}.
+   *
+   * @return the sum of the logarithms, 0 if the table is empty
+   */
+  public double getLogLengthSum()
+  {
+    double sum = 0.0;
+    for (int row = 0; row < size; row++)
+    {
+      sum += Math.log((float) getLayoutLength(row));
+    }
+    return sum;
+  }
+
+  /**
+   * Gets a hash of the structure of the table: the tag, VR, level and length bucket of every
+   * entry in order. The length bucket is the number of significant bits of the length used by
+   * the layout, so lengths within the same power of two fall into the same bucket.
+   *
+   * @return the structural fingerprint
+   */
+  public long getStructuralFingerprint()
+  {
+    long hash = FNV_OFFSET_BASIS;
+    for (int row = 0; row < size; row++)
+    {
+      hash = (hash ^ tags[row]) * FNV_PRIME;
+      hash = (hash ^ vrs[row]) * FNV_PRIME;
+      hash = (hash ^ levels[row]) * FNV_PRIME;
+      hash = (hash ^ (Long.SIZE - Long.numberOfLeadingZeros(getLayoutLength(row)))) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Recomputes the length range after runs have grown or entries have been removed.
+   */
+  private void updateLengthRange()
+  {
+    if (lengthRangeStale)
+    {
+      minLength = Long.MAX_VALUE;
+      maxLength = 0;
+      for (int row = 0; row < size; row++)
+      {
+        long length = getLayoutLength(row);
+        minLength = Math.min(minLength, length);
+        maxLength = Math.max(maxLength, length);
+      }
+      lengthRangeStale = false;
+    }
+  }
+
+  /**
+   * Converts a value length as given in the element header to the length used by the layout.
+   * The header length is unsigned, undefined length counts as 1 and the minimum is 1.
+   *
+   * @param length the value length, -1 for undefined length
+   * @return the length used by the layout
+   */
+  public static long layoutLength(int length)
+  {
+    return length == -1 ? 1 : Math.max(length & 0xFFFFFFFFL, 1);
+  }
+
+  /**
+   * Checks if the table contains no entries.
+   *
+   * @return true if the table is empty
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Gets the DICOM tag (combined group and element) of an entry.
+   *
+   * @param row the row index
+   * @return the tag value
+   */
+  public int getTag(int row)
+  {
+    checkRow(row);
+    return tags[row];
+  }
+
+  /**
+   * Gets the DICOM group number of an entry.
+   *
+   * @param row the row index
+   * @return the group number
+   */
+  public int getGroup(int row)
+  {
+    return TagUtils.groupNumber(getTag(row));
+  }
+
+  /**
+   * Gets the DICOM element number of an entry.
+   *
+   * @param row the row index
+   * @return the element number
+   */
+  public int getElement(int row)
+  {
+    return TagUtils.elementNumber(getTag(row));
+  }
+
+  /**
+   * Gets the Value Representation (VR) of an entry.
+   *
+   * @param row the row index
+   * @return the VR, or null for items and delimiters
+   */
+  public VR getVr(int row)
+  {
+    checkRow(row);
+    return vrs[row] == NO_VR ? null : VRS[vrs[row]];
+  }
+
+  /**
+   * Gets the nesting level (for sequences) of an entry.
+   *
+   * @param row the row index
+   * @return the nesting level
+   */
+  public int getLevel(int row)
+  {
+    checkRow(row);
+    return levels[row];
+  }
+
+  /**
+   * Gets the byte offset of the element header in the stream.
+   *
+   * @param row the row index
+   * @return the offset in bytes
+   */
+  public long getOffset(int row)
+  {
+    checkRow(row);
+    return offsets[row];
+  }
+
+  /**
+   * Gets the byte offset of the element header in the file. This differs from the offset in the
+   * stream only for deflated files, where it is the approximate offset in the compressed data.
+   *
+   * @param row the row index
+   * @return the offset in bytes
+   */
+  public long getFileOffset(int row)
+  {
+    checkRow(row);
+    return fileOffsets == null ? offsets[row] : fileOffsets[row];
+  }
+
+  /**
+   * Sets the byte offset of the element header in the file.
+   *
+   * @param row the row index
+   * @param fileOffset the offset in bytes
+   */
+  public void setFileOffset(int row, long fileOffset)
+  {
+    checkRow(row);
+    if (fileOffsets == null)
+    {
+      if (fileOffset == offsets[row])
+      {
+        return;
+      }
+      fileOffsets = Arrays.copyOf(offsets, offsets.length);
+    }
+    fileOffsets[row] = fileOffset;
+  }
+
+  /**
+   * Checks if any entry has a file offset different from its stream offset.
+   *
+   * @return true if the table holds separate file offsets
+   */
+  public boolean hasFileOffsets()
+  {
+    return fileOffsets != null;
+  }
+
+  /**
+   * Gets the value length as given in the element header.
+   *
+   * @param row the row index
+   * @return the value length, -1 for undefined length
+   */
+  public int getLength(int row)
+  {
+    checkRow(row);
+    return lengths[row];
+  }
+
+  /**
+   * Checks if an entry is a private creator identification.
+   *
+   * @param row the row index
+   * @return true if this is a private creator
+   */
+  public boolean isPrivateCreator(int row)
+  {
+    checkRow(row);
+    return (flags[row] & FLAG_PRIVATE_CREATOR) != 0;
+  }
+
+  /**
+   * Checks if an entry is a private tag.
+   *
+   * @param row the row index
+   * @return true if this is a private tag
+   */
+  public boolean isPrivateTag(int row)
+  {
+    checkRow(row);
+    return (flags[row] & FLAG_PRIVATE_TAG) != 0;
+  }
+
+  /**
+   * Gets the logarithmic length of an entry (for visualization).
+   *
+   * @param row the row index
+   * @return the logarithmic length
+   */
+  public float getLogLength(int row)
+  {
+    checkRow(row);
+    return logLengths[row];
+  }
+
+  /**
+   * Sets the logarithmic length of an entry (for visualization).
+   *
+   * @param row the row index
+   * @param logLength the logarithmic length to set
+   */
+  public void setLogLength(int row, float logLength)
+  {
+    checkRow(row);
+    logLengths[row] = logLength;
+  }
+
+  /**
+   * Gets the logarithmic position of an entry (for visualization).
+   *
+   * @param row the row index
+   * @return the logarithmic position
+   */
+  public float getLogPosition(int row)
+  {
+    checkRow(row);
+    return logPositions[row];
+  }
+
+  /**
+   * Sets the logarithmic position of an entry (for visualization).
+   *
+   * @param row the row index
+   * @param logPosition the logarithmic position to set
+   */
+  public void setLogPosition(int row, float logPosition)
+  {
+    checkRow(row);
+    logPositions[row] = logPosition;
+  }
+
+  /**
+   * Materializes an entry as a standalone {@link DicomEntry}.
+   *
+   * @param row the row index
+   * @return a new entry holding a copy of the row
+   */
+  public DicomEntry get(int row)
+  {
+    checkRow(row);
+
+    DicomEntry entry = new DicomEntry(row);
+    entry.setTag(tags[row]);
+    entry.setGroup(getGroup(row));
+    entry.setElement(getElement(row));
+    entry.setLevel(levels[row]);
+    entry.setVr(getVr(row));
+    entry.setPrivateCreator(isPrivateCreator(row));
+    entry.setPrivateTag(isPrivateTag(row));
+    entry.setLogLength(logLengths[row]);
+    entry.setLogPosition(logPositions[row]);
+    return entry;
+  }
+
+  private void checkRow(int row)
+  {
+    if (row < 0 || row >= size)
+    {
+      throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+    }
+  }
+}
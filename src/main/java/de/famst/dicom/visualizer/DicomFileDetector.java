@@ -3,13 +3,21 @@ package de.famst.dicom.visualizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 
 /**
  * Utility class to detect DICOM files by checking for the DICM magic number.
+ * Files found by a directory walk are detected from the attributes the walk already collected,
+ * a detected file stays open so it can be parsed without opening it again.
  */
 public class DicomFileDetector
 {
@@ -17,6 +25,7 @@ public class DicomFileDetector
 
   private static final byte[] DICOM_PREFIX = new byte[]{'D', 'I', 'C', 'M'};
   private static final int DICOM_PREFIX_OFFSET = 128;
+  private static final int PREAMBLE_LENGTH = DICOM_PREFIX_OFFSET + DICOM_PREFIX.length;
 
   /**
    * Checks if a file is a valid DICOM file by reading the DICM prefix at byte offset 128.
@@ -32,43 +41,161 @@ public class DicomFileDetector
       return false;
     }
 
-    if (!filePath.toFile().exists())
+    BasicFileAttributes attributes;
+    try
+    {
+      attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+    }
+    catch (NoSuchFileException e)
     {
       LOG.warn("File does not exist: {}", filePath);
       return false;
     }
+    catch (IOException e)
+    {
+      LOG.warn("Error reading attributes of file [{}]: {}", filePath, e.getMessage());
+      return false;
+    }
+
+    try (DetectedDicomFile file = detect(filePath, attributes))
+    {
+      return file != null;
+    }
+  }
+
+  /**
+   * Detects a DICOM file from the attributes collected while walking a directory. Directories,
+   * special files and files too short for the DICM prefix are rejected from the attributes
+   * alone, only the target of a symbolic link needs its attributes to be read. Other files are
+   * opened once and the DICM prefix is read, a detected file is returned open for parsing.
+   *
+   * @param filePath the path to the file to check
+   * @param attributes the attributes of the file
+   * @return the open file, or null if the file is no DICOM file or cannot be read
+   * @throws IllegalArgumentException if the path or the attributes are null
+   */
+  public static DetectedDicomFile detect(Path filePath, BasicFileAttributes attributes)
+  {
+    if (filePath == null)
+    {
+      throw new IllegalArgumentException("File path cannot be null");
+    }
+    if (attributes == null)
+    {
+      throw new IllegalArgumentException("File attributes cannot be null");
+    }
+
+    if (attributes.isSymbolicLink())
+    {
+      // a walk reports links themselves, only their target needs to be read once more
+      try
+      {
+        attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+      }
+      catch (IOException e)
+      {
+        LOG.warn("Error reading attributes of link [{}]: {}", filePath, e.getMessage());
+        return null;
+      }
+    }
 
-    if (!filePath.toFile().isFile())
+    if (!attributes.isRegularFile())
     {
       LOG.warn("Path is not a file: {}", filePath);
-      return false;
+      return null;
+    }
+    if (attributes.size() < PREAMBLE_LENGTH)
+    {
+      LOG.debug("File too short to be DICOM (only {} bytes): {}", attributes.size(), filePath);
+      return null;
     }
 
-    try (FileInputStream inStream = new FileInputStream(filePath.toFile()))
+    FileChannel channel = null;
+    try
     {
-      byte[] buffer = new byte[DICOM_PREFIX.length];
+      channel = FileChannel.open(filePath, StandardOpenOption.READ);
 
-      long skipped = inStream.skip(DICOM_PREFIX_OFFSET);
-      if (skipped != DICOM_PREFIX_OFFSET)
+      ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+      while (preamble.hasRemaining())
       {
-        LOG.debug("File too short to be DICOM (only {} bytes): {}", skipped, filePath);
-        return false;
+        if (channel.read(preamble) < 0)
+        {
+          // the file was truncated since its attributes were read
+          break;
+        }
       }
 
-      int bytesRead = inStream.read(buffer);
-      if (bytesRead != DICOM_PREFIX.length)
+      if (preamble.hasRemaining() || !hasDicomPrefix(preamble.array()))
       {
-        LOG.debug("Could not read DICM prefix from file: {}", filePath);
-        return false;
+        channel.close();
+        return null;
       }
 
-      return Arrays.equals(buffer, DICOM_PREFIX);
+      return new DetectedDicomFile(filePath, attributes, channel, preamble.array());
     }
     catch (IOException e)
     {
       LOG.warn("Error reading file [{}]: {}", filePath, e.getMessage());
-      return false;
+      closeQuietly(channel);
+      return null;
     }
   }
 
+  private static void closeQuietly(FileChannel channel)
+  {
+    if (channel == null)
+    {
+      return;
+    }
+
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      LOG.debug("Error closing file: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Checks if a stream starts with the DICM prefix at byte offset 128.
+   * The stream is reset to its current position afterwards, so it can be parsed directly.
+   *
+   * @param inStream the stream to check, must support mark and reset
+   * @return true if the stream contains the DICM prefix, false otherwise
+   * @throws IOException if the stream cannot be read or reset
+   * @throws IllegalArgumentException if the stream is null or does not support mark and reset
+   */
+  public static boolean isDCMStream(InputStream inStream) throws IOException
+  {
+    if (inStream == null)
+    {
+      throw new IllegalArgumentException("Input stream cannot be null");
+    }
+    if (!inStream.markSupported())
+    {
+      throw new IllegalArgumentException("Input stream must support mark and reset");
+    }
+
+    inStream.mark(PREAMBLE_LENGTH);
+    try
+    {
+      byte[] preamble = inStream.readNBytes(PREAMBLE_LENGTH);
+      return preamble.length == PREAMBLE_LENGTH && hasDicomPrefix(preamble);
+    }
+    finally
+    {
+      inStream.reset();
+    }
+  }
+
+  /**
+   * Checks the DICM prefix in a preamble of at least 132 bytes.
+   */
+  private static boolean hasDicomPrefix(byte[] preamble)
+  {
+    return Arrays.equals(preamble, DICOM_PREFIX_OFFSET, PREAMBLE_LENGTH, DICOM_PREFIX, 0, DICOM_PREFIX.length);
+  }
+
 }
@@ -1,23 +1,29 @@
 package de.famst.dicom.visualizer;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.dcm4che3.data.*;
 import org.dcm4che3.io.DicomInputHandler;
 import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.util.StreamUtils;
 import org.dcm4che3.util.TagUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Optional;
-
-import static java.lang.Math.log;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 
 /**
- * Parsing a DICOM file and extracting meta-information and all entries
+ * Parsing a DICOM file and extracting meta-information and all entries.
+ * Besides files, objects held in memory or read from a stream can be parsed directly.
+ * Data sets in the Deflated Explicit VR Little Endian transfer syntax are inflated incrementally,
+ * their entries report the offset in the inflated stream as well as in the compressed file.
  */
 public class DicomParser implements DicomInputHandler
 {
@@ -29,26 +35,55 @@ public class DicomParser implements DicomInputHandler
   private String siuid;
   private String modality;
 
-  private List<DicomEntry> entries = new ArrayList<>();
+  private final DicomEntryTable entries;
   private float length;
+  private long allocatedBytes = -1;
+  private long deflatedLength = -1;
+  private long inflateNanos = -1;
+
+  // the fragments of the encapsulated pixel data being read and the row of their run
+  private Fragments fragments;
+  private int fragmentRun = -1;
+
+  // the last distinct item read on each nesting level, repeated items are collapsed into its run
+  private ItemTemplate[] itemTemplates = new ItemTemplate[4];
 
-  private int idx;
+  // set to the level of a sequence below the depth limit while its nested elements are counted
+  private int aggregateLevel = -1;
+  private int aggregateElements;
+  private int aggregateDepth;
+
+  // set while reading an inflated data set, whose stream positions start behind the file meta information
+  private InflatingInputStream inflating;
+  private long positionBase;
 
   private static final int DEFAULT_WIDTH = 130;
+  private static final int ITEM_HEADER_LENGTH = 8;
   private int width = DEFAULT_WIDTH;
-  private DicomInputStream dis;
-  private StringBuilder line;
-  private DicomEntry entry;
+
+  private final ParserOptions options;
+  private final boolean dump;
+
+  // creator blocks of the datasets being read, only tracked for the dump
+  private final PrivateKeywordCache privateKeywords;
+
+  /**
+   * Opens the raw input stream of a source, the stream is closed by the parser.
+   */
+  @FunctionalInterface
+  private interface StreamSource
+  {
+    InputStream open() throws IOException;
+  }
 
   static public DicomParser parseFile(String fileName)
   {
-    return new DicomParser(fileName);
+    return parseFile(fileName, new ParserOptions());
   }
 
-  private DicomParser(String fileName)
+  static public DicomParser parseFile(String fileName, ParserOptions options)
   {
-    this.fileName = fileName;
-    idx = 0;
+    checkOptions(options);
 
     File file = new File(fileName);
     if (!file.exists())
@@ -64,34 +99,367 @@ public class DicomParser implements DicomInputHandler
       throw new IllegalArgumentException("File is not readable: " + fileName);
     }
 
-    readContent(file);
+    DicomParser parser = new DicomParser(fileName, options);
+    parser.readContent(file.getAbsolutePath(), () -> parser.openStream(file));
+    return parser;
+  }
+
+  /**
+   * Parses a file whose attributes were already read, e.g. by the directory walk. The file is
+   * not checked again, a file that has disappeared since fails on opening.
+   *
+   * @param path the path to the DICOM file
+   * @param attributes the attributes of the file
+   * @param options the parser options
+   * @return the parser holding the parsed entries
+   * @throws IllegalArgumentException if an argument is null or the attributes are no regular file
+   */
+  static public DicomParser parseFile(Path path, BasicFileAttributes attributes, ParserOptions options)
+  {
+    checkOptions(options);
+    if (path == null)
+    {
+      throw new IllegalArgumentException("Path cannot be null");
+    }
+    if (attributes == null)
+    {
+      throw new IllegalArgumentException("Attributes cannot be null");
+    }
+    if (!attributes.isRegularFile())
+    {
+      throw new IllegalArgumentException("Path is not a file: " + path);
+    }
+
+    File file = path.toFile();
+    DicomParser parser = new DicomParser(path.toString(), options);
+    parser.readContent(file.getAbsolutePath(), () -> parser.openStream(file));
+    return parser;
   }
 
-  private void readContent(File file)
+  /**
+   * Parses a file kept open by the {@link DicomFileDetector}. The file is neither checked nor
+   * opened again, its first bytes are taken from the detection.
+   *
+   * @param file the detected file, it is closed once read
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseDetectedFile(DetectedDicomFile file)
   {
-    LOG.info("parsing DICOM file {}", file.getAbsolutePath());
+    return parseDetectedFile(file, new ParserOptions());
+  }
 
-    try (DicomInputStream dis = new DicomInputStream(file))
+  /**
+   * Parses a file kept open by the {@link DicomFileDetector} using the given options.
+   *
+   * @param file the detected file, it is closed once read
+   * @param options the parser options
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseDetectedFile(DetectedDicomFile file, ParserOptions options)
+  {
+    checkOptions(options);
+    if (file == null)
     {
-      dis.setIncludeBulkData(DicomInputStream.IncludeBulkData.NO);
-      dis.setDicomInputHandler(this);
-      dis.readDataset(-1, -1);
+      throw new IllegalArgumentException("File cannot be null");
+    }
+
+    String fileName = file.getPath().toString();
+    DicomParser parser = new DicomParser(fileName, options);
+    try (file)
+    {
+      parser.readContent(fileName, () -> file.openStream(options.isMemoryMapped()));
+    }
+    return parser;
+  }
+
+  /**
+   * Parses a DICOM object held in a byte array.
+   *
+   * @param sourceName the name reported as file name, e.g. the name of the received object
+   * @param data the encoded DICOM object, with or without preamble
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseBytes(String sourceName, byte[] data)
+  {
+    return parseBytes(sourceName, data, new ParserOptions());
+  }
+
+  /**
+   * Parses a DICOM object held in a byte array using the given options.
+   *
+   * @param sourceName the name reported as file name, e.g. the name of the received object
+   * @param data the encoded DICOM object, with or without preamble
+   * @param options the parser options, memory mapping does not apply
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseBytes(String sourceName, byte[] data, ParserOptions options)
+  {
+    if (data == null)
+    {
+      throw new IllegalArgumentException("Data cannot be null");
+    }
+
+    return parseBuffer(sourceName, ByteBuffer.wrap(data), options);
+  }
+
+  /**
+   * Parses a DICOM object held in a buffer, from its position to its limit.
+   *
+   * @param sourceName the name reported as file name, e.g. the name of the received object
+   * @param buffer the encoded DICOM object, with or without preamble
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseBuffer(String sourceName, ByteBuffer buffer)
+  {
+    return parseBuffer(sourceName, buffer, new ParserOptions());
+  }
+
+  /**
+   * Parses a DICOM object held in a buffer, from its position to its limit, using the given
+   * options. The position of the buffer is not changed.
+   *
+   * @param sourceName the name reported as file name, e.g. the name of the received object
+   * @param buffer the encoded DICOM object, with or without preamble
+   * @param options the parser options, memory mapping does not apply
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseBuffer(String sourceName, ByteBuffer buffer, ParserOptions options)
+  {
+    checkOptions(options);
+    if (buffer == null)
+    {
+      throw new IllegalArgumentException("Buffer cannot be null");
+    }
+
+    ByteBuffer content = buffer.duplicate();
+    DicomParser parser = new DicomParser(sourceName, options);
+    parser.readContent(sourceName, () -> new ByteBufferInputStream(content));
+    return parser;
+  }
+
+  /**
+   * Parses a DICOM object from a stream, which needs to support neither mark nor skip. The
+   * stream is not closed, its position afterwards is unspecified.
+   *
+   * @param sourceName the name reported as file name, e.g. the name of the received object
+   * @param in the stream positioned at the start of the DICOM object
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseStream(String sourceName, InputStream in)
+  {
+    return parseStream(sourceName, in, new ParserOptions());
+  }
+
+  /**
+   * Parses a DICOM object from a stream using the given options. The data set is read up to its
+   * end, or up to the pixel data in header-only mode, the stream is not closed.
+   * <p>
+   * The position of the stream afterwards is unspecified. A stream without mark support is read
+   * through a buffer, which may read ahead behind the object, and a deflated data set is inflated
+   * in blocks. Several objects following each other in one stream cannot be parsed one after the
+   * other, each object needs a stream of its own, like the entries of an archive.
+   *
+   * @param sourceName the name reported as file name, e.g. the name of the received object
+   * @param in the stream positioned at the start of the DICOM object
+   * @param options the parser options, memory mapping does not apply
+   * @return the parser holding the parsed entries
+   */
+  static public DicomParser parseStream(String sourceName, InputStream in, ParserOptions options)
+  {
+    checkOptions(options);
+    if (in == null)
+    {
+      throw new IllegalArgumentException("Input stream cannot be null");
+    }
+
+    DicomParser parser = new DicomParser(sourceName, options);
+    parser.readContent(sourceName, () -> CloseShieldInputStream.wrap(in));
+    return parser;
+  }
+
+  /**
+   * Recreates a parser from previously parsed content without reading the source again.
+   * Only the layout is computed from the given entries.
+   */
+  static DicomParser restore(String fileName, ParserOptions options, String stuid, String seuid,
+                             String siuid, String modality, DicomEntryTable entries)
+  {
+    DicomParser parser = new DicomParser(fileName, options, entries);
+    parser.stuid = stuid;
+    parser.seuid = seuid;
+    parser.siuid = siuid;
+    parser.modality = modality;
+    parser.layout();
+    return parser;
+  }
+
+  private static void checkOptions(ParserOptions options)
+  {
+    if (options == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+  }
+
+  private DicomParser(String fileName, ParserOptions options)
+  {
+    this(fileName, options, new DicomEntryTable());
+  }
+
+  private DicomParser(String fileName, ParserOptions options, DicomEntryTable entries)
+  {
+    this.fileName = fileName;
+    this.entries = entries;
+    this.options = options;
+    this.dump = !options.isStructureOnly() && LOG.isDebugEnabled();
+    this.privateKeywords = dump ? new PrivateKeywordCache() : null;
+  }
+
+  private void readContent(String sourceName, StreamSource source)
+  {
+    LOG.info("parsing DICOM file {}", sourceName);
+
+    long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+
+    try (InputStream in = source.open())
+    {
+      // without its own buffer the stream stops exactly behind the file meta information
+      InputStream raw = in.markSupported() ? in : new BufferedInputStream(in);
+      DicomInputStream dis = new DicomInputStream(raw);
+      configure(dis);
+      dis.readFileMetaInformation();
+
+      if (UID.DeflatedExplicitVRLittleEndian.equals(dis.getTransferSyntax()))
+      {
+        readDeflated(raw, dis.getPosition());
+      }
+      else
+      {
+        readDataset(dis);
+      }
     }
     catch (IOException e)
     {
-      LOG.error("Error reading DICOM file [{}]", file.getAbsolutePath(), e);
-      throw new RuntimeException("Failed to read DICOM file: " + file.getAbsolutePath(), e);
+      LOG.error("Error reading DICOM file [{}]", sourceName, e);
+      throw new RuntimeException("Failed to read DICOM file: " + sourceName, e);
+    }
+
+    layout();
+
+    if (allocatedBefore >= 0)
+    {
+      allocatedBytes = AllocationMeter.currentThreadAllocatedBytes() - allocatedBefore;
+      LOG.info("Allocated [{}] bytes for [{}] entries", allocatedBytes, getEntries().size());
+    }
+  }
+
+  private void configure(DicomInputStream dis)
+  {
+    dis.setIncludeBulkData(DicomInputStream.IncludeBulkData.NO);
+    dis.setDicomInputHandler(this);
+  }
+
+  /**
+   * Reads the data set, or only its header in header-only mode.
+   */
+  private void readDataset(DicomInputStream dis) throws IOException
+  {
+    if (options.isHeaderOnly())
+    {
+      readHeader(dis);
+    }
+    else
+    {
+      dis.readDataset(-1, -1);
+    }
+  }
+
+  /**
+   * Reads a deflated data set through an incremental inflater. The entries keep the positions
+   * in the inflated stream behind the file meta information as offsets, and get the positions in
+   * the compressed data as file offsets.
+   */
+  private void readDeflated(InputStream raw, long datasetPosition) throws IOException
+  {
+    int bufferSize = options.getInflateBufferSize();
+    InflatingInputStream inflater = new InflatingInputStream(raw, bufferSize);
+
+    inflating = inflater;
+    positionBase = datasetPosition;
+
+    try (inflater)
+    {
+      DicomInputStream dis = new DicomInputStream(new BufferedInputStream(inflater, bufferSize),
+        UID.ExplicitVRLittleEndian);
+      configure(dis);
+      readDataset(dis);
+    }
+    finally
+    {
+      inflating = null;
+      positionBase = 0;
+
+      deflatedLength = inflater.getCompressedBytes();
+      inflateNanos = inflater.getInflateNanos();
+      LOG.info("Inflated [{}] bytes from [{}] bytes in [{}] ms", inflater.getInflatedBytes(), deflatedLength,
+        inflateNanos / 1_000_000);
+    }
+  }
+
+  /**
+   * Opens the file either through plain stream reads or through memory mapping.
+   */
+  private InputStream openStream(File file) throws IOException
+  {
+    if (!options.isMemoryMapped())
+    {
+      return new FileInputStream(file);
+    }
+
+    return new MappedFileInputStream(file.toPath());
+  }
+
+  /**
+   * Reads the data set up to the pixel data. The pixel data is recorded from its header, for
+   * encapsulated pixel data only the item headers of the fragments are read. Everything behind
+   * the pixel data is not read.
+   */
+  private void readHeader(DicomInputStream dis) throws IOException
+  {
+    Attributes attrs = dis.readDataset(-1, Tag.PixelData);
+
+    // the stop tag ends the data set with the pixel data header already consumed
+    if (dis.tag() == Tag.PixelData && dis.level() == 0)
+    {
+      if (dis.length() == -1)
+      {
+        readValue(dis, attrs);
+      }
+      else
+      {
+        addEntry(dis);
+      }
     }
   }
 
   @Override
   public void readValue(DicomInputStream dis, Attributes attrs) throws IOException
   {
-    StringBuilder line = new StringBuilder(width + 30);
-    DicomEntry entry = new DicomEntry(idx++);
+    if (aggregateLevel >= 0)
+    {
+      countAggregated(dis, attrs);
+      return;
+    }
 
-    appendPrefix(dis, line, entry);
-    appendHeader(dis, line, entry);
+    int row = addEntry(dis);
+    StringBuilder line = null;
+
+    if (dump)
+    {
+      line = new StringBuilder(width + 30);
+      appendPrefix(dis, line);
+      appendHeader(dis, line);
+    }
 
     VR vr = dis.vr();
     int valueLength = dis.length();
@@ -100,124 +468,281 @@ public class DicomParser implements DicomInputHandler
     // sequence is intended
     if (vr == VR.SQ || isValueLengthUndefined)
     {
-      appendKeyword(dis, line, entry);
-      LOG.debug("S:{}", line);
-      getEntries().add(entry);
+      if (dump)
+      {
+        appendKeyword(dis, attrs, line);
+        LOG.debug("S:{}", line);
+      }
+
+      if (vr == VR.SQ && dis.level() >= options.getMaxDepth())
+      {
+        readAggregate(dis, attrs, row);
+        return;
+      }
 
       dis.readValue(dis, attrs);
 
       if (isValueLengthUndefined)
       {
-        line.setLength(0);
-        entry = new DicomEntry(idx++);
+        addEntry(dis);
+
+        if (dump)
+        {
+          line.setLength(0);
+          appendPrefix(dis, line);
+          appendHeader(dis, line);
+          appendKeyword(dis, attrs, line);
+          LOG.debug("I:{}", line);
+        }
+      }
 
-        appendPrefix(dis, line, entry);
-        appendHeader(dis, line, entry);
-        appendKeyword(dis, line, entry);
+      return;
+    }
+
+    int tag = dis.tag();
 
-        LOG.debug("I:{}", line);
-        getEntries().add(entry);
+    if (isSkippedValue(tag, valueLength & 0xFFFFFFFFL))
+    {
+      if (dump)
+      {
+        appendKeyword(dis, attrs, line);
+        LOG.debug("E:{}", line);
       }
 
+      StreamUtils.skipFully(dis, valueLength & 0xFFFFFFFFL);
       return;
     }
 
-    int tag = dis.tag();
-    byte[] b = dis.readValue();
+    if (dump)
+    {
+      byte[] b = dis.readValue();
 
-    line.append(" [");
-    if (vr.prompt(b, dis.bigEndian(),
-      attrs.getSpecificCharacterSet(),
-      width - line.length() - 1, line))
+      line.append(" [");
+      if (vr.prompt(b, dis.bigEndian(),
+        attrs.getSpecificCharacterSet(),
+        width - line.length() - 1, line))
+      {
+        line.append(']');
+        appendKeyword(dis, attrs, line);
+      }
+
+      LOG.debug("E:{}", line);
+      extractValue(dis, attrs, tag, vr, b, b.length);
+      return;
+    }
+
+    // values are read into the thread's pooled buffer, only retained values are copied
+    byte[] buffer = ValueBufferPool.get().acquire(valueLength);
+    StreamUtils.readFully(dis, buffer, 0, valueLength);
+    extractValue(dis, attrs, tag, vr, buffer, valueLength);
+  }
+
+  /**
+   * Reads a sequence on the depth limit into one aggregate entry. Its items are read through the
+   * stream to count their elements and levels, but no entries are added for them.
+   */
+  private void readAggregate(DicomInputStream dis, Attributes attrs, int row) throws IOException
+  {
+    long valuePosition = dis.getPosition();
+
+    aggregateLevel = dis.level();
+    aggregateElements = 0;
+    aggregateDepth = 0;
+    try
     {
-      line.append(']');
-      appendKeyword(dis, line, entry);
+      dis.readValue(dis, attrs);
+    }
+    finally
+    {
+      aggregateLevel = -1;
     }
 
-    LOG.debug("E:{}", line);
-    getEntries().add(entry);
+    entries.setAggregate(row, dis.getPosition() - valuePosition, aggregateElements, aggregateDepth);
+  }
+
+  /**
+   * Counts an element nested in an aggregate sequence and skips its value.
+   */
+  private void countAggregated(DicomInputStream dis, Attributes attrs) throws IOException
+  {
+    aggregateElements++;
+    aggregateDepth = Math.max(aggregateDepth, dis.level() - aggregateLevel);
+
+    if (dis.vr() == VR.SQ || dis.length() == -1)
+    {
+      dis.readValue(dis, attrs);
+    }
+    else
+    {
+      StreamUtils.skipFully(dis, dis.length() & 0xFFFFFFFFL);
+    }
+  }
 
+  /**
+   * Hands a value needed by the stream to the input stream or the attributes and extracts the
+   * UIDs and Modality. The buffer may be longer than the value and is not retained.
+   */
+  private void extractValue(DicomInputStream dis, Attributes attrs, int tag, VR vr,
+                            byte[] buffer, int valueLength)
+  {
     if (tag == Tag.FileMetaInformationGroupLength)
     {
-      dis.setFileMetaInformationGroupLength(b);
+      dis.setFileMetaInformationGroupLength(buffer);
     }
     else if (tag == Tag.TransferSyntaxUID
-      || tag == Tag.SpecificCharacterSet
-      || TagUtils.isPrivateCreator(tag))
+      || tag == Tag.SpecificCharacterSet)
+    {
+      attrs.setBytes(tag, vr, Arrays.copyOf(buffer, valueLength));
+    }
+    else if (TagUtils.isPrivateCreator(tag))
     {
-      attrs.setBytes(tag, vr, b);
+      attrs.setBytes(tag, vr, Arrays.copyOf(buffer, valueLength));
+
+      // creators are only resolved for the keywords of the dump
+      if (dump)
+      {
+        privateKeywords.addCreator(attrs, dis.level(), tag, ValueBufferPool.decodeAscii(buffer, valueLength));
+      }
     }
 
     // extract UIDs and Modality from file
     else if (tag == Tag.StudyInstanceUID)
     {
-      StringBuilder value = new StringBuilder();
-      vr.prompt(b, dis.bigEndian(), attrs.getSpecificCharacterSet(), 120, value);
-      stuid = value.toString();
+      stuid = ValueBufferPool.decodeAscii(buffer, valueLength);
     }
     else if (tag == Tag.SeriesInstanceUID)
     {
-      StringBuilder value = new StringBuilder();
-      vr.prompt(b, dis.bigEndian(), attrs.getSpecificCharacterSet(), 120, value);
-      seuid = value.toString();
+      seuid = ValueBufferPool.decodeAscii(buffer, valueLength);
     }
     else if (tag == Tag.SOPInstanceUID)
     {
-      StringBuilder value = new StringBuilder();
-      vr.prompt(b, dis.bigEndian(), attrs.getSpecificCharacterSet(), 120, value);
-      siuid = value.toString();
+      siuid = ValueBufferPool.decodeAscii(buffer, valueLength);
     }
-    else if(tag == Tag.Modality)
+    else if (tag == Tag.Modality)
     {
-      StringBuilder value = new StringBuilder();
-      vr.prompt(b, dis.bigEndian(), attrs.getSpecificCharacterSet(), 120, value);
-      modality = value.toString();
+      modality = ValueBufferPool.decodeAscii(buffer, valueLength);
     }
-
   }
 
   @Override
   public void readValue(DicomInputStream dis, Sequence seq) throws IOException
   {
-    StringBuilder line = new StringBuilder(width);
-    DicomEntry entry = new DicomEntry(idx++);
+    if (aggregateLevel >= 0)
+    {
+      dis.readValue(dis, seq);
+      return;
+    }
 
-    appendPrefix(dis, line, entry);
-    appendHeader(dis, line, entry);
-    appendKeyword(dis, line, entry);
-    appendNumber(seq.size() + 1, line, entry);
+    int itemRow = addEntry(dis);
+    long itemPosition = dis.getTagPosition();
 
-    LOG.debug("SQ:{}", line);
-    getEntries().add(entry);
+    StringBuilder line = null;
+    if (dump)
+    {
+      line = new StringBuilder(width);
+      appendPrefix(dis, line);
+      appendHeader(dis, line);
+      appendKeyword(dis, seq.getParent(), line);
+      appendNumber(seq.size() + 1, line);
+      LOG.debug("SQ:{}", line);
+    }
 
     boolean undeflen = dis.length() == -1;
     dis.readValue(dis, seq);
 
     if (undeflen)
     {
-      line.setLength(0);
-      entry = new DicomEntry(idx++);
+      addEntry(dis);
 
-      appendPrefix(dis, line, entry);
-      appendHeader(dis, line, entry);
-      appendKeyword(dis, line, entry);
-      LOG.debug("SQI:{}", line);
-      getEntries().add(entry);
+      if (dump)
+      {
+        line.setLength(0);
+        appendPrefix(dis, line);
+        appendHeader(dis, line);
+        appendKeyword(dis, seq.getParent(), line);
+        LOG.debug("SQI:{}", line);
+      }
+    }
+
+    if (options.isCollapseRepeatedItems())
+    {
+      // the value length of an item of undefined length includes its delimitation item
+      collapseItem(seq, itemRow, dis.getPosition() - itemPosition - ITEM_HEADER_LENGTH);
     }
   }
 
+  /**
+   * Collapses a completely read item into the run of the previous item of its sequence if both
+   * have the same structure, otherwise the item becomes the template for the following items.
+   */
+  private void collapseItem(Sequence seq, int itemRow, long itemLength)
+  {
+    int level = entries.getLevel(itemRow);
+    if (level >= itemTemplates.length)
+    {
+      itemTemplates = Arrays.copyOf(itemTemplates, Math.max(level + 1, itemTemplates.length * 2));
+    }
+
+    ItemTemplate template = itemTemplates[level];
+    if (template == null)
+    {
+      template = new ItemTemplate();
+      itemTemplates[level] = template;
+    }
+
+    int end = entries.size();
+    boolean collapsible = itemLength >= 0 && itemLength < 0xFFFFFFFFL;
+
+    if (collapsible && template.sequence == seq
+      && entries.hasSameStructure(template.row, template.end, itemRow, end))
+    {
+      entries.addToRun(template.row, template.length, (int) itemLength);
+      entries.truncate(itemRow);
+      return;
+    }
+
+    template.sequence = collapsible ? seq : null;
+    template.row = itemRow;
+    template.end = end;
+    template.length = (int) itemLength;
+  }
+
   @Override
   public void readValue(DicomInputStream dis, Fragments frags) throws IOException
   {
-    StringBuilder line = new StringBuilder(width + 20);
-    DicomEntry entry = new DicomEntry(idx++);
+    if (aggregateLevel >= 0)
+    {
+      StreamUtils.skipFully(dis, dis.length() & 0xFFFFFFFFL);
+      return;
+    }
 
-    appendPrefix(dis, line, entry);
-    appendHeader(dis, line, entry);
-    appendFragment(line, dis, frags.vr(), entry);
+    // the first item is the basic offset table, the following fragments are collapsed into one run
+    if (frags != fragments)
+    {
+      fragments = frags;
+      fragmentRun = -1;
+      addEntry(dis);
+    }
+    else if (fragmentRun < 0)
+    {
+      fragmentRun = addEntry(dis);
+    }
+    else
+    {
+      entries.addToRun(fragmentRun, dis.length());
+    }
+
+    if (dump)
+    {
+      StringBuilder line = new StringBuilder(width);
+      appendPrefix(dis, line);
+      appendHeader(dis, line);
+      appendKeyword(dis, null, line);
+      LOG.debug("F:{}", line);
+    }
 
-    LOG.debug("F:{}", line);
-    getEntries().add(entry);
+    // offset and length are taken from the item header, the compressed payload is never loaded
+    StreamUtils.skipFully(dis, dis.length() & 0xFFFFFFFFL);
   }
 
   @Override
@@ -229,79 +754,96 @@ public class DicomParser implements DicomInputHandler
   @Override
   public void endDataset(DicomInputStream dis) throws IOException
   {
-    // min length is 1.0f
-    getEntries().forEach(e ->
-    {
-      if (e.getLogLength() < 1.0)
-      {
-        e.setLogLength(1.0f);
-      }
-    });
-
-    Optional<DicomEntry> maxLengthEntry = getEntries().stream().max(Comparator.comparing(e -> e.getLogLength()));
-    Optional<DicomEntry> minLengthEntry = getEntries().stream().min(Comparator.comparing(e -> e.getLogLength()));
 
-    float minV = 1.0f;
-    float maxV = 100.0f;
-
-    if (maxLengthEntry.isPresent() && minLengthEntry.isPresent())
-    {
-      minV = minLengthEntry.get().getLogLength();
-      maxV = maxLengthEntry.get().getLogLength();
-    }
+  }
 
-    LOG.info("Min tag length [{}]", String.format("%6.3e", minV));
-    LOG.info("Max tag length [{}]", String.format("%6.3e", maxV));
+  /**
+   * Scales the entry lengths logarithmically and computes their positions, for this file on its own.
+   */
+  private void layout()
+  {
+    LOG.info("Min tag length [{}]", String.format("%6.3e", (float) entries.getMinLength()));
+    LOG.info("Max tag length [{}]", String.format("%6.3e", (float) entries.getMaxLength()));
 
-    float minT = 1.0f;
-    float maxT = 70.0f;
+    layout(LayoutEngine.forFile(entries));
+  }
 
-    float finalMinV = minV;
-    float finalMaxV = 1.2E7f; //maxV;
+  /**
+   * Scales the entry lengths logarithmically and computes their positions with the given engine,
+   * e.g. one normalized over all files of a study.
+   *
+   * @param engine the layout engine
+   */
+  void layout(LayoutEngine engine)
+  {
+    length = engine.layout(entries);
 
-    LOG.debug("Min scaled length [{}]", String.format("%6.3e", minT));
-    LOG.debug("Max scaled length [{}]", String.format("%6.3e", maxT));
+    LOG.info("Total length [{}]", String.format("%6.3e", getLength()));
+  }
 
-    float[] pos = new float[1];
-    pos[0] = 0.0f;
+  /**
+   * Adds an entry for the header the stream is currently positioned on.
+   */
+  private int addEntry(DicomInputStream dis)
+  {
+    long position = dis.getTagPosition();
+    int row = entries.add(dis.tag(), dis.vr(), dis.level(), positionBase + position, dis.length());
 
-    getEntries().forEach(e ->
+    if (inflating != null)
     {
-      double v = e.getLogLength();
-      v = (maxT - minT) * (log(v) - log(finalMinV)) / (log(finalMaxV) - minT) + minT;
-      e.setLogLength((float) v);
-      e.setLogPosition(pos[0]);
-
-      pos[0] = pos[0] + (float) v;
-    });
-
-    length = pos[0];
+      entries.setFileOffset(row, positionBase + inflating.getCompressedPosition(position));
+    }
 
-    LOG.info("Total length [{}]", String.format("%6.3e", getLength()));
+    return row;
+  }
 
-    getEntries().forEach(e ->
+  /**
+   * Checks if a value is skipped in the stream instead of being read. Values needed by the
+   * stream or the extraction are always read, all others only in full mode and up to the
+   * configured maximum value length.
+   */
+  private boolean isSkippedValue(int tag, long valueLength)
+  {
+    if (isExtractedTag(tag))
     {
-      LOG.debug("[{}:{}:{}] \t level[{}] #[{}]", e.getLogPosition(), TagUtils.toString(e.getTag()), e.getVr(), e.getLevel(), e.getLogLength());
-    });
+      return false;
+    }
 
+    return options.isStructureOnly() || valueLength > options.getMaxValueLength();
+  }
 
+  /**
+   * Checks if the value of a tag is needed by the stream itself or by the UID/Modality extraction.
+   */
+  private static boolean isExtractedTag(int tag)
+  {
+    switch (tag)
+    {
+      case Tag.FileMetaInformationGroupLength:
+      case Tag.TransferSyntaxUID:
+      case Tag.SpecificCharacterSet:
+      case Tag.StudyInstanceUID:
+      case Tag.SeriesInstanceUID:
+      case Tag.SOPInstanceUID:
+      case Tag.Modality:
+        return true;
+      default:
+        return TagUtils.isPrivateCreator(tag);
+    }
   }
 
   // appenders
 
-  private void appendPrefix(DicomInputStream dis, StringBuilder line, DicomEntry entry)
+  private void appendPrefix(DicomInputStream dis, StringBuilder line)
   {
-    line.append(dis.getTagPosition()).append(": ");
+    line.append(positionBase + dis.getTagPosition()).append(": ");
 
     int level = dis.level();
     while (level-- > 0)
       line.append('>');
-
-    entry.setLogPosition(dis.getTagPosition());
-    entry.setLevel(dis.level());
   }
 
-  private void appendHeader(DicomInputStream dis, StringBuilder line, DicomEntry entry)
+  private void appendHeader(DicomInputStream dis, StringBuilder line)
   {
     line.append(TagUtils.toString(dis.tag())).append(' ');
 
@@ -310,32 +852,20 @@ public class DicomParser implements DicomInputHandler
       line.append(vr).append(' ');
 
     line.append('#').append(dis.length());
-
-    entry.setTag(dis.tag());
-    entry.setGroup(TagUtils.groupNumber(dis.tag()));
-    entry.setElement(TagUtils.elementNumber(dis.tag()));
-    entry.setPrivateCreator(TagUtils.isPrivateCreator(dis.tag()));
-    entry.setPrivateTag(TagUtils.isPrivateTag(dis.tag()));
-
-    entry.setVr(vr);
-    entry.setLogLength(dis.length());
   }
 
-  private void appendKeyword(DicomInputStream dis, StringBuilder line, DicomEntry entry)
+  private void appendKeyword(DicomInputStream dis, Attributes dataset, StringBuilder line)
   {
-    this.dis = dis;
-    this.line = line;
-    this.entry = entry;
     if (line.length() < width)
     {
       line.append(" ");
-      line.append(ElementDictionary.keywordOf(dis.tag(), null));
+      line.append(privateKeywords.keywordOf(dataset, dis.level(), dis.tag()));
       if (line.length() > width)
         line.setLength(width);
     }
   }
 
-  private void appendNumber(int number, StringBuilder line, DicomEntry entry)
+  private void appendNumber(int number, StringBuilder line)
   {
     if (line.length() < width)
     {
@@ -346,19 +876,6 @@ public class DicomParser implements DicomInputHandler
     }
   }
 
-  private void appendFragment(StringBuilder line, DicomInputStream dis,
-                              VR vr, DicomEntry entry) throws IOException
-  {
-    byte[] b = dis.readValue();
-    line.append(" [");
-    if (vr.prompt(b, dis.bigEndian(), null,
-      width - line.length() - 1, line))
-    {
-      line.append(']');
-      appendKeyword(dis, line, entry);
-    }
-  }
-
   public String getFileName()
   {
     return fileName;
@@ -384,13 +901,126 @@ public class DicomParser implements DicomInputHandler
     return modality;
   }
 
-  public List<DicomEntry> getEntries()
+  public DicomEntryTable getEntries()
   {
     return entries;
   }
 
+  /**
+   * Gets the structural fingerprint of the parsed entries, equal for files with the same layout
+   * of elements, see {@link DicomEntryTable#getStructuralFingerprint()}.
+   *
+   * @return the structural fingerprint
+   */
+  public long getFingerprint()
+  {
+    return entries.getStructuralFingerprint();
+  }
+
   public float getLength()
   {
     return length;
   }
+
+  /**
+   * Gets the number of bytes the parsing thread allocated while reading this file.
+   *
+   * @return the allocated bytes, or -1 if the JVM cannot measure thread allocations
+   */
+  public long getAllocatedBytes()
+  {
+    return allocatedBytes;
+  }
+
+  /**
+   * Gets the number of frames of encapsulated pixel data. The count is taken from the Extended
+   * Offset Table if present, otherwise from the Basic Offset Table, otherwise one frame per
+   * fragment is assumed.
+   *
+   * @return the number of frames, or 0 if there is no encapsulated pixel data
+   */
+  public int getFrameCount()
+  {
+    DicomEntryTable table = getEntries();
+    long extendedOffsetTable = -1;
+
+    for (int row = 0; row < table.size(); row++)
+    {
+      if (table.getLevel(row) != 0)
+      {
+        continue;
+      }
+
+      int tag = table.getTag(row);
+      if (tag == Tag.ExtendedOffsetTable)
+      {
+        extendedOffsetTable = table.getRunLength(row);
+      }
+      else if (tag == Tag.PixelData)
+      {
+        return table.getLength(row) == -1 ? countFrames(table, row + 1, extendedOffsetTable) : 0;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Counts the frames of the encapsulated pixel data whose offset table is at the given row.
+   */
+  private static int countFrames(DicomEntryTable table, int offsetTableRow, long extendedOffsetTable)
+  {
+    if (extendedOffsetTable > 0)
+    {
+      return (int) (extendedOffsetTable / 8);
+    }
+    if (offsetTableRow >= table.size() || table.getTag(offsetTableRow) != Tag.Item)
+    {
+      return 0;
+    }
+
+    long basicOffsetTable = table.getRunLength(offsetTableRow);
+    if (basicOffsetTable > 0)
+    {
+      return (int) (basicOffsetTable / 4);
+    }
+
+    int frames = 0;
+    for (int row = offsetTableRow + 1; row < table.size() && table.getTag(row) == Tag.Item; row++)
+    {
+      frames += table.getRunCount(row);
+    }
+    return frames;
+  }
+
+  /**
+   * Gets the number of compressed bytes read from a deflated data set.
+   *
+   * @return the compressed bytes, or -1 if the data set was not deflated
+   */
+  public long getDeflatedLength()
+  {
+    return deflatedLength;
+  }
+
+  /**
+   * Gets the time spent inflating a deflated data set.
+   *
+   * @return the time in nanoseconds, or -1 if the data set was not deflated
+   */
+  public long getInflateNanos()
+  {
+    return inflateNanos;
+  }
+
+  /**
+   * The rows and the value length of the first item of a run of structurally identical items.
+   */
+  private static final class ItemTemplate
+  {
+    private Sequence sequence;
+    private int row;
+    private int end;
+    private int length;
+  }
 }
@@ -0,0 +1,292 @@
+package de.famst.dicom.visualizer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream inflating a deflated data set incrementally, one input buffer at a time.
+ * Besides the inflated content it keeps track of how much compressed input has been consumed
+ * and how long inflating took, and it maps positions in the inflated content back to positions
+ * in the compressed input. The mapping is exact to the granularity of one inflate call, which is
+ * bounded by the size of the reads on this stream.
+ * Raw deflate data is expected as required for the Deflated Explicit VR Little Endian transfer
+ * syntax, data with a zlib header is accepted as well.
+ */
+public class InflatingInputStream extends InputStream
+{
+  /**
+   * Default size in bytes of the buffer for compressed input.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  private static final int INITIAL_CHECKPOINTS = 64;
+
+  private final InputStream in;
+  private final Inflater inflater;
+  private final byte[] input;
+  private final byte[] single = new byte[1];
+  private byte[] skipBuffer;
+
+  private long compressedBytes;
+  private long inflatedBytes;
+  private long inflateNanos;
+  private boolean closed;
+
+  // positions in the inflated content and the compressed input at the start of each inflate call
+  private long[] inflatedPositions = new long[INITIAL_CHECKPOINTS];
+  private long[] compressedPositions = new long[INITIAL_CHECKPOINTS];
+  private int checkpoints;
+  private int cursor;
+
+  /**
+   * Creates a stream inflating the given stream with the default buffer size.
+   *
+   * @param in the stream positioned at the start of the deflated data
+   * @throws IOException if the start of the deflated data cannot be read
+   */
+  public InflatingInputStream(InputStream in) throws IOException
+  {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a stream inflating the given stream.
+   *
+   * @param in the stream positioned at the start of the deflated data, the stream is closed with this stream
+   * @param bufferSize the size in bytes of the buffer for compressed input
+   * @throws IOException if the start of the deflated data cannot be read
+   * @throws IllegalArgumentException if the stream is null or the buffer size is not positive
+   */
+  public InflatingInputStream(InputStream in, int bufferSize) throws IOException
+  {
+    if (in == null)
+    {
+      throw new IllegalArgumentException("Input stream cannot be null");
+    }
+    if (bufferSize <= 0)
+    {
+      throw new IllegalArgumentException("Buffer size must be positive, got: " + bufferSize);
+    }
+
+    this.in = in;
+    this.inflater = new Inflater(!hasZlibHeader(in));
+    this.input = new byte[bufferSize];
+  }
+
+  /**
+   * Checks for a zlib header in front of the deflate data, without consuming it.
+   */
+  private static boolean hasZlibHeader(InputStream in) throws IOException
+  {
+    if (!in.markSupported())
+    {
+      return false;
+    }
+
+    in.mark(2);
+    int b0 = in.read();
+    int b1 = in.read();
+    in.reset();
+
+    return b0 >= 0 && b1 >= 0 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0;
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (off < 0 || len < 0 || len > b.length - off)
+    {
+      throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len + ") out of bounds for length " + b.length);
+    }
+    if (closed)
+    {
+      throw new IOException("Stream closed");
+    }
+    if (len == 0)
+    {
+      return 0;
+    }
+
+    while (true)
+    {
+      if (inflater.finished())
+      {
+        return -1;
+      }
+      if (inflater.needsDictionary())
+      {
+        throw new ZipException("Deflated data requires a preset dictionary");
+      }
+      if (inflater.needsInput())
+      {
+        int n = in.read(input, 0, input.length);
+        if (n < 0)
+        {
+          throw new EOFException("Unexpected end of deflated data");
+        }
+        inflater.setInput(input, 0, n);
+      }
+
+      addCheckpoint();
+
+      int count;
+      long start = System.nanoTime();
+      try
+      {
+        count = inflater.inflate(b, off, len);
+      }
+      catch (DataFormatException e)
+      {
+        throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid deflated data");
+      }
+      inflateNanos += System.nanoTime() - start;
+      compressedBytes = inflater.getBytesRead();
+
+      if (count > 0)
+      {
+        inflatedBytes += count;
+        return count;
+      }
+    }
+  }
+
+  @Override
+  public long skip(long n) throws IOException
+  {
+    if (n <= 0)
+    {
+      return 0;
+    }
+    if (skipBuffer == null)
+    {
+      skipBuffer = new byte[input.length];
+    }
+
+    // deflated content cannot be skipped without inflating it
+    long skipped = 0;
+    while (skipped < n)
+    {
+      int count = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, n - skipped));
+      if (count < 0)
+      {
+        break;
+      }
+      skipped += count;
+    }
+
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException
+  {
+    return closed || inflater.finished() ? 0 : 1;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    if (!closed)
+    {
+      closed = true;
+      inflater.end();
+      in.close();
+    }
+  }
+
+  private void addCheckpoint()
+  {
+    long compressed = inflater.getBytesRead();
+    if (checkpoints > 0 && inflatedPositions[checkpoints - 1] == inflatedBytes)
+    {
+      // the previous call only consumed input, the next byte starts at the current input position
+      compressedPositions[checkpoints - 1] = compressed;
+      return;
+    }
+
+    if (checkpoints == inflatedPositions.length)
+    {
+      // positions behind the lookup cursor are no longer needed
+      if (cursor > checkpoints / 2)
+      {
+        checkpoints -= cursor;
+        System.arraycopy(inflatedPositions, cursor, inflatedPositions, 0, checkpoints);
+        System.arraycopy(compressedPositions, cursor, compressedPositions, 0, checkpoints);
+        cursor = 0;
+      }
+      else
+      {
+        inflatedPositions = Arrays.copyOf(inflatedPositions, checkpoints * 2);
+        compressedPositions = Arrays.copyOf(compressedPositions, checkpoints * 2);
+      }
+    }
+
+    inflatedPositions[checkpoints] = inflatedBytes;
+    compressedPositions[checkpoints] = compressed;
+    checkpoints++;
+  }
+
+  /**
+   * Gets the position in the compressed input of the inflate call that produced the byte at
+   * the given position of the inflated content. Positions have to be requested in ascending
+   * order, since the mapping for positions behind the last requested one is discarded.
+   *
+   * @param inflatedPosition the position in the inflated content
+   * @return the position in the compressed input, relative to the start of the deflated data
+   */
+  public long getCompressedPosition(long inflatedPosition)
+  {
+    if (checkpoints == 0)
+    {
+      return 0;
+    }
+
+    while (cursor + 1 < checkpoints && inflatedPositions[cursor + 1] <= inflatedPosition)
+    {
+      cursor++;
+    }
+
+    return compressedPositions[cursor];
+  }
+
+  /**
+   * Gets the number of compressed bytes consumed so far.
+   *
+   * @return the compressed bytes
+   */
+  public long getCompressedBytes()
+  {
+    return compressedBytes;
+  }
+
+  /**
+   * Gets the number of inflated bytes produced so far.
+   *
+   * @return the inflated bytes
+   */
+  public long getInflatedBytes()
+  {
+    return inflatedBytes;
+  }
+
+  /**
+   * Gets the time spent in inflate calls so far.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getInflateNanos()
+  {
+    return inflateNanos;
+  }
+}
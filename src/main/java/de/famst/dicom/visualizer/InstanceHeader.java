@@ -0,0 +1,321 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputHandler;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.util.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Identifying UIDs and Modality of one DICOM instance, read by a pre-scan of the file or taken
+ * from a DICOMDIR.
+ * The pre-scan stops behind the SeriesInstanceUID, so only the file meta information and the
+ * groups 0008 and 0020 up to that point are read. This is enough to group the instances of a
+ * study by series before any file is parsed completely.
+ */
+public final class InstanceHeader
+{
+  private static final Logger LOG = LoggerFactory.getLogger(InstanceHeader.class);
+
+  private final Path path;
+  private BasicFileAttributes attributes;
+  private String stuid;
+  private String seuid;
+  private String siuid;
+  private String modality;
+
+  private InstanceHeader(Path path)
+  {
+    this.path = path;
+  }
+
+  /**
+   * Opens the stream a header is scanned from.
+   */
+  @FunctionalInterface
+  private interface ScanSource
+  {
+    DicomInputStream open() throws IOException;
+  }
+
+  /**
+   * Pre-scans a DICOM file for its UIDs and Modality.
+   *
+   * @param path the path to the DICOM file
+   * @return the header of the instance
+   * @throws IllegalArgumentException if the path is null
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static InstanceHeader scan(Path path)
+  {
+    if (path == null)
+    {
+      throw new IllegalArgumentException("Path cannot be null");
+    }
+
+    return scan(path, () -> new DicomInputStream(path.toFile()));
+  }
+
+  /**
+   * Pre-scans a file kept open by the {@link DicomFileDetector} for its UIDs and Modality,
+   * without opening it again. The header keeps the attributes of the file for its full parse.
+   *
+   * @param file the detected file, it is closed once scanned
+   * @return the header of the instance
+   * @throws IllegalArgumentException if the file is null
+   * @throws RuntimeException if the file cannot be read
+   */
+  public static InstanceHeader scanDetectedFile(DetectedDicomFile file)
+  {
+    if (file == null)
+    {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+
+    try (file)
+    {
+      InstanceHeader header = scan(file.getPath(),
+        () -> new DicomInputStream(new BufferedInputStream(file.openStream(false))));
+      header.attributes = file.getAttributes();
+      return header;
+    }
+  }
+
+  private static InstanceHeader scan(Path path, ScanSource source)
+  {
+    InstanceHeader header = new InstanceHeader(path);
+
+    try (DicomInputStream dis = source.open())
+    {
+      dis.setIncludeBulkData(DicomInputStream.IncludeBulkData.NO);
+      dis.setDicomInputHandler(header.new Scanner());
+      dis.readDataset(-1, -1);
+    }
+    catch (ScanComplete e)
+    {
+      LOG.debug("Pre-scan of [{}] complete at [{}]", path, e.position);
+    }
+    catch (IOException e)
+    {
+      LOG.error("Error scanning DICOM file [{}]", path, e);
+      throw new RuntimeException("Failed to scan DICOM file: " + path, e);
+    }
+
+    return header;
+  }
+
+  /**
+   * Creates the header of an instance that was already parsed completely.
+   *
+   * @param path the path the instance was read from
+   * @param parser the parser holding the parsed instance
+   * @return the header of the instance
+   */
+  static InstanceHeader of(Path path, DicomParser parser)
+  {
+    return of(path, parser.getStuid(), parser.getSeuid(), parser.getSiuid(), parser.getModality());
+  }
+
+  /**
+   * Creates the header of an instance from UIDs listed elsewhere, e.g. in a DICOMDIR.
+   *
+   * @param path the path of the instance
+   * @param stuid the StudyInstanceUID
+   * @param seuid the SeriesInstanceUID
+   * @param siuid the SOPInstanceUID
+   * @param modality the Modality
+   * @return the header of the instance
+   */
+  static InstanceHeader of(Path path, String stuid, String seuid, String siuid, String modality)
+  {
+    return of(path, null, stuid, seuid, siuid, modality);
+  }
+
+  /**
+   * Creates the header of an instance found by the directory walk from UIDs stored elsewhere,
+   * e.g. in the parse cache.
+   *
+   * @param path the path of the instance
+   * @param attributes the attributes of the file as read by the walk
+   * @param stuid the StudyInstanceUID
+   * @param seuid the SeriesInstanceUID
+   * @param siuid the SOPInstanceUID
+   * @param modality the Modality
+   * @return the header of the instance
+   */
+  static InstanceHeader of(Path path, BasicFileAttributes attributes, String stuid, String seuid, String siuid,
+                           String modality)
+  {
+    InstanceHeader header = new InstanceHeader(path);
+    header.attributes = attributes;
+    header.stuid = stuid;
+    header.seuid = seuid;
+    header.siuid = siuid;
+    header.modality = modality;
+    return header;
+  }
+
+  public Path getPath()
+  {
+    return path;
+  }
+
+  /**
+   * Gets the attributes of the file as read by the directory walk.
+   *
+   * @return the file attributes, or null if the file was not found by the directory walk
+   */
+  public BasicFileAttributes getAttributes()
+  {
+    return attributes;
+  }
+
+  public String getStuid()
+  {
+    return stuid;
+  }
+
+  public String getSeuid()
+  {
+    return seuid;
+  }
+
+  public String getSiuid()
+  {
+    return siuid;
+  }
+
+  public String getModality()
+  {
+    return modality;
+  }
+
+  /**
+   * Reads the values needed by the stream and the header and skips all others, ending the scan
+   * once the SeriesInstanceUID has been read or a later top level element is reached.
+   */
+  private final class Scanner implements DicomInputHandler
+  {
+    @Override
+    public void readValue(DicomInputStream dis, Attributes attrs) throws IOException
+    {
+      int tag = dis.tag();
+      boolean topLevel = dis.level() == 0;
+
+      if (topLevel && Integer.compareUnsigned(tag, Tag.SeriesInstanceUID) > 0)
+      {
+        throw new ScanComplete(dis.getTagPosition());
+      }
+
+      int valueLength = dis.length();
+      if (dis.vr() == VR.SQ || valueLength == -1)
+      {
+        dis.readValue(dis, attrs);
+        return;
+      }
+
+      if (!topLevel || !isScannedTag(tag))
+      {
+        StreamUtils.skipFully(dis, valueLength & 0xFFFFFFFFL);
+        return;
+      }
+
+      byte[] buffer = ValueBufferPool.get().acquire(valueLength);
+      StreamUtils.readFully(dis, buffer, 0, valueLength);
+
+      switch (tag)
+      {
+        case Tag.FileMetaInformationGroupLength:
+          dis.setFileMetaInformationGroupLength(buffer);
+          break;
+        case Tag.TransferSyntaxUID:
+          attrs.setBytes(tag, dis.vr(), Arrays.copyOf(buffer, valueLength));
+          break;
+        case Tag.StudyInstanceUID:
+          stuid = ValueBufferPool.decodeAscii(buffer, valueLength);
+          break;
+        case Tag.SeriesInstanceUID:
+          seuid = ValueBufferPool.decodeAscii(buffer, valueLength);
+          throw new ScanComplete(dis.getPosition());
+        case Tag.SOPInstanceUID:
+          siuid = ValueBufferPool.decodeAscii(buffer, valueLength);
+          break;
+        case Tag.Modality:
+          modality = ValueBufferPool.decodeAscii(buffer, valueLength);
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void readValue(DicomInputStream dis, Sequence seq) throws IOException
+    {
+      dis.readValue(dis, seq);
+    }
+
+    @Override
+    public void readValue(DicomInputStream dis, Fragments frags) throws IOException
+    {
+      StreamUtils.skipFully(dis, dis.length() & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public void startDataset(DicomInputStream dis)
+    {
+
+    }
+
+    @Override
+    public void endDataset(DicomInputStream dis)
+    {
+
+    }
+
+    private boolean isScannedTag(int tag)
+    {
+      switch (tag)
+      {
+        case Tag.FileMetaInformationGroupLength:
+        case Tag.TransferSyntaxUID:
+        case Tag.StudyInstanceUID:
+        case Tag.SeriesInstanceUID:
+        case Tag.SOPInstanceUID:
+        case Tag.Modality:
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  /**
+   * Ends the scan from within the input handler, without the cost of a stack trace.
+   */
+  private static final class ScanComplete extends IOException
+  {
+    private final long position;
+
+    ScanComplete(long position)
+    {
+      this.position = position;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.ElementDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Keywords of the standard data dictionary, looked up by binary search in a sorted tag array.
+ * The table is generated from the dcm4che dictionary at build time and loaded as a resource, so
+ * keyword lookups do not need to load the dcm4che dictionary. Tags that are not in the table, like
+ * private or repeating group tags, fall back to {@link ElementDictionary}.
+ */
+public final class KeywordTable
+{
+  private static final Logger LOG = LoggerFactory.getLogger(KeywordTable.class);
+
+  /**
+   * Name of the generated table resource, relative to this class.
+   */
+  static final String RESOURCE = "keywords.bin";
+
+  private static final int MAGIC = 0x44564B31; // "DVK1"
+
+  private final int[] tags;
+  private final String[] keywords;
+
+  private KeywordTable(int[] tags, String[] keywords)
+  {
+    this.tags = tags;
+    this.keywords = keywords;
+  }
+
+  /**
+   * Loads the table on first use.
+   */
+  private static final class Holder
+  {
+    private static final KeywordTable TABLE = load();
+  }
+
+  /**
+   * Gets the keyword of a tag.
+   *
+   * @param tag the tag
+   * @return the keyword, or an empty string if the tag has no keyword
+   */
+  public static String keywordOf(int tag)
+  {
+    KeywordTable table = Holder.TABLE;
+
+    int index = Arrays.binarySearch(table.tags, tag);
+    return index >= 0 ? table.keywords[index] : ElementDictionary.keywordOf(tag, null);
+  }
+
+  /**
+   * Gets the number of tags in the generated table.
+   *
+   * @return the number of tags, 0 if the table resource is missing
+   */
+  public static int size()
+  {
+    return Holder.TABLE.tags.length;
+  }
+
+  private static KeywordTable load()
+  {
+    try (InputStream in = KeywordTable.class.getResourceAsStream(RESOURCE))
+    {
+      if (in == null)
+      {
+        LOG.warn("Keyword table [{}] not found, using the dcm4che dictionary", RESOURCE);
+        return new KeywordTable(new int[0], new String[0]);
+      }
+
+      return read(in);
+    }
+    catch (IOException e)
+    {
+      LOG.warn("Failed to load keyword table [{}], using the dcm4che dictionary: {}", RESOURCE, e.getMessage());
+      return new KeywordTable(new int[0], new String[0]);
+    }
+  }
+
+  /**
+   * Reads a table written by {@link #write(DataOutputStream, int[], String[])}.
+   */
+  static KeywordTable read(InputStream stream) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("Invalid keyword table");
+    }
+
+    int count = in.readInt();
+    if (count < 0)
+    {
+      throw new IOException("Invalid tag count: " + count);
+    }
+
+    int[] tags = new int[count];
+    String[] keywords = new String[count];
+    for (int i = 0; i < count; i++)
+    {
+      tags[i] = in.readInt();
+      keywords[i] = in.readUTF();
+
+      if (i > 0 && tags[i] <= tags[i - 1])
+      {
+        throw new IOException("Keyword table is not sorted at index " + i);
+      }
+    }
+
+    return new KeywordTable(tags, keywords);
+  }
+
+  /**
+   * Writes a table of tags in ascending order and their keywords.
+   */
+  static void write(DataOutputStream out, int[] tags, String[] keywords) throws IOException
+  {
+    if (tags.length != keywords.length)
+    {
+      throw new IllegalArgumentException("Tags and keywords must have the same length, got: "
+        + tags.length + " and " + keywords.length);
+    }
+
+    out.writeInt(MAGIC);
+    out.writeInt(tags.length);
+    for (int i = 0; i < tags.length; i++)
+    {
+      out.writeInt(tags[i]);
+      out.writeUTF(keywords[i]);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.util.TagUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+import static java.lang.Math.log;
+
+/**
+ * Scales the entry lengths of a {@link DicomEntryTable} logarithmically and computes their positions.
+ * The minimum and maximum lengths are tracked by the table while entries are added, so the layout
+ * of a table is a single pass computing the scaled length, the position and the total length.
+ * <p>
+ * Files are laid out either on their own, scaled from their minimum length up to a reference
+ * length, or in two phases for a whole study: the engine is created from the length range of all
+ * tables first, then each table is laid out with it, so equal lengths get equal scaled lengths in
+ * all instances of the study.
+ */
+public final class LayoutEngine
+{
+  private static final Logger LOG = LoggerFactory.getLogger(LayoutEngine.class);
+
+  /**
+   * Default reference length a single file is scaled to.
+   */
+  public static final float DEFAULT_REFERENCE_LENGTH = 1.2E7f;
+
+  /**
+   * Scaled length of the shortest entry.
+   */
+  public static final float MIN_SCALED_LENGTH = 1.0f;
+
+  /**
+   * Scaled length of an entry of the reference length.
+   */
+  public static final float MAX_SCALED_LENGTH = 70.0f;
+
+  private final float minLength;
+  private final double logMinLength;
+  private final double logRange;
+
+  private LayoutEngine(float minLength, double logRange)
+  {
+    this.minLength = minLength;
+    this.logMinLength = log(minLength);
+    this.logRange = logRange;
+  }
+
+  /**
+   * Creates an engine scaling a single file from its minimum length up to the default reference length.
+   *
+   * @param table the entries of the file
+   * @return the layout engine
+   */
+  public static LayoutEngine forFile(DicomEntryTable table)
+  {
+    return forFile(table, DEFAULT_REFERENCE_LENGTH);
+  }
+
+  /**
+   * Creates an engine scaling a single file from its minimum length up to the given reference length.
+   *
+   * @param table the entries of the file
+   * @param referenceLength the length that is scaled to about {@link #MAX_SCALED_LENGTH}
+   * @return the layout engine
+   * @throws IllegalArgumentException if the table is null or the reference length is not above 1
+   */
+  public static LayoutEngine forFile(DicomEntryTable table, float referenceLength)
+  {
+    if (table == null)
+    {
+      throw new IllegalArgumentException("Entry table cannot be null");
+    }
+    if (!(referenceLength > 1.0f))
+    {
+      throw new IllegalArgumentException("Reference length must be greater than 1, got: " + referenceLength);
+    }
+
+    // the range subtracts the minimum scaled length, as the per-file layout always did
+    return new LayoutEngine(table.getMinLength(), log(referenceLength) - MIN_SCALED_LENGTH);
+  }
+
+  /**
+   * Creates an engine scaling all given tables over their common length range, from the
+   * minimum length of all tables to the maximum length of all tables.
+   *
+   * @param tables the entries of all files of the study
+   * @return the layout engine
+   * @throws IllegalArgumentException if the tables are null
+   */
+  public static LayoutEngine forStudy(Collection<DicomEntryTable> tables)
+  {
+    if (tables == null)
+    {
+      throw new IllegalArgumentException("Entry tables cannot be null");
+    }
+
+    long minLength = Long.MAX_VALUE;
+    long maxLength = 1;
+    for (DicomEntryTable table : tables)
+    {
+      if (!table.isEmpty())
+      {
+        minLength = Math.min(minLength, table.getMinLength());
+        maxLength = Math.max(maxLength, table.getMaxLength());
+      }
+    }
+
+    return forRange(minLength, maxLength);
+  }
+
+  /**
+   * Creates an engine scaling over the given length range, the range of tables that are not
+   * kept in memory together, see {@link #forStudy(Collection)}.
+   *
+   * @param minLength the minimum length of all non-empty tables, {@link Long#MAX_VALUE} if there are none
+   * @param maxLength the maximum length of all non-empty tables, 1 if there are none
+   * @return the layout engine
+   */
+  public static LayoutEngine forRange(long minLength, long maxLength)
+  {
+    maxLength = Math.max(maxLength, 1);
+    minLength = Math.min(minLength, maxLength);
+
+    LOG.info("Study length range [{}] to [{}]", minLength, maxLength);
+
+    // equal lengths everywhere are all scaled to the minimum scaled length
+    double logRange = log(maxLength) - log(minLength);
+    return new LayoutEngine(minLength, logRange > 0.0 ? logRange : 1.0);
+  }
+
+  /**
+   * Sets the scaled length and position of every entry of the table.
+   *
+   * @param table the entries to lay out
+   * @return the total scaled length of all entries
+   */
+  public float layout(DicomEntryTable table)
+  {
+    if (table == null)
+    {
+      throw new IllegalArgumentException("Entry table cannot be null");
+    }
+
+    boolean debug = LOG.isDebugEnabled();
+    double scale = MAX_SCALED_LENGTH - MIN_SCALED_LENGTH;
+    float pos = 0.0f;
+
+    for (int row = 0, size = table.size(); row < size; row++)
+    {
+      float v = table.getLayoutLength(row);
+      float scaled = (float) (scale * (log(v) - logMinLength) / logRange + MIN_SCALED_LENGTH);
+
+      table.setLogLength(row, scaled);
+      table.setLogPosition(row, pos);
+
+      if (debug)
+      {
+        LOG.debug("[{}:{}:{}] \t level[{}] #[{}]", pos, TagUtils.toString(table.getTag(row)),
+          table.getVr(row), table.getLevel(row), scaled);
+      }
+
+      pos += scaled;
+    }
+
+    return pos;
+  }
+
+  /**
+   * Computes the total scaled length {@link #layout(DicomEntryTable)} returns for a table, without
+   * laying it out. The result may differ from the summed scaled lengths by rounding.
+   *
+   * @param rows the number of entries of the table
+   * @param logLengthSum the sum of the logarithms of the entry lengths, see
+   *                     {@link DicomEntryTable#getLogLengthSum()}
+   * @return the total scaled length
+   */
+  public float getTotalLength(int rows, double logLengthSum)
+  {
+    double scale = MAX_SCALED_LENGTH - MIN_SCALED_LENGTH;
+    return (float) (scale * (logLengthSum - rows * logMinLength) / logRange + rows * MIN_SCALED_LENGTH);
+  }
+
+  /**
+   * Checks if another engine scales every length to the same scaled length as this one, so
+   * tables laid out by either engine need not be laid out again.
+   *
+   * @param other the other engine, may be null
+   * @return true if both engines have the same length range
+   */
+  public boolean hasSameScale(LayoutEngine other)
+  {
+    return other != null && other.minLength == minLength && other.logRange == logRange;
+  }
+
+  /**
+   * Gets the length that is scaled to {@link #MIN_SCALED_LENGTH}.
+   *
+   * @return the minimum length
+   */
+  public float getMinLength()
+  {
+    return minLength;
+  }
+}
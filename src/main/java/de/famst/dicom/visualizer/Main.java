@@ -26,7 +26,6 @@ public class Main
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
 
     private static final int BASE_HEIGHT = 70;
-    private static final int SERIES_SPACING = 20;
 
     public static void main(String[] args)
     {
@@ -40,7 +39,7 @@ public class Main
             CommandLine cmd = parser.parse(options, args);
             processCommand(cmd);
         }
-        catch (ParseException e)
+        catch (ParseException | IllegalArgumentException e)
         {
             LOG.error("Error parsing command line arguments", e);
             printUsage(options);
@@ -56,8 +55,21 @@ public class Main
     {
         Options options = new Options();
         options.addOption("i", "input", true, "input file");
-        options.addOption("p", "path", true, "input path");
+        options.addOption("p", "path", true, "input path (folder, ZIP or TAR archive)");
         options.addOption("o", "output", true, "output file");
+        options.addOption("s", "structure", false, "parse structure only, no value formatting");
+        options.addOption("m", "max-value-length", true, "skip values longer than this number of bytes");
+        options.addOption("H", "header-only", false, "stop parsing at the pixel data");
+        options.addOption("M", "memory-map", false, "read files through memory mapping");
+        options.addOption("I", "inflate-buffer", true, "buffer size in bytes for inflating deflated files");
+        options.addOption("E", "expand-items", false, "draw every repeated sequence item instead of one run");
+        options.addOption("D", "max-depth", true, "summarize sequences on this nesting level as one entry");
+        options.addOption("c", "cache", true, "directory of the parse cache");
+        options.addOption("C", "cache-size", true, "maximum size of the parse cache in MiB");
+        options.addOption("T", "threads", true, "number of threads parsing the files of a folder");
+        options.addOption("S", "stream", false, "draw a folder in two passes, keeping one parsed file at a time");
+        options.addOption("G", "group-structure", false, "draw one instance per distinct structure of a series");
+        options.addOption("w", "watch", false, "keep watching the input folder and update the output on changes");
         return options;
     }
 
@@ -83,13 +95,23 @@ public class Main
      */
     private static void processCommand(CommandLine cmd)
     {
+        ParserOptions parserOptions = createParserOptions(cmd);
+
         if (cmd.hasOption("i") && cmd.hasOption("o"))
         {
-            processSingleFile(cmd.getOptionValue("i"), cmd.getOptionValue("o"));
+            processSingleFile(cmd.getOptionValue("i"), cmd.getOptionValue("o"), parserOptions);
+        }
+        else if (cmd.hasOption("p") && cmd.hasOption("o") && cmd.hasOption("w"))
+        {
+            watchFolder(cmd.getOptionValue("p"), cmd.getOptionValue("o"), parserOptions, createParseCache(cmd));
         }
         else if (cmd.hasOption("p") && cmd.hasOption("o"))
         {
-            processFolder(cmd.getOptionValue("p"), cmd.getOptionValue("o"));
+            int parallelism = cmd.hasOption("T")
+                ? Integer.parseInt(cmd.getOptionValue("T"))
+                : StudyDrawer.DEFAULT_PARALLELISM;
+            processFolder(cmd.getOptionValue("p"), cmd.getOptionValue("o"), parserOptions, createParseCache(cmd),
+                parallelism, cmd.hasOption("S"), cmd.hasOption("G"));
         }
         else
         {
@@ -97,14 +119,62 @@ public class Main
         }
     }
 
+    /**
+     * Creates the parser options from the command line arguments.
+     */
+    private static ParserOptions createParserOptions(CommandLine cmd)
+    {
+        ParserOptions parserOptions = new ParserOptions();
+        parserOptions.setStructureOnly(cmd.hasOption("s"));
+        parserOptions.setHeaderOnly(cmd.hasOption("H"));
+        parserOptions.setMemoryMapped(cmd.hasOption("M"));
+        parserOptions.setCollapseRepeatedItems(!cmd.hasOption("E"));
+
+        if (cmd.hasOption("m"))
+        {
+            parserOptions.setMaxValueLength(Integer.parseInt(cmd.getOptionValue("m")));
+        }
+
+        if (cmd.hasOption("I"))
+        {
+            parserOptions.setInflateBufferSize(Integer.parseInt(cmd.getOptionValue("I")));
+        }
+
+        if (cmd.hasOption("D"))
+        {
+            parserOptions.setMaxDepth(Integer.parseInt(cmd.getOptionValue("D")));
+        }
+
+        return parserOptions;
+    }
+
+    /**
+     * Creates the parse cache from the command line arguments, or null if no cache is used.
+     */
+    private static ParseCache createParseCache(CommandLine cmd)
+    {
+        if (!cmd.hasOption("c"))
+        {
+            return null;
+        }
+
+        long maxSize = ParseCache.DEFAULT_MAX_SIZE;
+        if (cmd.hasOption("C"))
+        {
+            maxSize = Long.parseLong(cmd.getOptionValue("C")) * 1024 * 1024;
+        }
+
+        return new ParseCache(Paths.get(cmd.getOptionValue("c")), maxSize);
+    }
+
     /**
      * Processes a single DICOM file and generates SVG output.
      */
-    private static void processSingleFile(String inputPath, String outputPath)
+    private static void processSingleFile(String inputPath, String outputPath, ParserOptions parserOptions)
     {
         try
         {
-            DicomParser dicomParser = DicomParser.parseFile(inputPath);
+            DicomParser dicomParser = DicomParser.parseFile(inputPath, parserOptions);
             int width = (int) dicomParser.getLength();
             int height = BASE_HEIGHT;
 
@@ -125,13 +195,18 @@ public class Main
     /**
      * Processes a folder of DICOM files and generates SVG output.
      */
-    private static void processFolder(String inputPath, String outputPath)
+    private static void processFolder(String inputPath, String outputPath, ParserOptions parserOptions,
+                                      ParseCache parseCache, int parallelism, boolean streaming,
+                                      boolean groupByStructure)
     {
         try
         {
-            StudyDrawer studyDrawer = new StudyDrawer(inputPath);
+            StudyDrawer studyDrawer = new StudyDrawer(inputPath, parserOptions, parseCache);
+            studyDrawer.setParallelism(parallelism);
+            studyDrawer.setStreaming(streaming);
+            studyDrawer.setGroupByStructure(groupByStructure);
             int width = (int) studyDrawer.getMaxLength();
-            int height = BASE_HEIGHT * studyDrawer.getFiles().size() + SERIES_SPACING * studyDrawer.getSeries().size();
+            int height = studyDrawer.getHeight();
 
             SVGGraphics2D graph = new SVGGraphics2D(width, height);
 
@@ -146,6 +221,27 @@ public class Main
         }
     }
 
+    /**
+     * Watches a folder of DICOM files and updates the SVG output whenever files change.
+     */
+    private static void watchFolder(String inputPath, String outputPath, ParserOptions parserOptions,
+                                    ParseCache parseCache)
+    {
+        try (StudyWatcher studyWatcher = new StudyWatcher(Paths.get(inputPath), Paths.get(outputPath),
+            parserOptions, parseCache))
+        {
+            studyWatcher.run();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error watching folder: {}", inputPath, e);
+        }
+    }
+
     /**
      * Saves the SVG graphics to a file.
      */
@@ -0,0 +1,187 @@
+package de.famst.dicom.visualizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream reading a file through memory-mapped windows of a {@link FileChannel}.
+ * Reads copy straight from the mapping and skips only move the position, so skipping bulk
+ * data causes neither a system call nor a copy. Files larger than one window are mapped
+ * window by window. Mark and reset are supported, so no buffering stream is needed on top.
+ */
+public class MappedFileInputStream extends InputStream
+{
+  /**
+   * Maximum size of one mapped window.
+   */
+  public static final long MAX_WINDOW_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final long size;
+  private final long windowSize;
+
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long position;
+  private long mark;
+
+  /**
+   * Opens the given file and creates a stream reading it through memory mapping.
+   *
+   * @param path the file to read
+   * @throws IOException if the file cannot be opened
+   */
+  public MappedFileInputStream(Path path) throws IOException
+  {
+    this(FileChannel.open(path, StandardOpenOption.READ));
+  }
+
+  /**
+   * Creates a stream reading an open channel through memory mapping, starting at the channel's
+   * current position. The stream takes ownership of the channel and closes it.
+   *
+   * @param channel the channel to read
+   * @throws IOException if the size or position of the channel cannot be read
+   */
+  public MappedFileInputStream(FileChannel channel) throws IOException
+  {
+    this(channel, MAX_WINDOW_SIZE);
+  }
+
+  /**
+   * Creates a stream reading an open channel through memory-mapped windows of the given size.
+   * The stream takes ownership of the channel and closes it.
+   *
+   * @param channel the channel to read
+   * @param windowSize the maximum size of one mapped window in bytes
+   * @throws IOException if the size or position of the channel cannot be read
+   * @throws IllegalArgumentException if the channel is null or the window size is out of range
+   */
+  public MappedFileInputStream(FileChannel channel, long windowSize) throws IOException
+  {
+    if (channel == null)
+    {
+      throw new IllegalArgumentException("Channel cannot be null");
+    }
+    if (windowSize <= 0 || windowSize > MAX_WINDOW_SIZE)
+    {
+      throw new IllegalArgumentException("Window size must be between 1 and " + MAX_WINDOW_SIZE + ", got: " + windowSize);
+    }
+
+    this.channel = channel;
+    this.size = channel.size();
+    this.windowSize = windowSize;
+    this.position = channel.position();
+    this.mark = position;
+  }
+
+  /**
+   * Gets the window covering the current position, mapping a new one if needed.
+   */
+  private MappedByteBuffer window() throws IOException
+  {
+    if (window == null || position < windowStart || position >= windowStart + window.capacity())
+    {
+      windowStart = position;
+      window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+    }
+
+    return window;
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    if (position >= size)
+    {
+      return -1;
+    }
+
+    int b = window().get((int) (position - windowStart)) & 0xFF;
+    position++;
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (off < 0 || len < 0 || len > b.length - off)
+    {
+      throw new IndexOutOfBoundsException("Range [" + off + ", " + off + " + " + len + ") out of bounds for length " + b.length);
+    }
+    if (len == 0)
+    {
+      return 0;
+    }
+    if (position >= size)
+    {
+      return -1;
+    }
+
+    MappedByteBuffer mapped = window();
+    int index = (int) (position - windowStart);
+    int count = Math.min(len, mapped.capacity() - index);
+
+    mapped.get(index, b, off, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public long skip(long n)
+  {
+    if (n <= 0)
+    {
+      return 0;
+    }
+
+    long skipped = Math.min(n, size - position);
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available()
+  {
+    return (int) Math.min(Integer.MAX_VALUE, size - position);
+  }
+
+  @Override
+  public boolean markSupported()
+  {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readLimit)
+  {
+    mark = position;
+  }
+
+  @Override
+  public synchronized void reset()
+  {
+    position = mark;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    window = null;
+    channel.close();
+  }
+
+  /**
+   * Gets the current position in the file.
+   *
+   * @return the position in bytes
+   */
+  public long getPosition()
+  {
+    return position;
+  }
+}
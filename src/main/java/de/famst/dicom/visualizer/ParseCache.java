@@ -0,0 +1,577 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.VR;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent on-disk cache of parsed DICOM files.
+ * Each cached file is stored in its own compact binary entry holding the UIDs, the Modality and
+ * the tag, VR, level, offset and length columns of the entry table, plus the file offsets of
+ * deflated files, the runs of collapsed items and the aggregates of sequences below the depth
+ * limit. An entry is only used if the
+ * absolute path, size and modification time of the file still match, the layout is recomputed
+ * from the cached columns. The total size of the cache directory is bounded, the least recently
+ * used entries are evicted first.
+ */
+public class ParseCache
+{
+  private static final Logger LOG = LoggerFactory.getLogger(ParseCache.class);
+
+  /**
+   * Default upper bound in bytes for the size of the cache directory.
+   */
+  public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+  private static final int MAGIC = 0x44564335; // "DVC5"
+  private static final String SUFFIX = ".dvc";
+  private static final int NO_VR = -1;
+  private static final int ROW_SIZE = 19;
+
+  private final Path directory;
+  private final long maxSize;
+  private final AtomicLong size = new AtomicLong();
+
+  /**
+   * Creates a cache in the given directory with the default size bound.
+   *
+   * @param directory the cache directory, created if it does not exist
+   */
+  public ParseCache(Path directory)
+  {
+    this(directory, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Creates a cache in the given directory.
+   *
+   * @param directory the cache directory, created if it does not exist
+   * @param maxSize the upper bound in bytes for the size of the cache directory
+   * @throws IllegalArgumentException if the directory is null or the size is not positive
+   * @throws RuntimeException if the directory cannot be created or read
+   */
+  public ParseCache(Path directory, long maxSize)
+  {
+    if (directory == null)
+    {
+      throw new IllegalArgumentException("Cache directory cannot be null");
+    }
+    if (maxSize <= 0)
+    {
+      throw new IllegalArgumentException("Max cache size must be positive, got: " + maxSize);
+    }
+
+    this.directory = directory;
+    this.maxSize = maxSize;
+
+    try
+    {
+      Files.createDirectories(directory);
+      size.set(listEntries().stream().mapToLong(ParseCache::sizeOf).sum());
+    }
+    catch (IOException e)
+    {
+      throw new RuntimeException("Failed to open parse cache: " + directory, e);
+    }
+
+    LOG.info("Using parse cache [{}] with [{}] of [{}] bytes", directory, size.get(), maxSize);
+  }
+
+  /**
+   * Gets the parsed content of a file from the cache, or parses the file and stores the result.
+   *
+   * @param file the DICOM file
+   * @param options the options used to parse the file on a cache miss
+   * @return the parser holding the parsed entries
+   */
+  public DicomParser parse(Path file, ParserOptions options)
+  {
+    if (file == null)
+    {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    if (options == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+
+    Path absolute = file.toAbsolutePath();
+    BasicFileAttributes attributes;
+    try
+    {
+      attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+    }
+    catch (IOException e)
+    {
+      // let the parser report the missing or unreadable file
+      return DicomParser.parseFile(absolute.toString(), options);
+    }
+
+    return parse(absolute, attributes, options);
+  }
+
+  /**
+   * Gets the parsed content of a file whose attributes were already read, e.g. by the directory
+   * walk, from the cache, or parses the file and stores the result. The file is not checked again.
+   *
+   * @param file the DICOM file
+   * @param attributes the attributes of the file, giving the size and modification time of the key
+   * @param options the options used to parse the file on a cache miss
+   * @return the parser holding the parsed entries
+   */
+  public DicomParser parse(Path file, BasicFileAttributes attributes, ParserOptions options)
+  {
+    if (file == null)
+    {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    if (attributes == null)
+    {
+      throw new IllegalArgumentException("Attributes cannot be null");
+    }
+    if (options == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+
+    Path absolute = file.toAbsolutePath();
+    Key key = keyOf(absolute, attributes, options);
+
+    DicomParser cached = read(key, options);
+    if (cached != null)
+    {
+      return cached;
+    }
+
+    DicomParser parser = DicomParser.parseFile(absolute, attributes, options);
+    write(key, parser);
+    return parser;
+  }
+
+  /**
+   * Gets the parsed content of a file kept open by the {@link DicomFileDetector} from the cache,
+   * or parses it through its open channel and stores the result. The key is taken from the
+   * attributes of the detection, so the file is neither checked nor opened again.
+   *
+   * @param file the detected file, it is closed once read or found in the cache
+   * @param options the options used to parse the file on a cache miss
+   * @return the parser holding the parsed entries
+   */
+  public DicomParser parse(DetectedDicomFile file, ParserOptions options)
+  {
+    if (file == null)
+    {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    if (options == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+
+    try (file)
+    {
+      Key key = keyOf(file.getPath().toAbsolutePath(), file.getAttributes(), options);
+
+      DicomParser cached = read(key, options);
+      if (cached != null)
+      {
+        return cached;
+      }
+
+      DicomParser parser = DicomParser.parseDetectedFile(file, options);
+      write(key, parser);
+      return parser;
+    }
+  }
+
+  /**
+   * Gets the UIDs and Modality of a file from its cache entry, without opening the file. The
+   * entry must have been stored with the same options, the entry table is not read.
+   *
+   * @param file the DICOM file
+   * @param attributes the attributes of the file, giving the size and modification time of the key
+   * @param options the options the file is parsed with
+   * @return the header of the instance, keeping the given attributes, or null if there is no
+   *         matching entry
+   */
+  public InstanceHeader readHeader(Path file, BasicFileAttributes attributes, ParserOptions options)
+  {
+    if (file == null)
+    {
+      throw new IllegalArgumentException("File cannot be null");
+    }
+    if (attributes == null)
+    {
+      throw new IllegalArgumentException("Attributes cannot be null");
+    }
+    if (options == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+
+    Key key = keyOf(file.toAbsolutePath(), attributes, options);
+    Path entry = entryPath(key);
+    if (!Files.isRegularFile(entry))
+    {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry))))
+    {
+      if (!matches(in, key))
+      {
+        LOG.debug("Stale cache entry for [{}]", key.path);
+        return null;
+      }
+
+      String stuid = readString(in);
+      String seuid = readString(in);
+      String siuid = readString(in);
+      String modality = readString(in);
+
+      LOG.debug("Cached header for [{}]", key.path);
+      return InstanceHeader.of(file, attributes, stuid, seuid, siuid, modality);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      LOG.warn("Ignoring unreadable cache entry [{}]: {}", entry, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Gets the directory holding the cache entries.
+   *
+   * @return the cache directory
+   */
+  public Path getDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Gets the current size of all cache entries.
+   *
+   * @return the size in bytes
+   */
+  public long getSize()
+  {
+    return size.get();
+  }
+
+  /**
+   * Reads the entry for a key, or returns null if there is no matching entry.
+   */
+  private DicomParser read(Key key, ParserOptions options)
+  {
+    Path entry = entryPath(key);
+    if (!Files.isRegularFile(entry))
+    {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry))))
+    {
+      if (!matches(in, key))
+      {
+        LOG.debug("Stale cache entry for [{}]", key.path);
+        return null;
+      }
+
+      String stuid = readString(in);
+      String seuid = readString(in);
+      String siuid = readString(in);
+      String modality = readString(in);
+
+      int rows = in.readInt();
+      if (rows < 0 || rows > Files.size(entry) / ROW_SIZE)
+      {
+        throw new IOException("Invalid row count: " + rows);
+      }
+
+      DicomEntryTable entries = new DicomEntryTable(rows);
+      for (int row = 0; row < rows; row++)
+      {
+        int tag = in.readInt();
+        int vrCode = in.readShort();
+        int level = in.readByte();
+        long offset = in.readLong();
+        int length = in.readInt();
+        entries.add(tag, vrCode == NO_VR ? null : VR.valueOf(vrCode), level, offset, length);
+      }
+
+      if (in.readBoolean())
+      {
+        for (int row = 0; row < rows; row++)
+        {
+          entries.setFileOffset(row, in.readLong());
+        }
+      }
+
+      int runs = in.readInt();
+      for (int run = 0; run < runs; run++)
+      {
+        entries.setRun(in.readInt(), in.readInt(), in.readLong(), in.readInt(), in.readInt());
+      }
+
+      int aggregates = in.readInt();
+      for (int aggregate = 0; aggregate < aggregates; aggregate++)
+      {
+        entries.setAggregate(in.readInt(), in.readLong(), in.readInt(), in.readInt());
+      }
+
+      // touching the entry keeps its modification time as the time of last use
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+
+      LOG.debug("Cache hit for [{}]", key.path);
+      return DicomParser.restore(key.path, options, stuid, seuid, siuid, modality, entries);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      LOG.warn("Ignoring unreadable cache entry [{}]: {}", entry, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Reads the key stored at the start of an entry and checks if it is the given key.
+   */
+  private static boolean matches(DataInputStream in, Key key) throws IOException
+  {
+    return in.readInt() == MAGIC
+      && in.readUTF().equals(key.path)
+      && in.readLong() == key.size
+      && in.readLong() == key.modified
+      && in.readBoolean() == key.headerOnly
+      && in.readBoolean() == key.collapseItems
+      && in.readInt() == key.maxDepth;
+  }
+
+  /**
+   * Writes the entry for a key, replacing an existing entry atomically, and evicts old entries.
+   */
+  private void write(Key key, DicomParser parser)
+  {
+    Path entry = entryPath(key);
+
+    try
+    {
+      long previous = Files.isRegularFile(entry) ? sizeOf(entry) : 0;
+      Path temp = Files.createTempFile(directory, "entry", ".tmp");
+
+      try
+      {
+        writeEntry(temp, key, parser);
+
+        long written = sizeOf(temp);
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (size.addAndGet(written - previous) > maxSize)
+        {
+          evict();
+        }
+      }
+      finally
+      {
+        Files.deleteIfExists(temp);
+      }
+    }
+    catch (IOException e)
+    {
+      LOG.warn("Failed to write cache entry for [{}]: {}", key.path, e.getMessage());
+    }
+  }
+
+  private static void writeEntry(Path target, Key key, DicomParser parser) throws IOException
+  {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target))))
+    {
+      out.writeInt(MAGIC);
+      out.writeUTF(key.path);
+      out.writeLong(key.size);
+      out.writeLong(key.modified);
+      out.writeBoolean(key.headerOnly);
+      out.writeBoolean(key.collapseItems);
+      out.writeInt(key.maxDepth);
+
+      writeString(out, parser.getStuid());
+      writeString(out, parser.getSeuid());
+      writeString(out, parser.getSiuid());
+      writeString(out, parser.getModality());
+
+      DicomEntryTable entries = parser.getEntries();
+      out.writeInt(entries.size());
+      for (int row = 0; row < entries.size(); row++)
+      {
+        VR vr = entries.getVr(row);
+        out.writeInt(entries.getTag(row));
+        out.writeShort(vr == null ? NO_VR : vr.code());
+        out.writeByte(entries.getLevel(row));
+        out.writeLong(entries.getOffset(row));
+        out.writeInt(entries.getLength(row));
+      }
+
+      out.writeBoolean(entries.hasFileOffsets());
+      if (entries.hasFileOffsets())
+      {
+        for (int row = 0; row < entries.size(); row++)
+        {
+          out.writeLong(entries.getFileOffset(row));
+        }
+      }
+
+      out.writeInt(entries.getRunEntries());
+      for (int row = 0; row < entries.size(); row++)
+      {
+        if (entries.isRun(row))
+        {
+          out.writeInt(row);
+          out.writeInt(entries.getRunCount(row));
+          out.writeLong(entries.getRunLength(row));
+          out.writeInt(entries.getRunMinLength(row));
+          out.writeInt(entries.getRunMaxLength(row));
+        }
+      }
+
+      out.writeInt(entries.getAggregateEntries());
+      for (int row = 0; row < entries.size(); row++)
+      {
+        if (entries.isAggregate(row))
+        {
+          out.writeInt(row);
+          out.writeLong(entries.getAggregateLength(row));
+          out.writeInt(entries.getAggregateElements(row));
+          out.writeInt(entries.getAggregateDepth(row));
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache is below its size bound.
+   */
+  private synchronized void evict() throws IOException
+  {
+    if (size.get() <= maxSize)
+    {
+      return;
+    }
+
+    List<Path> entries = listEntries();
+    entries.sort(Comparator.comparingLong(ParseCache::lastUsed));
+
+    for (Path entry : entries)
+    {
+      if (size.get() <= maxSize)
+      {
+        break;
+      }
+
+      long entrySize = sizeOf(entry);
+      if (Files.deleteIfExists(entry))
+      {
+        size.addAndGet(-entrySize);
+        LOG.debug("Evicted cache entry [{}]", entry);
+      }
+    }
+  }
+
+  private List<Path> listEntries() throws IOException
+  {
+    try (Stream<Path> stream = Files.list(directory))
+    {
+      return new ArrayList<>(stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList());
+    }
+  }
+
+  private static Key keyOf(Path absolute, BasicFileAttributes attributes, ParserOptions options)
+  {
+    return new Key(absolute.toString(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+      options.isHeaderOnly(), options.isCollapseRepeatedItems(), options.getMaxDepth());
+  }
+
+  /**
+   * Gets the entry file of a key, named by a hash of the path and the options that change the result.
+   */
+  private Path entryPath(Key key)
+  {
+    try
+    {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(key.path.getBytes(StandardCharsets.UTF_8));
+      return directory.resolve(HexFormat.of().formatHex(hash, 0, 16) + (key.headerOnly ? "-h" : "")
+        + (key.collapseItems ? "" : "-e")
+        + (key.maxDepth == ParserOptions.UNLIMITED_DEPTH ? "" : "-d" + key.maxDepth) + SUFFIX);
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private static long sizeOf(Path path)
+  {
+    try
+    {
+      return Files.size(path);
+    }
+    catch (IOException e)
+    {
+      return 0;
+    }
+  }
+
+  private static long lastUsed(Path path)
+  {
+    try
+    {
+      return Files.getLastModifiedTime(path).toMillis();
+    }
+    catch (IOException e)
+    {
+      return 0;
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException
+  {
+    out.writeBoolean(value != null);
+    if (value != null)
+    {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException
+  {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  /**
+   * Identifies the state of a file the cache entry was created from.
+   */
+  private record Key(String path, long size, long modified, boolean headerOnly, boolean collapseItems,
+                     int maxDepth)
+  {
+  }
+}
@@ -0,0 +1,206 @@
+package de.famst.dicom.visualizer;
+
+/**
+ * Options controlling how much work the {@link DicomParser} does per element.
+ * The defaults reproduce the full parse including the text dump on debug level.
+ */
+public class ParserOptions
+{
+  /**
+   * Default upper bound in bytes for values that are read into memory.
+   */
+  public static final int DEFAULT_MAX_VALUE_LENGTH = 64 * 1024;
+
+  /**
+   * Depth limit under which sequences of any nesting level are read completely.
+   */
+  public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+  private boolean structureOnly;
+  private int maxValueLength;
+  private boolean headerOnly;
+  private boolean memoryMapped;
+  private int inflateBufferSize;
+  private boolean collapseRepeatedItems;
+  private int maxDepth;
+
+  /**
+   * Creates a new set of options with default values.
+   */
+  public ParserOptions()
+  {
+    this.structureOnly = false;
+    this.maxValueLength = DEFAULT_MAX_VALUE_LENGTH;
+    this.headerOnly = false;
+    this.memoryMapped = false;
+    this.inflateBufferSize = InflatingInputStream.DEFAULT_BUFFER_SIZE;
+    this.collapseRepeatedItems = true;
+    this.maxDepth = UNLIMITED_DEPTH;
+  }
+
+  /**
+   * Checks if only the structure (tag, VR, level, offset and length) is parsed.
+   * In this mode values are neither formatted nor decoded, apart from the few
+   * tags needed for the file meta information and the UID/Modality extraction.
+   *
+   * @return true if structure-only parsing is enabled
+   */
+  public boolean isStructureOnly()
+  {
+    return structureOnly;
+  }
+
+  /**
+   * Sets whether only the structure of the file is parsed.
+   *
+   * @param structureOnly true to skip the per-element text rendering
+   */
+  public void setStructureOnly(boolean structureOnly)
+  {
+    this.structureOnly = structureOnly;
+  }
+
+  /**
+   * Gets the maximum length of a value that is read into memory.
+   * Longer values are skipped in the stream and only their length is recorded.
+   *
+   * @return the maximum value length in bytes
+   */
+  public int getMaxValueLength()
+  {
+    return maxValueLength;
+  }
+
+  /**
+   * Sets the maximum length of a value that is read into memory.
+   *
+   * @param maxValueLength the maximum value length in bytes
+   * @throws IllegalArgumentException if the length is negative
+   */
+  public void setMaxValueLength(int maxValueLength)
+  {
+    if (maxValueLength < 0)
+    {
+      throw new IllegalArgumentException("Max value length must be non-negative, got: " + maxValueLength);
+    }
+    this.maxValueLength = maxValueLength;
+  }
+
+  /**
+   * Checks if parsing stops at the pixel data. The pixel data is recorded from its length,
+   * for encapsulated pixel data the fragment items are still recorded from their headers,
+   * and trailing elements behind the pixel data are not read.
+   *
+   * @return true if header-only parsing is enabled
+   */
+  public boolean isHeaderOnly()
+  {
+    return headerOnly;
+  }
+
+  /**
+   * Sets whether parsing stops at the pixel data.
+   *
+   * @param headerOnly true to stop reading at the pixel data
+   */
+  public void setHeaderOnly(boolean headerOnly)
+  {
+    this.headerOnly = headerOnly;
+  }
+
+  /**
+   * Checks if files are read through memory mapping instead of buffered stream reads.
+   *
+   * @return true if files are memory-mapped
+   */
+  public boolean isMemoryMapped()
+  {
+    return memoryMapped;
+  }
+
+  /**
+   * Sets whether files are read through memory mapping.
+   *
+   * @param memoryMapped true to map files through their file channel
+   */
+  public void setMemoryMapped(boolean memoryMapped)
+  {
+    this.memoryMapped = memoryMapped;
+  }
+
+  /**
+   * Gets the size of the buffer for compressed input when inflating deflated files.
+   * It also bounds the precision of the compressed file offsets of the entries.
+   *
+   * @return the buffer size in bytes
+   */
+  public int getInflateBufferSize()
+  {
+    return inflateBufferSize;
+  }
+
+  /**
+   * Sets the size of the buffer for compressed input when inflating deflated files.
+   *
+   * @param inflateBufferSize the buffer size in bytes
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  public void setInflateBufferSize(int inflateBufferSize)
+  {
+    if (inflateBufferSize <= 0)
+    {
+      throw new IllegalArgumentException("Inflate buffer size must be positive, got: " + inflateBufferSize);
+    }
+    this.inflateBufferSize = inflateBufferSize;
+  }
+
+  /**
+   * Checks if consecutive sequence items with the same structure are collapsed into one run.
+   * The entries of the first item are kept as the template of the run, the entries of the
+   * following items are dropped and only counted.
+   *
+   * @return true if repeated items are collapsed
+   */
+  public boolean isCollapseRepeatedItems()
+  {
+    return collapseRepeatedItems;
+  }
+
+  /**
+   * Sets whether consecutive sequence items with the same structure are collapsed into one run.
+   *
+   * @param collapseRepeatedItems false to keep the entries of every item
+   */
+  public void setCollapseRepeatedItems(boolean collapseRepeatedItems)
+  {
+    this.collapseRepeatedItems = collapseRepeatedItems;
+  }
+
+  /**
+   * Gets the deepest nesting level that is read into entries. A sequence on this level is kept
+   * as one aggregate entry with its total length, element count and depth, the elements of its
+   * items are only counted while they are skipped.
+   *
+   * @return the maximum nesting level, {@link #UNLIMITED_DEPTH} if sequences are read completely
+   */
+  public int getMaxDepth()
+  {
+    return maxDepth;
+  }
+
+  /**
+   * Sets the deepest nesting level that is read into entries, 0 keeps only the top level data set.
+   *
+   * @param maxDepth the maximum nesting level
+   * @throws IllegalArgumentException if the depth is negative
+   */
+  public void setMaxDepth(int maxDepth)
+  {
+    if (maxDepth < 0)
+    {
+      throw new IllegalArgumentException("Max depth must be non-negative, got: " + maxDepth);
+    }
+    this.maxDepth = maxDepth;
+  }
+
+}
@@ -0,0 +1,191 @@
+package de.famst.dicom.visualizer;
+
+import org.dcm4che3.data.ElementDictionary;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the keywords of private elements through the private creator of their block.
+ * The creator blocks of the dataset currently read on each nesting level are tracked while
+ * parsing, each block refers to the keywords of its creator and group, which are shared by all
+ * instances and resolved from the dcm4che dictionary at most once per element. Looking up the
+ * keyword of a private element is a scan over the few blocks of its dataset by an int key and
+ * an array access.
+ * <p>
+ * Instances are not thread-safe, each parser uses its own.
+ */
+public final class PrivateKeywordCache
+{
+  /**
+   * Upper bound for the number of creator and group combinations kept in the shared cache.
+   */
+  public static final int MAX_CACHED_BLOCKS = 4096;
+
+  private static final int ELEMENTS_PER_BLOCK = 256;
+
+  // element keywords per private creator and group, shared by all parsers
+  private static final Map<BlockKey, String[]> BLOCKS = new ConcurrentHashMap<>();
+
+  private Scope[] scopes = new Scope[4];
+
+  /**
+   * Registers the private creator element of a block for the dataset it belongs to.
+   *
+   * @param dataset the dataset holding the element, compared by identity
+   * @param level the nesting level of the dataset
+   * @param tag the tag of the private creator element (gggg,00xx)
+   * @param creator the value of the private creator element
+   */
+  public void addCreator(Object dataset, int level, int tag, String creator)
+  {
+    if (creator == null)
+    {
+      return;
+    }
+
+    String trimmed = creator.trim();
+    int group = tag >>> 16;
+    String[] keywords = BLOCKS.get(new BlockKey(trimmed, group));
+    if (keywords == null)
+    {
+      keywords = new String[ELEMENTS_PER_BLOCK];
+      if (BLOCKS.size() < MAX_CACHED_BLOCKS)
+      {
+        String[] previous = BLOCKS.putIfAbsent(new BlockKey(trimmed, group), keywords);
+        keywords = previous != null ? previous : keywords;
+      }
+    }
+
+    scope(dataset, level).add(blockOf(group, tag & 0xFF), trimmed, keywords);
+  }
+
+  /**
+   * Gets the keyword of an element, resolving private elements through their creator.
+   *
+   * @param dataset the dataset holding the element, compared by identity, or null for the
+   *                dataset last seen on the level
+   * @param level the nesting level of the dataset
+   * @param tag the tag of the element
+   * @return the keyword, or an empty string if the element has no keyword
+   */
+  public String keywordOf(Object dataset, int level, int tag)
+  {
+    int group = tag >>> 16;
+    int block = (tag >>> 8) & 0xFF;
+
+    // only elements (gggg,xxyy) with an odd group and a block xx of 10 to FF have a creator
+    if ((group & 1) == 0 || block < 0x10 || level >= scopes.length)
+    {
+      return KeywordTable.keywordOf(tag);
+    }
+
+    Scope scope = scopes[level];
+    if (scope == null || (dataset != null && scope.dataset != dataset))
+    {
+      return KeywordTable.keywordOf(tag);
+    }
+
+    int index = scope.indexOf(blockOf(group, block));
+    if (index < 0)
+    {
+      return KeywordTable.keywordOf(tag);
+    }
+
+    String[] keywords = scope.keywords[index];
+    int element = tag & 0xFF;
+    String keyword = keywords[element];
+    if (keyword == null)
+    {
+      keyword = ElementDictionary.keywordOf(tag, scope.creators[index]);
+      keywords[element] = keyword != null ? keyword : "";
+    }
+
+    return keywords[element];
+  }
+
+  /**
+   * Gets the scope of a dataset, discarding the blocks of the previous dataset on the same level.
+   */
+  private Scope scope(Object dataset, int level)
+  {
+    if (level >= scopes.length)
+    {
+      scopes = Arrays.copyOf(scopes, Math.max(level + 1, scopes.length * 2));
+    }
+
+    Scope scope = scopes[level];
+    if (scope == null)
+    {
+      scope = new Scope();
+      scopes[level] = scope;
+    }
+    if (scope.dataset != dataset)
+    {
+      scope.reset(dataset);
+    }
+
+    return scope;
+  }
+
+  private static int blockOf(int group, int block)
+  {
+    return (group << 8) | block;
+  }
+
+  /**
+   * The creator blocks of one dataset.
+   */
+  private static final class Scope
+  {
+    private Object dataset;
+    private int[] blocks = new int[4];
+    private String[] creators = new String[4];
+    private String[][] keywords = new String[4][];
+    private int count;
+
+    void reset(Object dataset)
+    {
+      this.dataset = dataset;
+      Arrays.fill(creators, 0, count, null);
+      Arrays.fill(keywords, 0, count, null);
+      count = 0;
+    }
+
+    void add(int block, String creator, String[] blockKeywords)
+    {
+      int index = indexOf(block);
+      if (index < 0)
+      {
+        if (count == blocks.length)
+        {
+          blocks = Arrays.copyOf(blocks, count * 2);
+          creators = Arrays.copyOf(creators, count * 2);
+          keywords = Arrays.copyOf(keywords, count * 2);
+        }
+        index = count++;
+      }
+
+      blocks[index] = block;
+      creators[index] = creator;
+      keywords[index] = blockKeywords;
+    }
+
+    int indexOf(int block)
+    {
+      for (int i = 0; i < count; i++)
+      {
+        if (blocks[i] == block)
+        {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private record BlockKey(String creator, int group)
+  {
+  }
+}
@@ -9,16 +9,32 @@ import java.awt.*;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Drawer for DICOM studies that visualizes all series and instances within a study directory.
  * Scans a directory for DICOM files, organizes them by series, and creates an SVG visualization.
+ * Directories are walked in parallel, see {@link DicomDirectoryWalker}. If the directory holds a
+ * DICOMDIR, the instances are taken from its records instead, see {@link DicomDirIndex}.
+ * A ZIP or TAR archive can be given instead of a directory, its members are parsed directly
+ * from the archive without extracting them.
+ * Files of a directory are only pre-scanned for their UIDs when the study is loaded, they are
+ * parsed completely the first time the parsed series, the maximum length or the drawing are needed.
+ * The files are parsed in parallel on a bounded number of threads, the largest files first. Each
+ * thread has one file open at a time, the result does not depend on the number of threads.
+ * In streaming mode the parsed files are not kept, see {@link #setStreaming(boolean)}.
+ * The instances of a series can be grouped by their structure, drawing one instance per distinct
+ * structure, see {@link #setGroupByStructure(boolean)}.
+ * The entry lengths of all instances are scaled over the length range of the whole study, so the
+ * instances can be compared with each other.
  */
 public class StudyDrawer
 {
@@ -31,43 +47,189 @@ public class StudyDrawer
   private static final float LINE_VERTICAL_OFFSET = 2.0f;
   private static final float STROKE_WIDTH = 0.5f;
 
+  /**
+   * Default number of threads parsing the files of a study.
+   */
+  public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+  private final ParserOptions parserOptions;
+  private final ParseCache parseCache;
   private final List<Path> files = new ArrayList<>();
+  private final Map<String, List<InstanceHeader>> instances = new HashMap<>();
   private final Map<String, List<DicomParser>> series = new HashMap<>();
+  private boolean parsed;
   private float maxLength;
+  private long allocatedBytes;
+  private int measuredFiles;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private boolean streaming;
+  private boolean groupByStructure;
+  private LayoutEngine streamEngine;
+  private final Map<Path, Long> fingerprints = new HashMap<>();
 
   /**
-   * Creates a new StudyDrawer and loads all DICOM files from the specified directory.
+   * Creates a new StudyDrawer and loads all DICOM files from the specified directory or archive.
    *
-   * @param inputPath the path to the directory containing DICOM files
+   * @param inputPath the path to the directory or archive containing DICOM files
    * @throws IllegalArgumentException if the input path is null or empty
    */
   public StudyDrawer(String inputPath)
+  {
+    this(inputPath, new ParserOptions());
+  }
+
+  /**
+   * Creates a new StudyDrawer and loads all DICOM files from the specified directory or archive
+   * using the given parser options.
+   *
+   * @param inputPath the path to the directory or archive containing DICOM files
+   * @param parserOptions the options used to parse each DICOM file
+   * @throws IllegalArgumentException if the input path is null or empty, or the options are null
+   */
+  public StudyDrawer(String inputPath, ParserOptions parserOptions)
+  {
+    this(inputPath, parserOptions, null);
+  }
+
+  /**
+   * Creates a new StudyDrawer and loads all DICOM files from the specified directory or archive
+   * using the given parser options. Files of a directory are taken from the parse cache if they
+   * did not change since they were cached, archive members are always parsed.
+   *
+   * @param inputPath the path to the directory or archive containing DICOM files
+   * @param parserOptions the options used to parse each DICOM file
+   * @param parseCache the cache of parsed files, or null to parse every file
+   * @throws IllegalArgumentException if the input path is null or empty, or the options are null
+   */
+  public StudyDrawer(String inputPath, ParserOptions parserOptions, ParseCache parseCache)
   {
     if (inputPath == null || inputPath.trim().isEmpty())
     {
       throw new IllegalArgumentException("Input path cannot be null or empty");
     }
+    if (parserOptions == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+
+    this.parserOptions = parserOptions;
+    this.parseCache = parseCache;
 
     LOG.info("Loading study from [{}]", inputPath);
 
-    loadDicomFiles(inputPath);
-    organizeBySeries();
+    if (DicomArchiveReader.isArchive(Paths.get(inputPath)))
+    {
+      loadArchive(inputPath);
+      parsed = true;
+      normalize();
+      logSummary();
+    }
+    else if (!loadDicomDir(inputPath))
+    {
+      loadDicomFiles(inputPath);
+    }
   }
 
   /**
-   * Loads all DICOM files from the specified directory and subdirectories.
+   * Parses all DICOM members of the specified archive and organizes them by series.
+   * The files of the study are the member names resolved against the archive path.
+   */
+  private void loadArchive(String inputPath)
+  {
+    Path archivePath = Paths.get(inputPath);
+
+    try
+    {
+      DicomArchiveReader.forEachDicomMember(archivePath, (name, inStream) -> {
+        Path path = archivePath.resolve(name);
+        LOG.info("Adding file [{}]", path);
+        files.add(path);
+
+        try
+        {
+          DicomParser dicomParser = DicomParser.parseStream(path.toString(), inStream, parserOptions);
+          addHeader(InstanceHeader.of(path, dicomParser));
+          addInstance(dicomParser.getSeuid(), dicomParser);
+        }
+        catch (Exception e)
+        {
+          LOG.error("Failed to parse DICOM file [{}]: {}", path, e.getMessage(), e);
+        }
+      });
+
+      if (files.isEmpty())
+      {
+        LOG.warn("No DICOM files found in [{}]", inputPath);
+      }
+    }
+    catch (IOException e)
+    {
+      LOG.error("Error reading archive [{}]: {}", inputPath, e.getMessage(), e);
+      throw new RuntimeException("Failed to load DICOM files from: " + inputPath, e);
+    }
+  }
+
+  /**
+   * Loads the instances listed in the DICOMDIR of the specified directory, if it has one.
+   *
+   * @return true if the instances were taken from a DICOMDIR, false if the files need to be walked
+   */
+  private boolean loadDicomDir(String inputPath)
+  {
+    Path dicomDir = DicomDirIndex.find(Paths.get(inputPath));
+    if (dicomDir == null)
+    {
+      return false;
+    }
+
+    List<InstanceHeader> headers;
+    try
+    {
+      headers = DicomDirIndex.read(dicomDir);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      LOG.warn("Ignoring unreadable DICOMDIR [{}]: {}", dicomDir, e.getMessage());
+      return false;
+    }
+
+    if (headers.isEmpty())
+    {
+      LOG.warn("No instances listed in [{}]", dicomDir);
+      return false;
+    }
+
+    headers.forEach(header -> {
+      LOG.info("Adding file [{}]", header.getPath());
+      files.add(header.getPath());
+      addHeader(header);
+    });
+
+    LOG.info("Found {} series in {} files listed in [{}]", instances.size(), files.size(), dicomDir);
+    return true;
+  }
+
+  /**
+   * Loads all DICOM files from the specified directory and subdirectories and pre-scans them.
+   * The directories are walked and the files are detected and pre-scanned in parallel, each file
+   * through the channel opened for its detection. Files with a valid entry in the parse cache take
+   * their header from it and are not opened.
    */
   private void loadDicomFiles(String inputPath)
   {
     try
     {
-      Files.walk(Paths.get(inputPath))
-        .filter(Files::isRegularFile)
-        .filter(DicomFileDetector::isDCMFile)
-        .forEach(path -> {
-          LOG.info("Adding file [{}]", path);
-          files.add(path);
-        });
+      List<ScannedFile> scanned = new DicomDirectoryWalker().walk(Paths.get(inputPath), this::lookupFile,
+        StudyDrawer::scanFile);
+
+      scanned.forEach(file -> {
+        LOG.info("Adding file [{}]", file.path());
+        files.add(file.path());
+        if (file.header() != null)
+        {
+          addHeader(file.header());
+        }
+      });
 
       if (files.isEmpty())
       {
@@ -79,39 +241,381 @@ public class StudyDrawer
       LOG.error("Error walking directory [{}]: {}", inputPath, e.getMessage(), e);
       throw new RuntimeException("Failed to load DICOM files from: " + inputPath, e);
     }
+
+    LOG.info("Found {} series in {} files", instances.size(), files.size());
   }
 
   /**
-   * Organizes the loaded DICOM files by SeriesInstanceUID and calculates the maximum length.
+   * Takes the header of a file from the parse cache, if it holds a valid entry for the file,
+   * called on the workers of the directory walk before the file is opened.
+   *
+   * @return the file with its cached header, or null if it has to be pre-scanned
    */
-  private void organizeBySeries()
+  private ScannedFile lookupFile(Path path, BasicFileAttributes attributes)
   {
-    AtomicReference<Float> maxLengthRef = new AtomicReference<>(0.0f);
+    if (parseCache == null)
+    {
+      return null;
+    }
+
+    InstanceHeader header = parseCache.readHeader(path, attributes, parserOptions);
+    return header != null ? new ScannedFile(path, header) : null;
+  }
 
-    files.forEach(path -> {
-      try
+  /**
+   * Pre-scans a detected DICOM file, called on the workers of the directory walk.
+   */
+  private static ScannedFile scanFile(DetectedDicomFile file)
+  {
+    try
+    {
+      return new ScannedFile(file.getPath(), InstanceHeader.scanDetectedFile(file));
+    }
+    catch (Exception e)
+    {
+      LOG.error("Failed to scan DICOM file [{}]: {}", file.getPath(), e.getMessage(), e);
+      return new ScannedFile(file.getPath(), null);
+    }
+  }
+
+  /**
+   * Adds a scanned instance to its series.
+   */
+  private void addHeader(InstanceHeader header)
+  {
+    instances.computeIfAbsent(header.getSeuid(), key -> {
+      LOG.info("Found Series [{}]", key);
+      return new ArrayList<>();
+    }).add(header);
+  }
+
+  /**
+   * Parses and lays out all scanned instances, unless this was already done.
+   * The files are parsed in parallel, each into the slot of its instance, and the parsed
+   * instances are added in the order of their headers afterwards, so the series are the same
+   * as if the files were parsed one after the other.
+   */
+  private void parseInstances()
+  {
+    if (parsed)
+    {
+      return;
+    }
+    parsed = true;
+
+    Map<String, DicomParser[]> slots = new HashMap<>();
+    List<ParseTask> tasks = new ArrayList<>();
+    instances.forEach((seriesUID, headers) -> {
+      DicomParser[] parsers = new DicomParser[headers.size()];
+      slots.put(seriesUID, parsers);
+      for (int i = 0; i < headers.size(); i++)
       {
-        DicomParser dicomParser = DicomParser.parseFile(path.toAbsolutePath().toString());
-        String seriesUID = dicomParser.getSeuid();
+        InstanceHeader header = headers.get(i);
+        long size = header.getAttributes() != null ? header.getAttributes().size() : 0;
+        tasks.add(new ParseTask(header, size, parsers, i));
+      }
+    });
 
-        if (dicomParser.getLength() > maxLengthRef.get())
+    // the largest files are started first, so they do not delay the end of the parse, the size is
+    // taken from the directory walk and files listed in a DICOMDIR keep the order of their series
+    tasks.sort(Comparator.comparingLong(ParseTask::size).reversed());
+    runParseTasks(tasks);
+
+    instances.forEach((seriesUID, headers) -> {
+      for (DicomParser dicomParser : slots.get(seriesUID))
+      {
+        if (dicomParser != null)
         {
-          maxLengthRef.set(dicomParser.getLength());
+          addInstance(seriesUID, dicomParser);
         }
+      }
+    });
 
-        series.computeIfAbsent(seriesUID, key -> {
-          LOG.info("Found Series [{}]", key);
-          return new ArrayList<>();
-        }).add(dicomParser);
+    normalize();
+    logSummary();
+  }
+
+  /**
+   * Runs the parse tasks in the given order on a pool of at most {@link #getParallelism()} threads.
+   */
+  private void runParseTasks(List<ParseTask> tasks)
+  {
+    if (tasks.isEmpty())
+    {
+      return;
+    }
+
+    long start = System.nanoTime();
+    int threads = Math.min(parallelism, tasks.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try
+    {
+      List<Future<?>> futures = new ArrayList<>(tasks.size());
+      for (ParseTask task : tasks)
+      {
+        futures.add(executor.submit(() -> task.slots()[task.index()] = parseFile(task.header())));
       }
-      catch (Exception e)
+
+      for (Future<?> future : futures)
       {
-        LOG.error("Failed to parse DICOM file [{}]: {}", path, e.getMessage(), e);
+        future.get();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while parsing the study", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new RuntimeException("Failed to parse the study", e.getCause());
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    LOG.info("Parsed [{}] files on [{}] threads in [{}] ms", tasks.size(), threads,
+      (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Parses the file of one instance, called on the parse threads. A file found by the directory
+   * walk is parsed with the attributes read by the walk, without checking it again. The file is
+   * opened a second time though: the channel of its detection is only used for the pre-scan, since
+   * the parse is deferred until the series are drawn.
+   *
+   * @return the parsed file, or null if it cannot be parsed
+   */
+  private DicomParser parseFile(InstanceHeader header)
+  {
+    Path path = header.getPath();
+    BasicFileAttributes attributes = header.getAttributes();
+    try
+    {
+      if (attributes == null)
+      {
+        return parseCache != null
+          ? parseCache.parse(path, parserOptions)
+          : DicomParser.parseFile(path.toAbsolutePath().toString(), parserOptions);
       }
-    });
 
-    this.maxLength = maxLengthRef.get();
-    LOG.info("Found {} series with max length {}", series.size(), maxLength);
+      return parseCache != null
+        ? parseCache.parse(path, attributes, parserOptions)
+        : DicomParser.parseFile(path.toAbsolutePath(), attributes, parserOptions);
+    }
+    catch (Exception e)
+    {
+      LOG.error("Failed to parse DICOM file [{}]: {}", path, e.getMessage(), e);
+      return null;
+    }
+  }
+
+  /**
+   * First pass of the streaming mode: parses the files one at a time to find the length range of
+   * the study and the maximum length, keeping only the number of entries, the sum of the
+   * logarithms of their lengths and the structural fingerprint of each file, unless this was
+   * already done. Files that cannot be parsed get no fingerprint.
+   */
+  private void measureInstances()
+  {
+    if (streamEngine != null)
+    {
+      return;
+    }
+
+    long start = System.nanoTime();
+    long minLength = Long.MAX_VALUE;
+    long studyMaxLength = 1;
+    List<InstanceExtent> extents = new ArrayList<>();
+
+    for (List<InstanceHeader> headers : instances.values())
+    {
+      for (InstanceHeader header : headers)
+      {
+        DicomParser dicomParser = parseFile(header);
+        if (dicomParser == null)
+        {
+          continue;
+        }
+
+        DicomEntryTable table = dicomParser.getEntries();
+        fingerprints.put(header.getPath(), table.getStructuralFingerprint());
+        if (!table.isEmpty())
+        {
+          minLength = Math.min(minLength, table.getMinLength());
+          studyMaxLength = Math.max(studyMaxLength, table.getMaxLength());
+        }
+        extents.add(new InstanceExtent(table.size(), table.getLogLengthSum()));
+
+        if (dicomParser.getAllocatedBytes() >= 0)
+        {
+          allocatedBytes += dicomParser.getAllocatedBytes();
+          measuredFiles++;
+        }
+      }
+    }
+
+    streamEngine = LayoutEngine.forRange(minLength, studyMaxLength);
+
+    maxLength = 0.0f;
+    for (InstanceExtent extent : extents)
+    {
+      maxLength = Math.max(maxLength, streamEngine.getTotalLength(extent.rows(), extent.logLengthSum()));
+    }
+
+    LOG.info("Measured [{}] files in [{}] ms", extents.size(), (System.nanoTime() - start) / 1_000_000);
+    logSummary();
+  }
+
+  /**
+   * Lays out all parsed instances over the length range of the study and updates the maximum length.
+   */
+  private void normalize()
+  {
+    List<DicomEntryTable> tables = new ArrayList<>();
+    series.values().forEach(parsers -> parsers.forEach(dicomParser -> tables.add(dicomParser.getEntries())));
+
+    LayoutEngine engine = LayoutEngine.forStudy(tables);
+
+    maxLength = 0.0f;
+    series.values().forEach(parsers -> parsers.forEach(dicomParser -> {
+      dicomParser.layout(engine);
+      maxLength = Math.max(maxLength, dicomParser.getLength());
+    }));
+  }
+
+  /**
+   * Adds a parsed instance to its series.
+   */
+  private void addInstance(String seriesUID, DicomParser dicomParser)
+  {
+    if (dicomParser.getAllocatedBytes() >= 0)
+    {
+      allocatedBytes += dicomParser.getAllocatedBytes();
+      measuredFiles++;
+    }
+
+    series.computeIfAbsent(seriesUID, key -> new ArrayList<>()).add(dicomParser);
+  }
+
+  private void logSummary()
+  {
+    LOG.info("Found {} series with max length {}", streamEngine != null ? instances.size() : series.size(), maxLength);
+
+    if (measuredFiles > 0)
+    {
+      LOG.info("Allocated {} bytes per file on average", allocatedBytes / measuredFiles);
+    }
+  }
+
+  /**
+   * Gets the number of threads parsing the files of this study.
+   *
+   * @return the number of parse threads
+   */
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * Sets the number of threads parsing the files of this study, which is also the maximum number
+   * of files open at the same time. Takes effect if set before the files are parsed.
+   *
+   * @param parallelism the number of parse threads
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public void setParallelism(int parallelism)
+  {
+    if (parallelism <= 0)
+    {
+      throw new IllegalArgumentException("Parallelism must be positive, got: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Checks if the study is drawn in streaming mode.
+   *
+   * @return true if the parsed files are not kept
+   */
+  public boolean isStreaming()
+  {
+    return streaming;
+  }
+
+  /**
+   * Sets the streaming mode, which bounds the memory by the largest file instead of the study.
+   * The maximum length is then found by a first pass parsing the files one at a time, and the
+   * drawing parses, draws and drops the files one at a time in a second pass. Each file is parsed
+   * twice, a parse cache avoids the second parse. The files are parsed on one thread. The parsed
+   * series are still all kept once they are requested, see {@link #getSeries()}.
+   * Archives are always parsed completely when they are loaded.
+   *
+   * @param streaming true to not keep the parsed files
+   */
+  public void setStreaming(boolean streaming)
+  {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Checks if the instances of a series are grouped by their structure.
+   *
+   * @return true if one instance per distinct structure is drawn
+   */
+  public boolean isGroupByStructure()
+  {
+    return groupByStructure;
+  }
+
+  /**
+   * Sets if the instances of a series are grouped by their structural fingerprint, see
+   * {@link DicomParser#getFingerprint()}. Only the first instance of each distinct structure is
+   * then drawn, labeled with the number of instances sharing it, so the drawing grows with the
+   * number of structures instead of the number of instances. Instances with a structure of their
+   * own are drawn as they are.
+   *
+   * @param groupByStructure true to draw one instance per distinct structure
+   */
+  public void setGroupByStructure(boolean groupByStructure)
+  {
+    this.groupByStructure = groupByStructure;
+  }
+
+  /**
+   * Gets the height of the drawing of this study. Unless the instances are grouped by their
+   * structure, every file is counted without parsing it.
+   *
+   * @return the height of the drawing
+   */
+  public int getHeight()
+  {
+    if (!groupByStructure)
+    {
+      return INSTANCE_HEIGHT * files.size() + SERIES_HEADER_HEIGHT * instances.size();
+    }
+
+    int height = 0;
+    if (streaming && !parsed)
+    {
+      measureInstances();
+      for (List<InstanceHeader> headers : instances.values())
+      {
+        int groups = groupHeaders(headers).size();
+        height += groups > 0 ? getSeriesHeight(groups) : 0;
+      }
+    }
+    else
+    {
+      parseInstances();
+      for (List<DicomParser> parsers : series.values())
+      {
+        height += getSeriesHeight(groupParsers(parsers).size());
+      }
+    }
+    return height;
   }
 
   /**
@@ -125,22 +629,42 @@ public class StudyDrawer
   }
 
   /**
-   * Gets the map of series UIDs to their DICOM parsers.
+   * Gets the map of series UIDs to the pre-scanned headers of their instances.
+   * The files are not parsed completely for this.
+   *
+   * @return an unmodifiable map of series
+   */
+  public Map<String, List<InstanceHeader>> getInstances()
+  {
+    return Collections.unmodifiableMap(instances);
+  }
+
+  /**
+   * Gets the map of series UIDs to their DICOM parsers, parsing the files on the first call.
    *
    * @return an unmodifiable map of series
    */
   public Map<String, List<DicomParser>> getSeries()
   {
+    parseInstances();
     return Collections.unmodifiableMap(series);
   }
 
   /**
-   * Gets the maximum length across all DICOM instances in the study.
+   * Gets the maximum length across all DICOM instances in the study, parsing the files on the first call.
    *
    * @return the maximum length
    */
   public float getMaxLength()
   {
+    if (streaming && !parsed)
+    {
+      measureInstances();
+    }
+    else
+    {
+      parseInstances();
+    }
     return maxLength;
   }
 
@@ -158,6 +682,16 @@ public class StudyDrawer
       throw new IllegalArgumentException("Graphics context cannot be null");
     }
 
+    boolean stream = streaming && !parsed;
+    if (stream)
+    {
+      measureInstances();
+    }
+    else
+    {
+      parseInstances();
+    }
+
     int offset = 0;
 
     // Draw background
@@ -166,36 +700,171 @@ public class StudyDrawer
     graph.fill(new Rectangle2D.Float(0, 0, graph.getWidth(), graph.getHeight()));
 
     // Sort series by UID for consistent ordering
-    List<String> sortedSeriesUIDs = new ArrayList<>(series.keySet());
+    List<String> sortedSeriesUIDs = new ArrayList<>(stream ? instances.keySet() : series.keySet());
     Collections.sort(sortedSeriesUIDs);
 
     for (String seriesUID : sortedSeriesUIDs)
     {
-      LOG.info("Drawing series [{}]", seriesUID);
+      offset = stream
+        ? drawStreamedSeries(graph, seriesUID, offset)
+        : drawParsedSeries(graph, seriesUID, offset);
+    }
 
-      // Draw series header
-      graph.setColor(ColorMapper.HSBtoRGB(0.0f, 0.0f, 100.0f));
-      graph.drawString(seriesUID, 0.0f, offset + HEADER_VERTICAL_OFFSET - HEADER_PADDING);
-      graph.draw(new Line2D.Float(0.0f, offset + LINE_VERTICAL_OFFSET, graph.getWidth(), offset + LINE_VERTICAL_OFFSET));
+    return graph;
+  }
 
-      offset += SERIES_HEADER_HEIGHT;
+  /**
+   * Draws a parsed series, one instance per group of {@link #groupParsers(List)}.
+   */
+  private int drawParsedSeries(SVGGraphics2D graph, String seriesUID, int offset)
+  {
+    offset = drawSeriesHeader(graph, seriesUID, offset);
+
+    for (List<DicomParser> group : groupParsers(series.get(seriesUID)))
+    {
+      offset = drawInstance(graph, group.get(0), group.size(), offset);
+    }
+
+    return offset;
+  }
 
-      // Draw all instances in this series
-      List<DicomParser> parsers = series.get(seriesUID);
-      for (DicomParser parser : parsers)
+  /**
+   * Second pass of the streaming mode: parses, lays out and draws the instances of a series one
+   * at a time, one instance per group of {@link #groupHeaders(List)}. Series without any
+   * parsable file are left out, as in the parsed series.
+   */
+  private int drawStreamedSeries(SVGGraphics2D graph, String seriesUID, int offset)
+  {
+    List<List<InstanceHeader>> groups = groupHeaders(instances.get(seriesUID));
+    if (groups.isEmpty())
+    {
+      return offset;
+    }
+
+    offset = drawSeriesHeader(graph, seriesUID, offset);
+
+    for (List<InstanceHeader> group : groups)
+    {
+      DicomParser dicomParser = parseFile(group.get(0));
+      if (dicomParser != null)
       {
-        LOG.info("Drawing instance [{}]", parser.getSiuid());
+        dicomParser.layout(streamEngine);
+        offset = drawInstance(graph, dicomParser, group.size(), offset);
+      }
+    }
 
-        int width = (int) parser.getLength();
-        int height = INSTANCE_HEIGHT;
+    return offset;
+  }
 
-        DicomDrawer dicomDrawer = new DicomDrawer(parser, graph, width, height, offset);
-        graph = (SVGGraphics2D) dicomDrawer.draw();
+  /**
+   * Groups the parsed instances of a series by their structural fingerprint, in the order of their
+   * first instance, or puts every instance in a group of its own if they are not grouped.
+   */
+  private List<List<DicomParser>> groupParsers(List<DicomParser> parsers)
+  {
+    Map<Object, List<DicomParser>> groups = new LinkedHashMap<>();
+    for (DicomParser dicomParser : parsers)
+    {
+      Object key = groupByStructure ? dicomParser.getFingerprint() : dicomParser;
+      groups.computeIfAbsent(key, k -> new ArrayList<>()).add(dicomParser);
+    }
+    return new ArrayList<>(groups.values());
+  }
 
-        offset += INSTANCE_HEIGHT;
+  /**
+   * Groups the measured instances of a series like {@link #groupParsers(List)}, using the
+   * fingerprints of the first pass. Instances that could not be parsed are left out.
+   */
+  private List<List<InstanceHeader>> groupHeaders(List<InstanceHeader> headers)
+  {
+    Map<Object, List<InstanceHeader>> groups = new LinkedHashMap<>();
+    for (InstanceHeader header : headers)
+    {
+      Long fingerprint = fingerprints.get(header.getPath());
+      if (fingerprint != null)
+      {
+        groups.computeIfAbsent(groupByStructure ? fingerprint : header, k -> new ArrayList<>()).add(header);
       }
     }
+    return new ArrayList<>(groups.values());
+  }
 
-    return graph;
+  /**
+   * Draws one series with its header, followed by all its instances.
+   *
+   * @param graph the SVG graphics context to draw on
+   * @param seriesUID the UID of the series
+   * @param parsers the instances of the series
+   * @param offset the vertical offset of the series
+   * @return the vertical offset behind the series
+   */
+  static int drawSeries(SVGGraphics2D graph, String seriesUID, Collection<DicomParser> parsers, int offset)
+  {
+    offset = drawSeriesHeader(graph, seriesUID, offset);
+
+    // Draw all instances in this series
+    for (DicomParser parser : parsers)
+    {
+      offset = drawInstance(graph, parser, 1, offset);
+    }
+
+    return offset;
+  }
+
+  private static int drawSeriesHeader(SVGGraphics2D graph, String seriesUID, int offset)
+  {
+    LOG.info("Drawing series [{}]", seriesUID);
+
+    graph.setColor(ColorMapper.HSBtoRGB(0.0f, 0.0f, 100.0f));
+    graph.drawString(seriesUID, 0.0f, offset + HEADER_VERTICAL_OFFSET - HEADER_PADDING);
+    graph.draw(new Line2D.Float(0.0f, offset + LINE_VERTICAL_OFFSET, graph.getWidth(), offset + LINE_VERTICAL_OFFSET));
+
+    return offset + SERIES_HEADER_HEIGHT;
+  }
+
+  private static int drawInstance(SVGGraphics2D graph, DicomParser parser, int instanceCount, int offset)
+  {
+    LOG.info("Drawing instance [{}] for [{}] instances", parser.getSiuid(), instanceCount);
+
+    int width = (int) parser.getLength();
+    int height = INSTANCE_HEIGHT;
+
+    DicomDrawer dicomDrawer = new DicomDrawer(parser, graph, width, height, offset);
+    dicomDrawer.setInstanceCount(instanceCount);
+    dicomDrawer.draw();
+
+    return offset + INSTANCE_HEIGHT;
+  }
+
+  /**
+   * Gets the height of a series drawn by {@link #drawSeries}.
+   *
+   * @param instanceCount the number of instances of the series
+   * @return the height of the series
+   */
+  static int getSeriesHeight(int instanceCount)
+  {
+    return SERIES_HEADER_HEIGHT + INSTANCE_HEIGHT * instanceCount;
+  }
+
+  /**
+   * An instance to parse with its file size from the directory walk and its slot in its series.
+   */
+  private record ParseTask(InstanceHeader header, long size, DicomParser[] slots, int index)
+  {
+  }
+
+  /**
+   * What the first pass of the streaming mode keeps of a parsed file to find the maximum length.
+   */
+  private record InstanceExtent(int rows, double logLengthSum)
+  {
+  }
+
+  /**
+   * A file found by the directory walk with its pre-scanned header, or null if the scan failed.
+   */
+  private record ScannedFile(Path path, InstanceHeader header)
+  {
   }
 }
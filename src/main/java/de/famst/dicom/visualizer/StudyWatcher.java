@@ -0,0 +1,521 @@
+package de.famst.dicom.visualizer;
+
+import org.jfree.graphics2d.svg.SVGGraphics2D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a study directory and keeps its SVG visualization up to date while instances arrive.
+ * The parsed instances of every series and the SVG fragment drawn for every series are kept in
+ * memory. On a change only the new or changed files are parsed and only the series they belong
+ * to are drawn again, the output is then assembled from the fragments of all series.
+ * <p>
+ * All series are drawn again only if the length range of the study or its width changed, as
+ * every instance is scaled over the range of the whole study, see {@link LayoutEngine#forStudy}.
+ * Changes are collected until the directory is quiet for a short time, so a file being written
+ * is not parsed for every write. Files that cannot be parsed are retried on their next change.
+ */
+public final class StudyWatcher implements Closeable
+{
+  private static final Logger LOG = LoggerFactory.getLogger(StudyWatcher.class);
+
+  /**
+   * Default time in milliseconds without changes before the collected changes are applied.
+   */
+  public static final long DEFAULT_QUIET_MILLIS = 250;
+
+  private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+  private static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+
+  private final Path root;
+  private final Path output;
+  private final ParserOptions parserOptions;
+  private final ParseCache parseCache;
+  private final long quietMillis;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+
+  private final Map<Path, WatchedFile> files = new HashMap<>();
+  private final Map<String, Map<Path, DicomParser>> series = new TreeMap<>();
+  private final Map<String, String> fragments = new HashMap<>();
+  private LayoutEngine engine;
+  private int width;
+  private long fragmentCount;
+  private int renderedSeries;
+
+  /**
+   * Creates a watcher for the specified study directory with the default quiet time.
+   *
+   * @param root the study directory to watch
+   * @param output the SVG file to write
+   * @param parserOptions the options used to parse each DICOM file
+   * @param parseCache the cache of parsed files, or null to parse every file
+   * @throws IOException if the watch service cannot be created
+   * @throws IllegalArgumentException if a path or the options are null, or the root is no directory
+   */
+  public StudyWatcher(Path root, Path output, ParserOptions parserOptions, ParseCache parseCache) throws IOException
+  {
+    this(root, output, parserOptions, parseCache, DEFAULT_QUIET_MILLIS);
+  }
+
+  /**
+   * Creates a watcher for the specified study directory.
+   *
+   * @param root the study directory to watch
+   * @param output the SVG file to write
+   * @param parserOptions the options used to parse each DICOM file
+   * @param parseCache the cache of parsed files, or null to parse every file
+   * @param quietMillis the time in milliseconds without changes before changes are applied
+   * @throws IOException if the watch service cannot be created
+   * @throws IllegalArgumentException if a path or the options are null, the root is no directory
+   *                                  or the quiet time is negative
+   */
+  public StudyWatcher(Path root, Path output, ParserOptions parserOptions, ParseCache parseCache,
+                      long quietMillis) throws IOException
+  {
+    if (root == null)
+    {
+      throw new IllegalArgumentException("Root path cannot be null");
+    }
+    if (!Files.isDirectory(root))
+    {
+      throw new IllegalArgumentException("Watched path must be a directory: " + root);
+    }
+    if (output == null)
+    {
+      throw new IllegalArgumentException("Output path cannot be null");
+    }
+    if (parserOptions == null)
+    {
+      throw new IllegalArgumentException("ParserOptions cannot be null");
+    }
+    if (quietMillis < 0)
+    {
+      throw new IllegalArgumentException("Quiet time must be non-negative, got: " + quietMillis);
+    }
+
+    this.root = root;
+    this.output = output;
+    this.parserOptions = parserOptions;
+    this.parseCache = parseCache;
+    this.quietMillis = quietMillis;
+    this.watchService = root.getFileSystem().newWatchService();
+  }
+
+  /**
+   * Loads and draws the whole study, then applies the changes until the thread is interrupted
+   * or the watcher is closed.
+   *
+   * @throws IOException if the study cannot be loaded
+   * @throws InterruptedException if the thread is interrupted while waiting for changes
+   */
+  public void run() throws IOException, InterruptedException
+  {
+    load();
+
+    LOG.info("Watching [{}]", root);
+    try
+    {
+      while (!Thread.currentThread().isInterrupted())
+      {
+        update(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+    }
+    catch (ClosedWatchServiceException e)
+    {
+      LOG.info("Stopped watching [{}]", root);
+    }
+  }
+
+  /**
+   * Registers all directories of the study, parses all DICOM files in them and draws the study.
+   * Directories are registered before they are walked, so no file created meanwhile is missed.
+   *
+   * @throws IOException if the study directory cannot be read or the output cannot be written
+   */
+  public void load() throws IOException
+  {
+    Set<Path> changed = new LinkedHashSet<>();
+    register(root, changed);
+
+    LOG.info("Loading [{}] files from [{}]", changed.size(), root);
+    apply(changed);
+  }
+
+  /**
+   * Waits for changes of the study, collects them until the directory is quiet and applies them.
+   * The output is written again if any instance was added, changed or removed.
+   *
+   * @param timeout the time to wait for the first change
+   * @param unit the unit of the timeout
+   * @return the number of changed files, 0 if nothing changed before the timeout
+   * @throws IOException if the output cannot be written
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public int update(long timeout, TimeUnit unit) throws IOException, InterruptedException
+  {
+    Set<Path> changed = new LinkedHashSet<>();
+
+    WatchKey key = watchService.poll(timeout, unit);
+    while (key != null)
+    {
+      collect(key, changed);
+      key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+    }
+
+    return changed.isEmpty() ? 0 : apply(changed);
+  }
+
+  /**
+   * Gets the parsed instances of every series, sorted by series UID and by path.
+   *
+   * @return an unmodifiable map of series UIDs to their instances
+   */
+  public Map<String, List<DicomParser>> getSeries()
+  {
+    Map<String, List<DicomParser>> result = new TreeMap<>();
+    series.forEach((seriesUID, parsers) -> result.put(seriesUID, List.copyOf(parsers.values())));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Gets the number of series drawn again by the last load or update.
+   *
+   * @return the number of drawn series
+   */
+  public int getRenderedSeries()
+  {
+    return renderedSeries;
+  }
+
+  /**
+   * Stops watching the study directory.
+   *
+   * @throws IOException if the watch service cannot be closed
+   */
+  @Override
+  public void close() throws IOException
+  {
+    watchService.close();
+  }
+
+  /**
+   * Registers a directory and all directories below it and collects all files in them.
+   */
+  private void register(Path directory, Set<Path> changed) throws IOException
+  {
+    try (Stream<Path> paths = Files.walk(directory))
+    {
+      for (Path path : (Iterable<Path>) paths::iterator)
+      {
+        if (Files.isDirectory(path))
+        {
+          WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+          directories.put(key, path);
+        }
+        else
+        {
+          changed.add(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the files changed by the events of a key. New directories are registered and their
+   * files collected, after an overflow the whole study is checked again.
+   */
+  private void collect(WatchKey key, Set<Path> changed)
+  {
+    Path directory = directories.get(key);
+
+    for (WatchEvent<?> event : key.pollEvents())
+    {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+      {
+        LOG.warn("Lost changes of [{}], checking all files again", root);
+        changed.addAll(files.keySet());
+        registerQuietly(root, changed);
+        continue;
+      }
+
+      Path path = directory.resolve((Path) event.context());
+      if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path))
+      {
+        registerQuietly(path, changed);
+      }
+      else
+      {
+        changed.add(path);
+      }
+    }
+
+    if (!key.reset())
+    {
+      directories.remove(key);
+      LOG.info("Stopped watching removed directory [{}]", directory);
+
+      // the files of a removed directory get no delete events of their own
+      files.keySet().stream().filter(path -> path.startsWith(directory)).forEach(changed::add);
+    }
+  }
+
+  private void registerQuietly(Path directory, Set<Path> changed)
+  {
+    try
+    {
+      register(directory, changed);
+    }
+    catch (IOException e)
+    {
+      LOG.warn("Error registering directory [{}]: {}", directory, e.getMessage());
+    }
+  }
+
+  /**
+   * Parses the changed files, draws the series they belong to and writes the output.
+   *
+   * @return the number of files that were added, changed or removed
+   */
+  private int apply(Set<Path> changed) throws IOException
+  {
+    long start = System.nanoTime();
+
+    Set<String> dirty = new HashSet<>();
+    int count = 0;
+    for (Path path : changed)
+    {
+      if (applyFile(path, dirty))
+      {
+        count++;
+      }
+    }
+
+    if (count == 0 && engine != null)
+    {
+      return 0;
+    }
+
+    render(dirty);
+    write();
+
+    LOG.info("Applied [{}] changed files, drew [{}] of [{}] series in [{}] ms", count, renderedSeries,
+      series.size(), (System.nanoTime() - start) / 1_000_000);
+    return count;
+  }
+
+  /**
+   * Adds, parses again or removes one file and marks the series it belonged to or belongs to now.
+   *
+   * @return true if the instances of the study changed
+   */
+  private boolean applyFile(Path path, Set<String> dirty)
+  {
+    WatchedFile known = files.get(path);
+
+    BasicFileAttributes attributes = readAttributes(path);
+    if (attributes != null && known != null
+      && attributes.size() == known.size() && attributes.lastModifiedTime().toMillis() == known.modified())
+    {
+      return false;
+    }
+
+    DicomParser dicomParser = null;
+    if (attributes != null && attributes.isRegularFile())
+    {
+      dicomParser = parse(path, attributes);
+    }
+
+    if (known != null)
+    {
+      remove(path, known, dirty);
+    }
+
+    if (dicomParser == null)
+    {
+      return known != null;
+    }
+
+    LOG.info("{} file [{}]", known != null ? "Updating" : "Adding", path);
+    files.put(path, new WatchedFile(attributes.size(), attributes.lastModifiedTime().toMillis(),
+      dicomParser.getSeuid()));
+    series.computeIfAbsent(dicomParser.getSeuid(), key -> new TreeMap<>()).put(path, dicomParser);
+    dirty.add(dicomParser.getSeuid());
+    return true;
+  }
+
+  private void remove(Path path, WatchedFile known, Set<String> dirty)
+  {
+    files.remove(path);
+
+    Map<Path, DicomParser> parsers = series.get(known.seriesUID());
+    parsers.remove(path);
+    if (parsers.isEmpty())
+    {
+      series.remove(known.seriesUID());
+      fragments.remove(known.seriesUID());
+    }
+    dirty.add(known.seriesUID());
+  }
+
+  private static BasicFileAttributes readAttributes(Path path)
+  {
+    try
+    {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Parses a changed file with the attributes read for the change, without reading them again.
+   * The file is opened once, the parse continues on the channel of its detection.
+   *
+   * @return the parsed file, or null if it is no DICOM file or cannot be parsed
+   */
+  private DicomParser parse(Path path, BasicFileAttributes attributes)
+  {
+    DetectedDicomFile detected = DicomFileDetector.detect(path, attributes);
+    if (detected == null)
+    {
+      return null;
+    }
+
+    try
+    {
+      return parseCache != null
+        ? parseCache.parse(detected, parserOptions)
+        : DicomParser.parseDetectedFile(detected, parserOptions);
+    }
+    catch (Exception e)
+    {
+      LOG.error("Failed to parse DICOM file [{}]: {}", path, e.getMessage(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Lays out the instances and draws the fragments of the changed series. All series are laid
+   * out and drawn again if the length range or the width of the study changed.
+   */
+  private void render(Set<String> dirty)
+  {
+    List<DicomEntryTable> tables = new ArrayList<>();
+    series.values().forEach(parsers -> parsers.values().forEach(dicomParser -> tables.add(dicomParser.getEntries())));
+
+    LayoutEngine studyEngine = LayoutEngine.forStudy(tables);
+    boolean rescaled = !studyEngine.hasSameScale(engine);
+    engine = studyEngine;
+
+    series.forEach((seriesUID, parsers) -> {
+      if (rescaled || dirty.contains(seriesUID))
+      {
+        parsers.values().forEach(dicomParser -> dicomParser.layout(studyEngine));
+      }
+    });
+
+    float maxLength = 0.0f;
+    for (Map<Path, DicomParser> parsers : series.values())
+    {
+      for (DicomParser dicomParser : parsers.values())
+      {
+        maxLength = Math.max(maxLength, dicomParser.getLength());
+      }
+    }
+
+    boolean resized = (int) maxLength != width;
+    width = (int) maxLength;
+
+    renderedSeries = 0;
+    series.forEach((seriesUID, parsers) -> {
+      if (rescaled || resized || dirty.contains(seriesUID) || !fragments.containsKey(seriesUID))
+      {
+        fragments.put(seriesUID, drawFragment(seriesUID, parsers));
+        renderedSeries++;
+      }
+    });
+  }
+
+  /**
+   * Draws one series into an SVG element of its own. Every fragment gets its own prefix for
+   * the keys of its definitions, so the fragments can be combined in one document.
+   */
+  private String drawFragment(String seriesUID, Map<Path, DicomParser> parsers)
+  {
+    SVGGraphics2D graph = new SVGGraphics2D(width, StudyDrawer.getSeriesHeight(parsers.size()));
+    graph.setDefsKeyPrefix("s" + fragmentCount++ + "_");
+
+    StudyDrawer.drawSeries(graph, seriesUID, parsers.values(), 0);
+
+    return graph.getSVGElement();
+  }
+
+  /**
+   * Assembles the fragments of all series below each other and replaces the output file.
+   */
+  private void write() throws IOException
+  {
+    int height = 0;
+    for (Map<Path, DicomParser> parsers : series.values())
+    {
+      height += StudyDrawer.getSeriesHeight(parsers.size());
+    }
+
+    StringBuilder svg = new StringBuilder();
+    svg.append("<?xml version=\"1.0\"?>\n");
+    svg.append("<svg xmlns=\"").append(SVG_NAMESPACE).append("\" xmlns:xlink=\"").append(XLINK_NAMESPACE)
+      .append("\" width=\"").append(width).append("\" height=\"").append(height).append("\">\n");
+    svg.append("<rect x=\"0\" y=\"0\" width=\"").append(width).append("\" height=\"").append(height)
+      .append("\" style=\"fill: rgb(0,0,0)\"/>\n");
+
+    int offset = 0;
+    for (Map.Entry<String, Map<Path, DicomParser>> entry : series.entrySet())
+    {
+      svg.append("<g transform=\"translate(0,").append(offset).append(")\">")
+        .append(fragments.get(entry.getKey())).append("</g>\n");
+      offset += StudyDrawer.getSeriesHeight(entry.getValue().size());
+    }
+    svg.append("</svg>\n");
+
+    // readers of the output never see a partly written file
+    Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+    Files.writeString(temporary, svg);
+    Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    LOG.info("Saved [{}] series to [{}]", series.size(), output);
+  }
+
+  /**
+   * A file of the study with the size and modification time it was parsed at.
+   */
+  private record WatchedFile(long size, long modified, String seriesUID)
+  {
+  }
+}
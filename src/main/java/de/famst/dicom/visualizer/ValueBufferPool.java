@@ -0,0 +1,92 @@
+package de.famst.dicom.visualizer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thread-confined pool of value buffers for the small elements the {@link DicomParser} decodes.
+ * Each thread owns one growable buffer which is reused for every value up to {@link #MAX_POOLED_LENGTH};
+ * longer values get a buffer of their own which is not retained.
+ */
+public final class ValueBufferPool
+{
+  /**
+   * Largest buffer size kept by the pool.
+   */
+  public static final int MAX_POOLED_LENGTH = 64 * 1024;
+
+  private static final int INITIAL_LENGTH = 256;
+
+  private static final ThreadLocal<ValueBufferPool> POOL = ThreadLocal.withInitial(ValueBufferPool::new);
+
+  private byte[] buffer = new byte[INITIAL_LENGTH];
+
+  /**
+   * Private constructor, instances are only handed out per thread by {@link #get()}.
+   */
+  private ValueBufferPool()
+  {
+  }
+
+  /**
+   * Gets the pool of the calling thread.
+   *
+   * @return the thread-confined pool
+   */
+  public static ValueBufferPool get()
+  {
+    return POOL.get();
+  }
+
+  /**
+   * Acquires a buffer with at least the given length. The content is only valid until the
+   * next call on the same thread.
+   *
+   * @param length the minimum length of the buffer
+   * @return a buffer with at least the requested length
+   * @throws IllegalArgumentException if the length is negative
+   */
+  public byte[] acquire(int length)
+  {
+    if (length < 0)
+    {
+      throw new IllegalArgumentException("Length must be non-negative, got: " + length);
+    }
+
+    if (length > MAX_POOLED_LENGTH)
+    {
+      return new byte[length];
+    }
+
+    if (length > buffer.length)
+    {
+      buffer = new byte[Math.min(MAX_POOLED_LENGTH, Integer.highestOneBit(length - 1) << 1)];
+    }
+
+    return buffer;
+  }
+
+  /**
+   * Decodes an ASCII value such as a UID or a code string, removing the leading spaces and the
+   * trailing space or NUL padding.
+   *
+   * @param buffer the buffer holding the value
+   * @param length the length of the value in the buffer
+   * @return the decoded value
+   */
+  public static String decodeAscii(byte[] buffer, int length)
+  {
+    int start = 0;
+    int end = length;
+
+    while (start < end && buffer[start] == ' ')
+    {
+      start++;
+    }
+    while (end > start && (buffer[end - 1] == ' ' || buffer[end - 1] == 0))
+    {
+      end--;
+    }
+
+    return new String(buffer, start, end - start, StandardCharsets.US_ASCII);
+  }
+}
@@ -1,13 +1,28 @@
 import de.famst.dicom.visualizer.DicomParser;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.media.DicomDirWriter;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Utility class for creating DICOM test files with various configurations.
@@ -44,6 +59,222 @@ public final class DicomTestUtils
    * @throws Exception if file creation fails
    */
   public static DicomParser createMinimalDicomFile(Path tempDir, String filename) throws Exception
+  {
+    return writeDicomFile(tempDir, filename, createMinimalAttributes());
+  }
+
+  /**
+   * Creates a minimal DICOM file of another series. The value lengths are the ones of the
+   * minimal file if the UIDs have the same length as its UIDs.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param seriesUID the SeriesInstanceUID of the file
+   * @param sopInstanceUID the SOPInstanceUID of the file
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createSeriesDicomFile(Path tempDir, String filename, String seriesUID,
+                                                  String sopInstanceUID) throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+    dcmAttrs.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+    dcmAttrs.setString(Tag.SOPInstanceUID, VR.UI, sopInstanceUID);
+    return writeDicomFile(tempDir, filename, dcmAttrs);
+  }
+
+  /**
+   * Creates a minimal DICOM file with one private OB value of the given length in the block of
+   * the private creator TEST_PRIVATE_CREATOR in group 0009.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param valueLength the length of the private value in bytes
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createPrivateValueDicomFile(Path tempDir, String filename, int valueLength)
+    throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+    dcmAttrs.setString(0x00090010, VR.LO, "TEST_PRIVATE_CREATOR");
+    dcmAttrs.setBytes(0x00091010, VR.OB, new byte[valueLength]);
+    return writeDicomFile(tempDir, filename, dcmAttrs, UID.ExplicitVRLittleEndian);
+  }
+
+  /**
+   * Creates a DICOM file with encapsulated pixel data split into equally sized fragments.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param fragmentCount the number of fragments following the empty basic offset table
+   * @param fragmentSize the size of each fragment in bytes
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createEncapsulatedDicomFile(Path tempDir, String filename,
+                                                        int fragmentCount, int fragmentSize) throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+
+    Fragments frags = dcmAttrs.newFragments(Tag.PixelData, VR.OB, fragmentCount + 1);
+    frags.add(new byte[0]);
+    for (int i = 0; i < fragmentCount; i++)
+    {
+      frags.add(new byte[fragmentSize]);
+    }
+
+    return writeDicomFile(tempDir, filename, dcmAttrs, UID.JPEGBaseline8Bit);
+  }
+
+  /**
+   * Creates a DICOM file with native or encapsulated pixel data followed by a Data Set Trailing
+   * Padding element. The padding is appended to the written file, since it is the last element
+   * of the data set.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param encapsulated true for one fragment of encapsulated pixel data, false for native pixel data
+   * @param pixelDataLength the length of the native pixel data or of the fragment in bytes
+   * @param paddingLength the length of the trailing padding in bytes, must be even
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createPaddedDicomFile(Path tempDir, String filename, boolean encapsulated,
+                                                  int pixelDataLength, int paddingLength) throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+
+    ByteBuffer padding = ByteBuffer.allocate((encapsulated ? 12 : 8) + paddingLength)
+      .order(ByteOrder.LITTLE_ENDIAN);
+    padding.putShort((short) 0xFFFC).putShort((short) 0xFFFC);
+
+    if (encapsulated)
+    {
+      Fragments frags = dcmAttrs.newFragments(Tag.PixelData, VR.OB, 2);
+      frags.add(new byte[0]);
+      frags.add(new byte[pixelDataLength]);
+      writeDicomFile(tempDir, filename, dcmAttrs, UID.JPEGBaseline8Bit);
+
+      // explicit VR little endian
+      padding.put((byte) 'O').put((byte) 'B').putShort((short) 0).putInt(paddingLength);
+    }
+    else
+    {
+      dcmAttrs.setBytes(Tag.PixelData, VR.OW, new byte[pixelDataLength]);
+      writeDicomFile(tempDir, filename, dcmAttrs);
+
+      // implicit VR little endian
+      padding.putInt(paddingLength);
+    }
+
+    Path dicomPath = tempDir.resolve(filename);
+    Files.write(dicomPath, padding.array(), StandardOpenOption.APPEND);
+    return DicomParser.parseFile(dicomPath.toString());
+  }
+
+  /**
+   * Creates a multi-frame DICOM file with encapsulated pixel data of one fragment per frame.
+   * The frame offsets are either given in the Basic Offset Table or in the Extended Offset Table,
+   * in which case the Basic Offset Table is empty.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param frameCount the number of frames
+   * @param fragmentSize the size of each fragment in bytes
+   * @param extendedOffsetTable true to use the Extended Offset Table
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createMultiFrameDicomFile(Path tempDir, String filename, int frameCount,
+                                                      int fragmentSize, boolean extendedOffsetTable) throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+    dcmAttrs.setInt(Tag.NumberOfFrames, VR.IS, frameCount);
+
+    if (extendedOffsetTable)
+    {
+      dcmAttrs.setBytes(Tag.ExtendedOffsetTable, VR.OV, new byte[frameCount * 8]);
+      dcmAttrs.setBytes(Tag.ExtendedOffsetTableLengths, VR.OV, new byte[frameCount * 8]);
+    }
+
+    Fragments frags = dcmAttrs.newFragments(Tag.PixelData, VR.OB, frameCount + 1);
+    frags.add(new byte[extendedOffsetTable ? 0 : frameCount * 4]);
+    for (int i = 0; i < frameCount; i++)
+    {
+      frags.add(new byte[fragmentSize]);
+    }
+
+    return writeDicomFile(tempDir, filename, dcmAttrs, UID.JPEGBaseline8Bit);
+  }
+
+  /**
+   * Creates an enhanced multi-frame DICOM file with a Per-Frame Functional Groups Sequence of one
+   * structurally identical item per frame, whose values differ from frame to frame.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param frameCount the number of frames
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createEnhancedDicomFile(Path tempDir, String filename, int frameCount) throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+    dcmAttrs.setInt(Tag.NumberOfFrames, VR.IS, frameCount);
+
+    Sequence perFrame = dcmAttrs.newSequence(Tag.PerFrameFunctionalGroupsSequence, frameCount);
+    for (int i = 0; i < frameCount; i++)
+    {
+      Attributes frameContent = new Attributes();
+      frameContent.setInt(Tag.InStackPositionNumber, VR.UL, i + 1);
+      frameContent.setInt(Tag.DimensionIndexValues, VR.UL, 1, i + 1);
+
+      Attributes planePosition = new Attributes();
+      planePosition.setString(Tag.ImagePositionPatient, VR.DS, "-125", "-125", String.valueOf(i * 1.25));
+
+      Attributes item = new Attributes();
+      item.newSequence(Tag.FrameContentSequence, 1).add(frameContent);
+      item.newSequence(Tag.PlanePositionSequence, 1).add(planePosition);
+      perFrame.add(item);
+    }
+
+    return writeDicomFile(tempDir, filename, dcmAttrs);
+  }
+
+  /**
+   * Creates a report like DICOM file of nested Content Sequences. Each item holds a Value Type,
+   * a Text Value and, apart from the innermost item, the next Content Sequence.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param depth the number of nested Content Sequences
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createNestedDicomFile(Path tempDir, String filename, int depth) throws Exception
+  {
+    Attributes dcmAttrs = createMinimalAttributes();
+
+    Attributes parent = dcmAttrs;
+    for (int level = 1; level <= depth; level++)
+    {
+      Attributes item = new Attributes();
+      item.setString(Tag.ValueType, VR.CS, level < depth ? "CONTAINER" : "TEXT");
+      item.setString(Tag.TextValue, VR.UT, "Finding on level " + level);
+      parent.newSequence(Tag.ContentSequence, 1).add(item);
+      parent = item;
+    }
+
+    return writeDicomFile(tempDir, filename, dcmAttrs);
+  }
+
+  /**
+   * Creates the attributes shared by the minimal test files.
+   *
+   * @return the minimal set of patient, study, series and instance attributes
+   */
+  private static Attributes createMinimalAttributes()
   {
     Attributes dcmAttrs = new Attributes();
     dcmAttrs.setString(Tag.PatientName, VR.PN, "Test^Patient");
@@ -53,8 +284,7 @@ public final class DicomTestUtils
     dcmAttrs.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
     dcmAttrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.840.113619.2.1.1.3");
     dcmAttrs.setString(Tag.Modality, VR.CS, "CT");
-
-    return writeDicomFile(tempDir, filename, dcmAttrs);
+    return dcmAttrs;
   }
 
   /**
@@ -78,6 +308,31 @@ public final class DicomTestUtils
    * @throws Exception if file creation fails
    */
   public static DicomParser createComprehensiveDicomFile(Path tempDir, String filename) throws Exception
+  {
+    return writeDicomFile(tempDir, filename, createComprehensiveAttributes());
+  }
+
+  /**
+   * Creates a comprehensive DICOM file in the given transfer syntax.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param transferSyntax the transfer syntax UID of the data set
+   * @return a DicomParser for the created file
+   * @throws Exception if file creation fails
+   */
+  public static DicomParser createComprehensiveDicomFile(Path tempDir, String filename,
+                                                         String transferSyntax) throws Exception
+  {
+    return writeDicomFile(tempDir, filename, createComprehensiveAttributes(), transferSyntax);
+  }
+
+  /**
+   * Creates the attributes of the comprehensive test files.
+   *
+   * @return the attributes with all required tags, private tags, and sequences
+   */
+  private static Attributes createComprehensiveAttributes()
   {
     Attributes dcmAttrs = new Attributes();
 
@@ -118,7 +373,7 @@ public final class DicomTestUtils
     // Structured Report - Content Sequence (findings)
     addStructuredReportSequence(dcmAttrs);
 
-    return writeDicomFile(tempDir, filename, dcmAttrs);
+    return dcmAttrs;
   }
 
   /**
@@ -260,17 +515,163 @@ public final class DicomTestUtils
    * @throws IOException if writing fails
    */
   private static DicomParser writeDicomFile(Path tempDir, String filename, Attributes dcmAttrs) throws IOException
+  {
+    return writeDicomFile(tempDir, filename, dcmAttrs, UID.ImplicitVRLittleEndian);
+  }
+
+  /**
+   * Writes a DICOM file with the given attributes in the given transfer syntax.
+   *
+   * @param tempDir the temporary directory to create the file in
+   * @param filename the name of the file to create
+   * @param dcmAttrs the DICOM attributes to write
+   * @param transferSyntax the transfer syntax UID of the data set
+   * @return a DicomParser for the created file
+   * @throws IOException if writing fails
+   */
+  private static DicomParser writeDicomFile(Path tempDir, String filename, Attributes dcmAttrs,
+                                            String transferSyntax) throws IOException
   {
     Path dicomPath = tempDir.resolve(filename);
     File dicomFile = dicomPath.toFile();
 
     try (DicomOutputStream dos = new DicomOutputStream(dicomFile))
     {
-      Attributes fmi = dcmAttrs.createFileMetaInformation(UID.ImplicitVRLittleEndian);
+      Attributes fmi = dcmAttrs.createFileMetaInformation(transferSyntax);
       dos.writeDataset(fmi, dcmAttrs);
     }
 
     return DicomParser.parseFile(dicomPath.toString());
   }
-}
 
+  /**
+   * Writes a DICOMDIR listing the given files, with one patient, study and series record
+   * for each distinct UID and one image record for each file.
+   *
+   * @param root the root directory of the file-set, the files must be inside it
+   * @param members the files to list
+   * @return the path of the created DICOMDIR
+   * @throws IOException if reading a file or writing the DICOMDIR fails
+   */
+  public static Path createDicomDir(Path root, Path... members) throws IOException
+  {
+    File file = root.resolve("DICOMDIR").toFile();
+    DicomDirWriter.createEmptyDirectory(file, "1.2.840.113619.2.1.1.9", "TEST", null, null);
+
+    try (DicomDirWriter writer = DicomDirWriter.open(file))
+    {
+      Map<String, Attributes> records = new HashMap<>();
+      for (Path member : members)
+      {
+        Attributes dataset;
+        String transferSyntax;
+        try (DicomInputStream dis = new DicomInputStream(member.toFile()))
+        {
+          dataset = dis.readDataset();
+          transferSyntax = dis.getTransferSyntax();
+        }
+
+        Attributes patient = records.get(dataset.getString(Tag.PatientID));
+        if (patient == null)
+        {
+          patient = createRecord("PATIENT");
+          patient.setString(Tag.PatientID, VR.LO, dataset.getString(Tag.PatientID));
+          writer.addRootDirectoryRecord(patient);
+          records.put(dataset.getString(Tag.PatientID), patient);
+        }
+
+        Attributes study = records.get(dataset.getString(Tag.StudyInstanceUID));
+        if (study == null)
+        {
+          study = createRecord("STUDY");
+          study.setString(Tag.StudyInstanceUID, VR.UI, dataset.getString(Tag.StudyInstanceUID));
+          writer.addLowerDirectoryRecord(patient, study);
+          records.put(dataset.getString(Tag.StudyInstanceUID), study);
+        }
+
+        Attributes series = records.get(dataset.getString(Tag.SeriesInstanceUID));
+        if (series == null)
+        {
+          series = createRecord("SERIES");
+          series.setString(Tag.SeriesInstanceUID, VR.UI, dataset.getString(Tag.SeriesInstanceUID));
+          series.setString(Tag.Modality, VR.CS, dataset.getString(Tag.Modality));
+          writer.addLowerDirectoryRecord(study, series);
+          records.put(dataset.getString(Tag.SeriesInstanceUID), series);
+        }
+
+        Attributes image = createRecord("IMAGE");
+        image.setString(Tag.ReferencedFileID, VR.CS, writer.toFileIDs(member.toFile()));
+        image.setString(Tag.ReferencedSOPClassUIDInFile, VR.UI, dataset.getString(Tag.SOPClassUID));
+        image.setString(Tag.ReferencedSOPInstanceUIDInFile, VR.UI, dataset.getString(Tag.SOPInstanceUID));
+        image.setString(Tag.ReferencedTransferSyntaxUIDInFile, VR.UI, transferSyntax);
+        writer.addLowerDirectoryRecord(series, image);
+      }
+    }
+
+    return file.toPath();
+  }
+
+  private static Attributes createRecord(String type)
+  {
+    Attributes record = new Attributes();
+    record.setString(Tag.DirectoryRecordType, VR.CS, type);
+    return record;
+  }
+
+  /**
+   * Writes a ZIP archive containing the given files, stored under their file names
+   * in a "study" folder.
+   *
+   * @param archivePath the path of the archive to create
+   * @param members the files to add to the archive
+   * @return the path of the created archive
+   * @throws IOException if writing fails
+   */
+  public static Path createZipArchive(Path archivePath, Path... members) throws IOException
+  {
+    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(archivePath)))
+    {
+      zos.putNextEntry(new ZipEntry("study/"));
+      zos.closeEntry();
+
+      for (Path member : members)
+      {
+        zos.putNextEntry(new ZipEntry("study/" + member.getFileName()));
+        Files.copy(member, zos);
+        zos.closeEntry();
+      }
+    }
+
+    return archivePath;
+  }
+
+  /**
+   * Writes a TAR archive containing the given files, stored under their file names
+   * in a "study" folder.
+   *
+   * @param archivePath the path of the archive to create
+   * @param members the files to add to the archive
+   * @return the path of the created archive
+   * @throws IOException if writing fails
+   */
+  public static Path createTarArchive(Path archivePath, Path... members) throws IOException
+  {
+    try (OutputStream out = Files.newOutputStream(archivePath);
+         TarArchiveOutputStream tos = new TarArchiveOutputStream(out))
+    {
+      tos.putArchiveEntry(new TarArchiveEntry("study/"));
+      tos.closeArchiveEntry();
+
+      for (Path member : members)
+      {
+        TarArchiveEntry entry = new TarArchiveEntry("study/" + member.getFileName());
+        entry.setSize(Files.size(member));
+        tos.putArchiveEntry(entry);
+        Files.copy(member, tos);
+        tos.closeArchiveEntry();
+      }
+    }
+
+    return archivePath;
+  }
+}
@@ -0,0 +1,65 @@
+import de.famst.dicom.visualizer.ByteBufferInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ByteBufferInputStream
+ */
+public class TestByteBufferInputStream
+{
+  @Test
+  public void testConstructorWithNullBuffer()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new ByteBufferInputStream(null),
+      "Expected constructor to throw IllegalArgumentException for null buffer"
+    );
+
+    assertThat(exception.getMessage(), containsString("Buffer cannot be null"));
+  }
+
+  @Test
+  public void testReadRemainingContent()
+  {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5});
+    buffer.position(2);
+
+    ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+    byte[] b = new byte[10];
+
+    assertThat(in.available(), is(3));
+    assertThat(in.read(b, 0, b.length), is(3));
+    assertThat(b[0], is((byte) 3));
+    assertThat(in.read(b, 0, b.length), is(-1));
+    assertThat(in.read(), is(-1));
+  }
+
+  @Test
+  public void testReadUnsignedByte()
+  {
+    ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[]{(byte) 0xFF}));
+
+    assertThat(in.read(), is(255));
+  }
+
+  @Test
+  public void testSkipAndMark()
+  {
+    ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4, 5}));
+
+    assertThat(in.markSupported(), is(true));
+    assertThat(in.skip(2), is(2L));
+
+    in.mark(10);
+    assertThat(in.skip(100), is(4L));
+    in.reset();
+
+    assertThat(in.read(), is(2));
+  }
+}
@@ -0,0 +1,119 @@
+import de.famst.dicom.visualizer.DicomArchiveReader;
+import de.famst.dicom.visualizer.DicomParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DicomArchiveReader
+ */
+public class TestDicomArchiveReader
+{
+  @Test
+  public void testDetectFormat(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    Path member = tempDir.resolve("one.dcm");
+
+    Path zip = DicomTestUtils.createZipArchive(tempDir.resolve("study.zip"), member);
+    Path tar = DicomTestUtils.createTarArchive(tempDir.resolve("study.tar"), member);
+
+    assertThat(DicomArchiveReader.detectFormat(zip), is(DicomArchiveReader.Format.ZIP));
+    assertThat(DicomArchiveReader.detectFormat(tar), is(DicomArchiveReader.Format.TAR));
+    assertThat(DicomArchiveReader.detectFormat(member), is(nullValue()));
+    assertThat(DicomArchiveReader.detectFormat(tempDir), is(nullValue()));
+    assertThat(DicomArchiveReader.detectFormat(null), is(nullValue()));
+  }
+
+  @Test
+  public void testDetectGzipOnlyWithTarName(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    Path tar = DicomTestUtils.createTarArchive(tempDir.resolve("study.tar"), tempDir.resolve("one.dcm"));
+
+    Path tgz = gzip(tar, tempDir.resolve("study.tgz"));
+    Path gz = gzip(tar, tempDir.resolve("study.gz"));
+
+    assertThat(DicomArchiveReader.detectFormat(tgz), is(DicomArchiveReader.Format.TAR_GZ));
+    assertThat(DicomArchiveReader.isArchive(gz), is(false));
+  }
+
+  @Test
+  public void testZipMembersAreFiltered(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser one = DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(tempDir, "two.dcm");
+    Files.writeString(tempDir.resolve("notes.txt"), "not a DICOM file");
+
+    Path zip = DicomTestUtils.createZipArchive(tempDir.resolve("study.zip"),
+      tempDir.resolve("one.dcm"), tempDir.resolve("notes.txt"), tempDir.resolve("two.dcm"));
+
+    List<String> names = new ArrayList<>();
+    List<DicomParser> parsers = new ArrayList<>();
+    int count = DicomArchiveReader.forEachDicomMember(zip, (name, inStream) -> {
+      names.add(name);
+      parsers.add(DicomParser.parseStream(name, inStream));
+    });
+
+    assertThat(count, is(2));
+    assertThat(names, contains("study/one.dcm", "study/two.dcm"));
+    assertThat(parsers.get(0).getEntries().size(), is(one.getEntries().size()));
+    assertThat(parsers.get(0).getSiuid(), is(one.getSiuid()));
+  }
+
+  @Test
+  public void testTarMembersAreStreamed(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser one = DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    DicomParser two = DicomTestUtils.createDicomFileWithSequence(tempDir, "two.dcm");
+    Files.writeString(tempDir.resolve("notes.txt"), "not a DICOM file");
+
+    Path tar = DicomTestUtils.createTarArchive(tempDir.resolve("study.tar"),
+      tempDir.resolve("one.dcm"), tempDir.resolve("notes.txt"), tempDir.resolve("two.dcm"));
+
+    List<DicomParser> parsers = new ArrayList<>();
+    int count = DicomArchiveReader.forEachDicomMember(gzip(tar, tempDir.resolve("study.tar.gz")),
+      (name, inStream) -> parsers.add(DicomParser.parseStream(name, inStream)));
+
+    assertThat(count, is(2));
+    assertThat(parsers.get(0).getEntries().size(), is(one.getEntries().size()));
+    assertThat(parsers.get(1).getEntries().size(), is(two.getEntries().size()));
+    assertThat(parsers.get(1).getFileName(), is("study/two.dcm"));
+  }
+
+  @Test
+  public void testInvalidArguments(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> DicomArchiveReader.forEachDicomMember(tempDir.resolve("one.dcm"), (name, inStream) -> { }),
+      "Expected forEachDicomMember() to throw IllegalArgumentException for a plain DICOM file"
+    );
+
+    assertThat(exception.getMessage(), containsString("Not a supported archive"));
+    assertThrows(IllegalArgumentException.class,
+      () -> DicomArchiveReader.forEachDicomMember(tempDir.resolve("one.dcm"), null));
+  }
+
+  private static Path gzip(Path source, Path target) throws IOException
+  {
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target)))
+    {
+      Files.copy(source, out);
+    }
+    return target;
+  }
+}
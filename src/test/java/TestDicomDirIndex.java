@@ -0,0 +1,92 @@
+import de.famst.dicom.visualizer.DicomDirIndex;
+import de.famst.dicom.visualizer.InstanceHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DicomDirIndex
+ */
+public class TestDicomDirIndex
+{
+  @Test
+  public void testReadWithNullPath()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> DicomDirIndex.read(null),
+      "Expected read() to throw IllegalArgumentException for null path"
+    );
+
+    assertThat(exception.getMessage(), containsString("DICOMDIR path cannot be null"));
+  }
+
+  @Test
+  public void testFind(@TempDir Path tempDir) throws Exception
+  {
+    assertThat(DicomDirIndex.find(null), is(nullValue()));
+    assertThat(DicomDirIndex.find(tempDir), is(nullValue()));
+
+    Path dicomDir = DicomTestUtils.createDicomDir(tempDir);
+
+    assertThat(DicomDirIndex.find(tempDir), is(dicomDir));
+    assertThat(DicomDirIndex.find(dicomDir), is(dicomDir));
+
+    Path lowerCase = Files.move(dicomDir, tempDir.resolve("dicomdir"));
+
+    assertThat(DicomDirIndex.find(tempDir), is(lowerCase));
+    assertThat(DicomDirIndex.find(lowerCase), is(lowerCase));
+  }
+
+  @Test
+  public void testReadListsReferencedInstances(@TempDir Path tempDir) throws Exception
+  {
+    Path dir = Files.createDirectory(tempDir.resolve("DIR1"));
+    DicomTestUtils.createMinimalDicomFile(dir, "IM1");
+    DicomTestUtils.createComprehensiveDicomFile(dir, "IM2");
+    Path dicomDir = DicomTestUtils.createDicomDir(tempDir, dir.resolve("IM1"), dir.resolve("IM2"));
+
+    List<InstanceHeader> headers = DicomDirIndex.read(dicomDir);
+
+    assertThat(headers.size(), is(2));
+    for (InstanceHeader header : headers)
+    {
+      InstanceHeader scanned = InstanceHeader.scan(header.getPath());
+
+      assertThat(header.getStuid(), is(scanned.getStuid()));
+      assertThat(header.getSeuid(), is(scanned.getSeuid()));
+      assertThat(header.getSiuid(), is(scanned.getSiuid()));
+      assertThat(header.getModality(), is(scanned.getModality()));
+    }
+    assertThat(headers.get(0).getPath().getFileName().toString(), is("IM1"));
+    assertThat(headers.get(1).getPath().getFileName().toString(), is("IM2"));
+  }
+
+  @Test
+  public void testReadEmptyDicomDir(@TempDir Path tempDir) throws Exception
+  {
+    Path dicomDir = DicomTestUtils.createDicomDir(tempDir);
+
+    assertThat(DicomDirIndex.read(dicomDir), is(empty()));
+  }
+
+  @Test
+  public void testReadInvalidDicomDir(@TempDir Path tempDir) throws Exception
+  {
+    Path dicomDir = tempDir.resolve("DICOMDIR");
+    Files.writeString(dicomDir, "This is not a valid DICOMDIR");
+
+    assertThrows(
+      Exception.class,
+      () -> DicomDirIndex.read(dicomDir),
+      "Expected read() to fail for an invalid DICOMDIR"
+    );
+  }
+}
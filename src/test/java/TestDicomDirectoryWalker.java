@@ -0,0 +1,149 @@
+import de.famst.dicom.visualizer.DicomDirectoryWalker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DicomDirectoryWalker
+ */
+public class TestDicomDirectoryWalker
+{
+  @Test
+  public void testConstructorWithInvalidParallelism()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new DicomDirectoryWalker(0),
+      "Expected constructor to throw IllegalArgumentException for zero parallelism"
+    );
+
+    assertThat(exception.getMessage(), containsString("Parallelism must be positive, got: 0"));
+  }
+
+  @Test
+  public void testWalkWithInvalidArguments(@TempDir Path tempDir)
+  {
+    DicomDirectoryWalker walker = new DicomDirectoryWalker();
+
+    assertThrows(IllegalArgumentException.class, () -> walker.walk(null, file -> file));
+    assertThrows(IllegalArgumentException.class, () -> walker.walk(tempDir, null));
+    assertThrows(NoSuchFileException.class, () -> walker.walk(tempDir.resolve("missing"), file -> file));
+  }
+
+  @Test
+  public void testResultsAreInWalkOrder(@TempDir Path tempDir) throws Exception
+  {
+    Path a = Files.createDirectory(tempDir.resolve("a"));
+    Path b = Files.createDirectories(tempDir.resolve("b").resolve("c"));
+    DicomTestUtils.createMinimalDicomFile(b, "4.dcm");
+    DicomTestUtils.createMinimalDicomFile(a, "2.dcm");
+    DicomTestUtils.createMinimalDicomFile(a, "1.dcm");
+    DicomTestUtils.createMinimalDicomFile(tempDir, "0.dcm");
+    DicomTestUtils.createMinimalDicomFile(tempDir.resolve("b"), "3.dcm");
+    Files.writeString(a.resolve("notes.txt"), "not a DICOM file");
+
+    DicomDirectoryWalker walker = new DicomDirectoryWalker(4);
+    List<String> names = walker.walk(tempDir, file -> file.getPath().getFileName().toString());
+
+    assertThat(names, contains("0.dcm", "1.dcm", "2.dcm", "3.dcm", "4.dcm"));
+    assertThat(walker.getDirectories(), is(4L));
+    assertThat(walker.getCandidates(), is(6L));
+    assertThat(walker.getDetectedFiles(), is(5L));
+    assertThat(walker.getElapsedNanos(), is(greaterThan(0L)));
+    assertThat(walker.getCandidatesPerSecond(), is(greaterThan(0.0)));
+  }
+
+  @Test
+  public void testLookedUpFilesAreNotDetected(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "0.dcm");
+    // not a DICOM file, it is only found through the lookup
+    Files.writeString(tempDir.resolve("1.dcm"), "known from an earlier walk");
+
+    DicomDirectoryWalker walker = new DicomDirectoryWalker();
+    List<String> names = walker.walk(tempDir,
+      (path, attributes) -> path.getFileName().toString().equals("1.dcm") ? "known " + attributes.size() : null,
+      file -> file.getPath().getFileName().toString());
+
+    assertThat(names, contains("0.dcm", "known 26"));
+    assertThat(walker.getCandidates(), is(2L));
+    assertThat(walker.getDetectedFiles(), is(2L));
+    assertThrows(IllegalArgumentException.class, () -> walker.walk(tempDir, null, file -> file));
+  }
+
+  @Test
+  public void testLinkedFilesAreVisitedOnce(@TempDir Path tempDir) throws Exception
+  {
+    Path sub = Files.createDirectory(tempDir.resolve("sub"));
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    Files.createLink(sub.resolve("hard.dcm"), tempDir.resolve("one.dcm"));
+    Files.createSymbolicLink(sub.resolve("soft.dcm"), tempDir.resolve("one.dcm"));
+    Files.createSymbolicLink(sub.resolve("dangling.dcm"), tempDir.resolve("missing.dcm"));
+
+    DicomDirectoryWalker walker = new DicomDirectoryWalker();
+    List<Path> paths = walker.walk(tempDir, file -> file.getPath());
+
+    assertThat(paths.size(), is(1));
+    assertThat(walker.getCandidates(), is(1L));
+  }
+
+  @Test
+  public void testLinkLoopsAreWalkedOnce(@TempDir Path tempDir) throws Exception
+  {
+    Path sub = Files.createDirectories(tempDir.resolve("a").resolve("b"));
+    DicomTestUtils.createMinimalDicomFile(sub, "one.dcm");
+    Files.createSymbolicLink(sub.resolve("up"), tempDir);
+    Files.createSymbolicLink(tempDir.resolve("again"), sub);
+
+    DicomDirectoryWalker walker = new DicomDirectoryWalker();
+    List<Path> paths = walker.walk(tempDir, file -> file.getPath());
+
+    assertThat(paths.size(), is(1));
+    assertThat(walker.getDirectories(), is(3L));
+  }
+
+  @Test
+  public void testFilesAreVisitedInParallel(@TempDir Path tempDir) throws Exception
+  {
+    for (int i = 0; i < 8; i++)
+    {
+      DicomTestUtils.createMinimalDicomFile(Files.createDirectory(tempDir.resolve("dir" + i)), "file.dcm");
+    }
+
+    // each visit waits for a second one running at the same time
+    CyclicBarrier pairs = new CyclicBarrier(2);
+    List<Path> paths = new DicomDirectoryWalker(4).walk(tempDir, file -> {
+      try
+      {
+        pairs.await(10, TimeUnit.SECONDS);
+        return file.getPath();
+      }
+      catch (Exception e)
+      {
+        return null;
+      }
+    });
+
+    assertThat(paths.size(), is(8));
+  }
+
+  @Test
+  public void testSingleFileRoot(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+
+    List<Path> paths = new DicomDirectoryWalker().walk(tempDir.resolve("one.dcm"), file -> file.getPath());
+
+    assertThat(paths, contains(tempDir.resolve("one.dcm")));
+  }
+}
@@ -1,5 +1,6 @@
 import de.famst.dicom.visualizer.DicomDrawer;
 import de.famst.dicom.visualizer.DicomParser;
+import de.famst.dicom.visualizer.ParserOptions;
 import org.jfree.graphics2d.svg.SVGGraphics2D;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -205,5 +206,93 @@ public class TestDicomDrawer
     String svgDocument = ((SVGGraphics2D) result).getSVGDocument();
     assertNotNull(svgDocument);
   }
-}
 
+  @Test
+  public void testFragmentRunIsDrawnOnce(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser few = DicomTestUtils.createMultiFrameDicomFile(tempDir, "few.dcm", 2, 64, false);
+    DicomParser many = DicomTestUtils.createMultiFrameDicomFile(tempDir, "many.dcm", 5000, 64, false);
+
+    SVGGraphics2D fewGraph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(few, fewGraph, 800, 600).draw();
+    SVGGraphics2D manyGraph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(many, manyGraph, 800, 600).draw();
+
+    assertThat(countShapes(manyGraph.getSVGDocument()), is(countShapes(fewGraph.getSVGDocument())));
+  }
+
+  @Test
+  public void testFrameCountIsShownOnFragments(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser parser = DicomTestUtils.createMultiFrameDicomFile(tempDir, "frames.dcm", 3, 65536, false);
+    SVGGraphics2D graph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(parser, graph, 800, 600).draw();
+
+    assertThat(parser.getFrameCount(), is(3));
+    assertThat(graph.getSVGElement(), containsString("P 3 frames"));
+    assertThat(graph.getSVGElement(), not(containsString("P \u00D73")));
+  }
+
+  @Test
+  public void testRepeatedItemsAreDrawnOnce(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser few = DicomTestUtils.createEnhancedDicomFile(tempDir, "few.dcm", 2);
+    DicomParser many = DicomTestUtils.createEnhancedDicomFile(tempDir, "many.dcm", 2000);
+
+    SVGGraphics2D fewGraph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(few, fewGraph, 800, 600).draw();
+    SVGGraphics2D manyGraph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(many, manyGraph, 800, 600).draw();
+
+    assertThat(countShapes(manyGraph.getSVGDocument()), is(countShapes(fewGraph.getSVGDocument())));
+  }
+
+  @Test
+  public void testInstanceCountIsShownInLabel(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser parser = DicomTestUtils.createMinimalDicomFile(tempDir);
+    SVGGraphics2D graph = new SVGGraphics2D(800, 70);
+    DicomDrawer drawer = new DicomDrawer(parser, graph, 800, 70);
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> drawer.setInstanceCount(0),
+      "Expected setInstanceCount to throw IllegalArgumentException for zero instances"
+    );
+    assertThat(exception.getMessage(), containsString("Instance count must be positive, got: 0"));
+
+    drawer.setInstanceCount(42);
+    drawer.draw();
+
+    assertThat(graph.getSVGElement(), containsString("42 instances"));
+  }
+
+  @Test
+  public void testAggregatedSequenceIsDrawnAsOneEntry(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser shallow = DicomTestUtils.createNestedDicomFile(tempDir, "shallow.dcm", 2);
+    DicomParser deep = DicomTestUtils.createNestedDicomFile(tempDir, "deep.dcm", 40);
+
+    ParserOptions options = new ParserOptions();
+    options.setMaxDepth(1);
+    DicomParser boundedShallow = DicomParser.parseFile(shallow.getFileName(), options);
+    DicomParser boundedDeep = DicomParser.parseFile(deep.getFileName(), options);
+
+    SVGGraphics2D shallowGraph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(boundedShallow, shallowGraph, 800, 600).draw();
+    SVGGraphics2D deepGraph = new SVGGraphics2D(800, 600);
+    new DicomDrawer(boundedDeep, deepGraph, 800, 600).draw();
+
+    assertThat(countShapes(deepGraph.getSVGDocument()), is(countShapes(shallowGraph.getSVGDocument())));
+  }
+
+  private static int countShapes(String svgDocument)
+  {
+    int count = 0;
+    for (int index = svgDocument.indexOf("<rect"); index >= 0; index = svgDocument.indexOf("<rect", index + 1))
+    {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,420 @@
+import de.famst.dicom.visualizer.DicomEntry;
+import de.famst.dicom.visualizer.DicomEntryTable;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DicomEntryTable
+ */
+public class TestDicomEntryTable
+{
+  @Test
+  public void testNewTableIsEmpty()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    assertThat(table.size(), is(0));
+    assertThat(table.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testNegativeCapacity()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new DicomEntryTable(-1),
+      "Expected constructor to throw IllegalArgumentException for negative capacity"
+    );
+
+    assertThat(exception.getMessage(), containsString("Capacity must be non-negative"));
+  }
+
+  @Test
+  public void testAddStoresColumns()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    int row = table.add(Tag.PatientName, VR.PN, 2, 132L, 12);
+
+    assertThat(row, is(0));
+    assertThat(table.size(), is(1));
+    assertThat(table.getTag(row), is(Tag.PatientName));
+    assertThat(table.getGroup(row), is(0x0010));
+    assertThat(table.getElement(row), is(0x0010));
+    assertThat(table.getVr(row), is(VR.PN));
+    assertThat(table.getLevel(row), is(2));
+    assertThat(table.getOffset(row), is(132L));
+    assertThat(table.getLength(row), is(12));
+    assertThat(table.isPrivateTag(row), is(false));
+    assertThat(table.isPrivateCreator(row), is(false));
+  }
+
+  @Test
+  public void testItemWithoutVr()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    int row = table.add(Tag.Item, null, 1, 200L, -1);
+
+    assertNull(table.getVr(row));
+    assertThat(table.getLength(row), is(-1));
+  }
+
+  @Test
+  public void testPrivateFlags()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    int creator = table.add(0x00090010, VR.LO, 0, 0L, 20);
+    int privateTag = table.add(0x00091001, VR.LO, 0, 28L, 20);
+
+    assertThat(table.isPrivateCreator(creator), is(true));
+    assertThat(table.isPrivateTag(creator), is(true));
+    assertThat(table.isPrivateCreator(privateTag), is(false));
+    assertThat(table.isPrivateTag(privateTag), is(true));
+  }
+
+  @Test
+  public void testLargeOffset()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    int row = table.add(Tag.PixelData, VR.OB, 0, 5_000_000_000L, -1);
+
+    assertThat(table.getOffset(row), is(5_000_000_000L));
+  }
+
+  @Test
+  public void testTableGrows()
+  {
+    DicomEntryTable table = new DicomEntryTable(1);
+
+    for (int i = 0; i < 1000; i++)
+    {
+      table.add(Tag.Item, null, 1, i * 8L, 0);
+    }
+
+    assertThat(table.size(), is(1000));
+    assertThat(table.getOffset(999), is(999 * 8L));
+  }
+
+  @Test
+  public void testLayoutColumns()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    int row = table.add(Tag.Modality, VR.CS, 0, 0L, 2);
+
+    table.setLogLength(row, 3.5f);
+    table.setLogPosition(row, 10.0f);
+
+    assertThat(table.getLogLength(row), is(3.5f));
+    assertThat(table.getLogPosition(row), is(10.0f));
+  }
+
+  @Test
+  public void testGetMaterializesEntry()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.Modality, VR.CS, 0, 0L, 2);
+    int row = table.add(0x00091001, VR.LO, 1, 20L, 20);
+    table.setLogLength(row, 4.0f);
+
+    DicomEntry entry = table.get(row);
+
+    assertThat(entry.getIdx(), is(row));
+    assertThat(entry.getTag(), is(0x00091001));
+    assertThat(entry.getGroup(), is(0x0009));
+    assertThat(entry.getElement(), is(0x1001));
+    assertThat(entry.getLevel(), is(1.0f));
+    assertThat(entry.getVr(), is(VR.LO));
+    assertThat(entry.isPrivateTag(), is(true));
+    assertThat(entry.getLogLength(), is(4.0f));
+  }
+
+  @Test
+  public void testRowOutOfBounds()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.Modality, VR.CS, 0, 0L, 2);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> table.getTag(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> table.getTag(-1));
+  }
+
+  @Test
+  public void testFileOffsetsDefaultToOffsets()
+  {
+    DicomEntryTable table = new DicomEntryTable(1);
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    table.setFileOffset(0, 132L);
+
+    assertThat(table.hasFileOffsets(), is(false));
+    assertThat(table.getFileOffset(0), is(132L));
+  }
+
+  @Test
+  public void testSeparateFileOffsets()
+  {
+    DicomEntryTable table = new DicomEntryTable(1);
+    table.add(Tag.TransferSyntaxUID, VR.UI, 0, 132L, 22);
+    table.add(Tag.PatientName, VR.PN, 0, 200L, 12);
+    table.setFileOffset(1, 180L);
+    table.add(Tag.PatientID, VR.LO, 0, 220L, 6);
+
+    assertThat(table.hasFileOffsets(), is(true));
+    assertThat(table.getFileOffset(0), is(132L));
+    assertThat(table.getFileOffset(1), is(180L));
+    assertThat(table.getFileOffset(2), is(220L));
+    assertThat(table.getOffset(1), is(200L));
+  }
+
+  @Test
+  public void testMinAndMaxLength()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    assertThat(table.getMinLength(), is(1L));
+    assertThat(table.getMaxLength(), is(1L));
+
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    table.add(Tag.PatientID, VR.LO, 0, 152L, 6);
+    table.add(Tag.PixelData, VR.OW, 0, 166L, 512);
+
+    assertThat(table.getMinLength(), is(6L));
+    assertThat(table.getMaxLength(), is(512L));
+  }
+
+  @Test
+  public void testLayoutLength()
+  {
+    assertThat(DicomEntryTable.layoutLength(-1), is(1L));
+    assertThat(DicomEntryTable.layoutLength(0), is(1L));
+    assertThat(DicomEntryTable.layoutLength(12), is(12L));
+    assertThat(DicomEntryTable.layoutLength(-2), is(0xFFFFFFFEL));
+  }
+
+  @Test
+  public void testEntryWithoutRun()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+
+    assertThat(table.isRun(0), is(false));
+    assertThat(table.getRunCount(0), is(1));
+    assertThat(table.getRunLength(0), is(12L));
+    assertThat(table.getRunMinLength(0), is(12));
+    assertThat(table.getRunMaxLength(0), is(12));
+    assertThat(table.getLayoutLength(0), is(12L));
+    assertThat(table.getRunEntries(), is(0));
+  }
+
+  @Test
+  public void testAddToRun()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.PixelData, VR.OB, 0, 132L, -1);
+    table.add(Tag.Item, null, 0, 144L, 0);
+    int row = table.add(Tag.Item, null, 0, 152L, 100);
+    table.addToRun(row, 40);
+    table.addToRun(row, 300);
+
+    assertThat(table.size(), is(3));
+    assertThat(table.isRun(row), is(true));
+    assertThat(table.getRunCount(row), is(3));
+    assertThat(table.getRunLength(row), is(440L));
+    assertThat(table.getRunMinLength(row), is(40));
+    assertThat(table.getRunMaxLength(row), is(300));
+    assertThat(table.getLength(row), is(100));
+    assertThat(table.getLayoutLength(row), is(440L));
+    assertThat(table.getMaxLength(), is(440L));
+    assertThat(table.getRunEntries(), is(1));
+  }
+
+  @Test
+  public void testMinLengthIsUpdatedWhenRunGrows()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    int row = table.add(Tag.Item, null, 0, 152L, 2);
+
+    assertThat(table.getMinLength(), is(2L));
+
+    table.addToRun(row, 2);
+
+    assertThat(table.getMinLength(), is(4L));
+  }
+
+  @Test
+  public void testAddToRunRequiresLastEntry()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.Item, null, 0, 132L, 10);
+    table.add(Tag.SequenceDelimitationItem, null, 0, 150L, 0);
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> table.addToRun(0, 10),
+      "Expected addToRun to throw IllegalArgumentException for an entry that is not the last one"
+    );
+
+    assertThat(exception.getMessage(), containsString("Only the last entry can be extended"));
+  }
+
+  @Test
+  public void testAddToRunRejectsUndefinedLength()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    int row = table.add(Tag.Item, null, 0, 132L, 10);
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> table.addToRun(row, -1),
+      "Expected addToRun to throw IllegalArgumentException for undefined length"
+    );
+
+    assertThat(exception.getMessage(), containsString("undefined length"));
+  }
+
+  @Test
+  public void testItemRunBeforeNestedRun()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    int item = table.add(Tag.Item, null, 1, 132L, -1);
+    table.add(Tag.FrameContentSequence, VR.SQ, 1, 140L, -1);
+    int nested = table.add(Tag.Item, null, 2, 152L, 20);
+    table.addToRun(nested, 20);
+
+    // the run of the outer item starts before the nested run
+    table.addToRun(item, 64, 60);
+
+    assertThat(table.getRunEntries(), is(2));
+    assertThat(table.getRunCount(item), is(2));
+    assertThat(table.getRunLength(item), is(124L));
+    assertThat(table.getRunCount(nested), is(2));
+    assertThat(table.getLayoutLength(item), is(124L));
+  }
+
+  @Test
+  public void testTruncate()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    table.add(Tag.PatientID, VR.LO, 0, 152L, 6);
+    int item = table.add(Tag.Item, null, 0, 166L, 1000);
+    table.addToRun(item, 1000);
+
+    table.truncate(2);
+
+    assertThat(table.size(), is(2));
+    assertThat(table.getRunEntries(), is(0));
+    assertThat(table.getMinLength(), is(6L));
+    assertThat(table.getMaxLength(), is(12L));
+    assertThrows(IndexOutOfBoundsException.class, () -> table.getTag(2));
+    assertThrows(IllegalArgumentException.class, () -> table.truncate(3));
+  }
+
+  @Test
+  public void testHasSameStructure()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.Item, null, 1, 132L, 24);
+    table.add(Tag.ImagePositionPatient, VR.DS, 1, 140L, 16);
+    table.add(Tag.Item, null, 1, 164L, 28);
+    table.add(Tag.ImagePositionPatient, VR.DS, 1, 172L, 20);
+    table.add(Tag.Item, null, 1, 200L, 24);
+    table.add(Tag.ImageOrientationPatient, VR.DS, 1, 208L, 16);
+    table.add(Tag.Item, null, 1, 232L, -1);
+    table.add(Tag.ImagePositionPatient, VR.DS, 1, 240L, 16);
+
+    // value lengths may differ, tags and undefined lengths may not
+    assertThat(table.hasSameStructure(0, 2, 2, 4), is(true));
+    assertThat(table.hasSameStructure(0, 2, 4, 6), is(false));
+    assertThat(table.hasSameStructure(0, 2, 6, 8), is(false));
+    assertThat(table.hasSameStructure(0, 2, 2, 5), is(false));
+  }
+
+  @Test
+  public void testManyItemsCollapseIntoOneRun()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.Item, null, 1, 132L, 24);
+    table.add(Tag.ImagePositionPatient, VR.DS, 1, 140L, 16);
+
+    // each item is added, compared with the first item and collapsed into its run
+    for (int i = 1; i < 5; i++)
+    {
+      int itemRow = table.size();
+      table.add(Tag.Item, null, 1, 132L + i * 32, 24 + i);
+      table.add(Tag.ImagePositionPatient, VR.DS, 1, 140L + i * 32, 16 + i);
+
+      assertThat(table.hasSameStructure(0, 2, itemRow, table.size()), is(true));
+      table.addToRun(0, 24, 24 + i);
+      table.truncate(itemRow);
+    }
+
+    assertThat(table.size(), is(2));
+    assertThat(table.getRunEntries(), is(1));
+    assertThat(table.getRunCount(0), is(5));
+    assertThat(table.getRunLength(0), is(24L + 25 + 26 + 27 + 28));
+  }
+
+  @Test
+  public void testStructuralFingerprint()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    table.add(Tag.PixelData, VR.OB, 0, 152L, 1000);
+
+    // lengths in the same power of two share a bucket
+    DicomEntryTable sameStructure = new DicomEntryTable();
+    sameStructure.add(Tag.PatientName, VR.PN, 0, 132L, 14);
+    sameStructure.add(Tag.PixelData, VR.OB, 0, 154L, 1020);
+
+    DicomEntryTable otherLength = new DicomEntryTable();
+    otherLength.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    otherLength.add(Tag.PixelData, VR.OB, 0, 152L, 4000);
+
+    DicomEntryTable otherLevel = new DicomEntryTable();
+    otherLevel.add(Tag.PatientName, VR.PN, 1, 132L, 12);
+    otherLevel.add(Tag.PixelData, VR.OB, 0, 152L, 1000);
+
+    assertThat(sameStructure.getStructuralFingerprint(), is(table.getStructuralFingerprint()));
+    assertThat(otherLength.getStructuralFingerprint(), is(not(table.getStructuralFingerprint())));
+    assertThat(otherLevel.getStructuralFingerprint(), is(not(table.getStructuralFingerprint())));
+    assertThat(new DicomEntryTable().getStructuralFingerprint(), is(not(table.getStructuralFingerprint())));
+  }
+
+  @Test
+  public void testAggregate()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+    table.add(Tag.PatientName, VR.PN, 0, 132L, 12);
+    int sequence = table.add(Tag.ContentSequence, VR.SQ, 0, 152L, -1);
+
+    table.setAggregate(sequence, 4096L, 120, 6);
+
+    assertThat(table.getAggregateEntries(), is(1));
+    assertThat(table.isAggregate(sequence), is(true));
+    assertThat(table.isAggregate(0), is(false));
+    assertThat(table.getAggregateLength(sequence), is(4096L));
+    assertThat(table.getAggregateElements(sequence), is(120));
+    assertThat(table.getAggregateDepth(sequence), is(6));
+    assertThat(table.getAggregateLength(0), is(-1L));
+    assertThat(table.getAggregateElements(0), is(0));
+    assertThat(table.getLayoutLength(sequence), is(4096L));
+    assertThat(table.getMaxLength(), is(4096L));
+
+    assertThrows(IllegalArgumentException.class, () -> table.setAggregate(sequence, 8L, 1, 1),
+      "Expected setAggregate() to reject rows that are not in ascending order");
+    assertThrows(IllegalArgumentException.class, () -> table.setAggregate(0, -1L, 1, 1),
+      "Expected setAggregate() to reject a negative length");
+
+    table.truncate(1);
+    assertThat(table.getAggregateEntries(), is(0));
+  }
+}
@@ -1,4 +1,8 @@
+import de.famst.dicom.visualizer.DetectedDicomFile;
 import de.famst.dicom.visualizer.DicomFileDetector;
+import de.famst.dicom.visualizer.DicomParser;
+import de.famst.dicom.visualizer.InstanceHeader;
+import de.famst.dicom.visualizer.ParserOptions;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
@@ -7,15 +11,23 @@ import org.dcm4che3.io.DicomOutputStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -176,5 +188,118 @@ public class TestDicomFileDetector
     boolean result = DicomFileDetector.isDCMFile(specialFile);
     assertTrue(result, "File with special characters in name should be detected if valid");
   }
-}
 
+  @Test
+  public void testStreamWithDICMPrefixIsReset() throws IOException
+  {
+    byte[] content = new byte[200];
+    content[128] = 'D';
+    content[129] = 'I';
+    content[130] = 'C';
+    content[131] = 'M';
+    content[0] = 42;
+
+    InputStream inStream = new BufferedInputStream(new ByteArrayInputStream(content));
+
+    assertTrue(DicomFileDetector.isDCMStream(inStream), "Stream with DICM prefix should be detected");
+    assertThat(inStream.read(), is(42));
+  }
+
+  @Test
+  public void testStreamTooShort() throws IOException
+  {
+    InputStream inStream = new ByteArrayInputStream(new byte[100]);
+
+    assertFalse(DicomFileDetector.isDCMStream(inStream), "Short stream should not be detected as DICOM");
+    assertThat(inStream.available(), is(100));
+  }
+
+  @Test
+  public void testStreamWithoutMarkSupport()
+  {
+    InputStream inStream = new InputStream()
+    {
+      @Override
+      public int read()
+      {
+        return -1;
+      }
+    };
+
+    assertThrows(IllegalArgumentException.class, () -> DicomFileDetector.isDCMStream(inStream));
+    assertThrows(IllegalArgumentException.class, () -> DicomFileDetector.isDCMStream(null));
+  }
+
+  @Test
+  public void testDetectRejectsFromAttributes(@TempDir Path tempDir) throws IOException
+  {
+    Path shortFile = tempDir.resolve("short.dcm");
+    Files.write(shortFile, new byte[100]);
+    BasicFileAttributes shortAttributes = Files.readAttributes(shortFile, BasicFileAttributes.class);
+    BasicFileAttributes directoryAttributes = Files.readAttributes(tempDir, BasicFileAttributes.class);
+
+    // the file is not opened, so a missing file is rejected the same way
+    Path missing = tempDir.resolve("missing.dcm");
+    assertThat(DicomFileDetector.detect(missing, shortAttributes), is(nullValue()));
+    assertThat(DicomFileDetector.detect(missing, directoryAttributes), is(nullValue()));
+
+    assertThrows(IllegalArgumentException.class, () -> DicomFileDetector.detect(null, shortAttributes));
+    assertThrows(IllegalArgumentException.class, () -> DicomFileDetector.detect(shortFile, null));
+  }
+
+  @Test
+  public void testDetectedFileIsParsedWithItsAttributes(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser expected = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(expected.getFileName());
+
+    DetectedDicomFile detected = DicomFileDetector.detect(file, Files.readAttributes(file, BasicFileAttributes.class));
+    assertThat(detected, is(notNullValue()));
+    assertThat(detected.getPath(), is(file));
+    assertThat(detected.getAttributes().size(), is(Files.size(file)));
+
+    InstanceHeader header = InstanceHeader.scanDetectedFile(detected);
+    assertThat(header.getAttributes(), is(sameInstance(detected.getAttributes())));
+
+    DicomParser parser = DicomParser.parseFile(header.getPath(), header.getAttributes(), new ParserOptions());
+
+    assertThat(parser.getEntries().size(), is(expected.getEntries().size()));
+    assertThat(parser.getSiuid(), is(expected.getSiuid()));
+    assertThat(parser.getLength(), is(expected.getLength()));
+  }
+
+  @Test
+  public void testDetectedFileIsParsedWithoutReopening(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser expected = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(expected.getFileName());
+
+    DetectedDicomFile detected = DicomFileDetector.detect(file, Files.readAttributes(file, BasicFileAttributes.class));
+    DicomParser parser = DicomParser.parseDetectedFile(detected);
+
+    assertThat(parser.getEntries().size(), is(expected.getEntries().size()));
+    assertThat(parser.getSiuid(), is(expected.getSiuid()));
+    assertThat(parser.getLength(), is(expected.getLength()));
+    assertThrows(IllegalStateException.class, () -> DicomParser.parseDetectedFile(detected),
+      "Expected a detected file to be read only once");
+  }
+
+  @Test
+  public void testDetectedFileIsParsedMemoryMapped(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser expected = DicomTestUtils.createEncapsulatedDicomFile(tempDir, "encapsulated.dcm", 3, 512);
+    Path file = Path.of(expected.getFileName());
+
+    ParserOptions options = new ParserOptions();
+    options.setMemoryMapped(true);
+
+    try (DetectedDicomFile detected = DicomFileDetector.detect(file,
+      Files.readAttributes(file, BasicFileAttributes.class)))
+    {
+      DicomParser parser = DicomParser.parseDetectedFile(detected, options);
+
+      assertThat(parser.getEntries().size(), is(expected.getEntries().size()));
+      assertThat(parser.getFrameCount(), is(expected.getFrameCount()));
+    }
+  }
+}
@@ -1,21 +1,41 @@
+import ch.qos.logback.classic.Level;
+import de.famst.dicom.visualizer.AllocationMeter;
+import de.famst.dicom.visualizer.DicomEntryTable;
 import de.famst.dicom.visualizer.DicomParser;
+import de.famst.dicom.visualizer.ParserOptions;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Test class for DicomParser
  */
 public class TestDicomParser
 {
+    // generous for the few entries of the minimal file, a per-file copy of the data would exceed it
+    private static final long MAX_MINIMAL_PARSE_ALLOCATION = 4L * 1024 * 1024;
+
+    private static final int PRIVATE_VALUE_LENGTH = 4 * 1024 * 1024;
+
     @Test
     public void testFileNotFound()
     {
@@ -113,6 +133,40 @@ public class TestDicomParser
         assertThat(exception.getCause(), instanceOf(IOException.class));
     }
 
+    @Test
+    public void testParseFileWithAttributes(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser expected = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+        Path file = Path.of(expected.getFileName());
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        DicomParser parser = DicomParser.parseFile(file, attributes, new ParserOptions());
+
+        assertThat(parser.getFileName(), is(file.toString()));
+        assertThat(parser.getEntries().size(), is(expected.getEntries().size()));
+        assertThat(parser.getLength(), is(expected.getLength()));
+
+        IllegalArgumentException exception = assertThrows(
+            IllegalArgumentException.class,
+            () -> DicomParser.parseFile(tempDir, Files.readAttributes(tempDir, BasicFileAttributes.class),
+                new ParserOptions()),
+            "Expected parseFile() to throw IllegalArgumentException for directory attributes"
+        );
+        assertThat(exception.getMessage(), containsString("Path is not a file"));
+
+        assertThrows(IllegalArgumentException.class, () -> DicomParser.parseFile(null, attributes, new ParserOptions()));
+        assertThrows(IllegalArgumentException.class, () -> DicomParser.parseFile(file, null, new ParserOptions()));
+        assertThrows(IllegalArgumentException.class, () -> DicomParser.parseFile(file, attributes, null));
+
+        // the attributes are trusted, a file removed since they were read fails on opening
+        Files.delete(file);
+        assertThrows(
+            RuntimeException.class,
+            () -> DicomParser.parseFile(file, attributes, new ParserOptions()),
+            "Expected parseFile() to fail for a file removed after reading its attributes"
+        );
+    }
+
     @Test
     public void testParserInitialization()
     {
@@ -161,5 +215,506 @@ public class TestDicomParser
         assertNotNull(parser.getEntries());
         assertThat(parser.getEntries().size(), greaterThan(0));
     }
-}
 
+    @Test
+    public void testNullParserOptions(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser parser = DicomTestUtils.createMinimalDicomFile(tempDir);
+
+        IllegalArgumentException exception = assertThrows(
+            IllegalArgumentException.class,
+            () -> DicomParser.parseFile(parser.getFileName(), null),
+            "Expected parseFile() to throw IllegalArgumentException for null options"
+        );
+
+        assertThat(exception.getMessage(), containsString("ParserOptions cannot be null"));
+    }
+
+    @Test
+    public void testStructureOnlyMatchesFullParse(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createComprehensiveDicomFile(tempDir, "structure.dcm");
+
+        ParserOptions options = new ParserOptions();
+        options.setStructureOnly(true);
+        DicomParser structure = DicomParser.parseFile(full.getFileName(), options);
+
+        assertThat(structure.getEntries().size(), is(full.getEntries().size()));
+        assertThat(structure.getLength(), is(full.getLength()));
+        assertThat(structure.getStuid(), is(full.getStuid()));
+        assertThat(structure.getSeuid(), is(full.getSeuid()));
+        assertThat(structure.getSiuid(), is(full.getSiuid()));
+        assertThat(structure.getModality(), is("CT"));
+    }
+
+    @Test
+    public void testEncapsulatedFragmentsAreRecorded(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser parser = DicomTestUtils.createEncapsulatedDicomFile(tempDir, "fragments.dcm", 5, 4096);
+
+        DicomEntryTable entries = parser.getEntries();
+        long items = 0;
+        long pixelData = 0;
+        for (int row = 0; row < entries.size(); row++)
+        {
+            if (entries.getTag(row) == Tag.Item)
+            {
+                items++;
+            }
+            else if (entries.getTag(row) == Tag.PixelData)
+            {
+                pixelData++;
+            }
+        }
+
+        // basic offset table plus one run of all fragments
+        assertThat(items, is(2L));
+        assertThat(pixelData, is(1L));
+        assertThat(parser.getSiuid(), is("1.2.840.113619.2.1.1.3"));
+
+        int run = findRow(entries, Tag.Item, 1);
+        assertThat(entries.isRun(run), is(true));
+        assertThat(entries.getRunCount(run), is(5));
+        assertThat(entries.getRunLength(run), is(5L * 4096));
+        assertThat(entries.getRunMinLength(run), is(4096));
+        assertThat(entries.getRunMaxLength(run), is(4096));
+
+        // without offsets in the basic offset table one frame per fragment is assumed
+        assertThat(parser.getFrameCount(), is(5));
+    }
+
+    @Test
+    public void testManyFramesProduceBoundedEntries(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser few = DicomTestUtils.createMultiFrameDicomFile(tempDir, "few.dcm", 2, 64, false);
+        DicomParser many = DicomTestUtils.createMultiFrameDicomFile(tempDir, "many.dcm", 20000, 64, false);
+
+        assertThat(many.getEntries().size(), is(few.getEntries().size()));
+        assertThat(many.getEntries().getRunEntries(), is(1));
+        assertThat(many.getFrameCount(), is(20000));
+    }
+
+    @Test
+    public void testFrameCountFromExtendedOffsetTable(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser parser = DicomTestUtils.createMultiFrameDicomFile(tempDir, "extended.dcm", 12, 128, true);
+
+        assertThat(parser.getFrameCount(), is(12));
+    }
+
+    @Test
+    public void testFrameCountWithoutEncapsulatedPixelData(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser parser = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+
+        assertThat(parser.getFrameCount(), is(0));
+    }
+
+    @Test
+    public void testRepeatedItemsAreCollapsed(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser few = DicomTestUtils.createEnhancedDicomFile(tempDir, "few.dcm", 2);
+        DicomParser many = DicomTestUtils.createEnhancedDicomFile(tempDir, "many.dcm", 1000);
+
+        DicomEntryTable entries = many.getEntries();
+        assertThat(entries.size(), is(few.getEntries().size()));
+
+        int template = findRow(entries, Tag.Item, 0);
+        assertThat(entries.getTag(template - 1), is(Tag.PerFrameFunctionalGroupsSequence));
+        assertThat(entries.isRun(template), is(true));
+        assertThat(entries.getRunCount(template), is(1000));
+        assertThat(many.getLength(), is(greaterThan(few.getLength())));
+    }
+
+    @Test
+    public void testRepeatedItemsAreExpandedOnRequest(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser collapsed = DicomTestUtils.createEnhancedDicomFile(tempDir, "enhanced.dcm", 100);
+
+        ParserOptions options = new ParserOptions();
+        options.setCollapseRepeatedItems(false);
+        DicomParser expanded = DicomParser.parseFile(collapsed.getFileName(), options);
+
+        assertThat(expanded.getEntries().getRunEntries(), is(0));
+        assertThat(expanded.getEntries().size(), is(greaterThan(100 * 5)));
+        assertThat(collapsed.getEntries().size(), is(lessThan(50)));
+    }
+
+    @Test
+    public void testDifferentItemsAreNotCollapsed(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser parser = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+
+        ParserOptions options = new ParserOptions();
+        options.setCollapseRepeatedItems(false);
+        DicomParser expanded = DicomParser.parseFile(parser.getFileName(), options);
+
+        // the findings of the report differ in structure, so nothing is collapsed
+        assertThat(parser.getEntries().size(), is(expanded.getEntries().size()));
+    }
+
+    @Test
+    public void testSequencesOnMaxDepthAreAggregated(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createNestedDicomFile(tempDir, "report.dcm", 12);
+
+        ParserOptions options = new ParserOptions();
+        options.setMaxDepth(2);
+        DicomParser bounded = DicomParser.parseFile(full.getFileName(), options);
+
+        DicomEntryTable entries = bounded.getEntries();
+        assertThat(entries.getAggregateEntries(), is(1));
+        assertThat(entries.size(), is(lessThan(full.getEntries().size())));
+
+        int aggregate = findRow(entries, Tag.ContentSequence, 2);
+        assertThat(entries.isAggregate(aggregate), is(true));
+        assertThat(entries.getLevel(aggregate), is(2));
+        assertThat(entries.getAggregateDepth(aggregate), is(10));
+        assertThat(entries.getAggregateElements(aggregate), is(9 * 3 + 2));
+
+        for (int row = 0; row < entries.size(); row++)
+        {
+            assertThat(entries.getLevel(row), is(lessThanOrEqualTo(2)));
+        }
+
+        // the aggregate spans the sequence up to the delimiter of the item holding it
+        int delimiter = aggregate + 1;
+        assertThat(entries.getTag(delimiter), is(Tag.ItemDelimitationItem));
+        assertThat(entries.getOffset(delimiter),
+            is(entries.getOffset(aggregate) + 8 + entries.getAggregateLength(aggregate)));
+    }
+
+    @Test
+    public void testTopLevelSequencesAreAggregated(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+
+        ParserOptions options = new ParserOptions();
+        options.setMaxDepth(0);
+        DicomParser bounded = DicomParser.parseFile(full.getFileName(), options);
+
+        DicomEntryTable entries = bounded.getEntries();
+        int aggregate = findRow(entries, Tag.ContentSequence, 0);
+        assertThat(entries.isAggregate(aggregate), is(true));
+        assertThat(entries.getAggregateElements(aggregate), is(greaterThan(10)));
+        for (int row = 0; row < entries.size(); row++)
+        {
+            assertThat(entries.getLevel(row), is(0));
+        }
+
+        assertThat(bounded.getStuid(), is(full.getStuid()));
+        assertThat(bounded.getSiuid(), is(full.getSiuid()));
+        assertThat(full.getEntries().getAggregateEntries(), is(0));
+    }
+
+    private static int findRow(DicomEntryTable entries, int tag, int occurrence)
+    {
+        for (int row = 0; row < entries.size(); row++)
+        {
+            if (entries.getTag(row) == tag && occurrence-- == 0)
+            {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testValuesAboveMaxLengthAreSkipped(@TempDir Path tempDir) throws Exception
+    {
+        assumeTrue(AllocationMeter.isSupported(), "The JVM cannot measure thread allocations");
+
+        DicomParser full = DicomTestUtils.createPrivateValueDicomFile(tempDir, "capped.dcm", PRIVATE_VALUE_LENGTH);
+
+        // the debug dump reads every value it is allowed to read
+        ch.qos.logback.classic.Logger logger =
+            (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(DicomParser.class);
+        Level level = logger.getLevel();
+        logger.setLevel(Level.DEBUG);
+        try
+        {
+            ParserOptions uncappedOptions = new ParserOptions();
+            uncappedOptions.setMaxValueLength(2 * PRIVATE_VALUE_LENGTH);
+            DicomParser uncapped = DicomParser.parseFile(full.getFileName(), uncappedOptions);
+
+            ParserOptions cappedOptions = new ParserOptions();
+            cappedOptions.setMaxValueLength(1024);
+            DicomParser capped = DicomParser.parseFile(full.getFileName(), cappedOptions);
+
+            assertThat(uncapped.getAllocatedBytes(), is(greaterThan((long) PRIVATE_VALUE_LENGTH)));
+            assertThat(capped.getAllocatedBytes(), is(lessThan((long) PRIVATE_VALUE_LENGTH / 4)));
+
+            assertThat(capped.getEntries().size(), is(full.getEntries().size()));
+            assertThat(capped.getLength(), is(full.getLength()));
+            assertThat(capped.getSiuid(), is(full.getSiuid()));
+            assertThat(capped.getModality(), is("CT"));
+
+            DicomEntryTable entries = capped.getEntries();
+            int row = 0;
+            while (row < entries.size() && entries.getTag(row) != 0x00091010)
+            {
+                row++;
+            }
+            assertThat(row, is(lessThan(entries.size())));
+            assertThat(entries.getLength(row), is(PRIVATE_VALUE_LENGTH));
+        }
+        finally
+        {
+            logger.setLevel(level);
+        }
+    }
+
+    @Test
+    public void testAllocatedBytesArePublished(@TempDir Path tempDir) throws Exception
+    {
+        assumeTrue(AllocationMeter.isSupported(), "The JVM cannot measure thread allocations");
+
+        DicomParser parser = DicomTestUtils.createMinimalDicomFile(tempDir);
+        assertThat(parser.getAllocatedBytes(), is(greaterThan(0L)));
+
+        // the buffers of the first parse are reused by the thread, a second parse stays small
+        DicomParser again = DicomParser.parseFile(parser.getFileName());
+        assertThat(again.getAllocatedBytes(), is(greaterThan(0L)));
+        assertThat(again.getAllocatedBytes(), is(lessThan(MAX_MINIMAL_PARSE_ALLOCATION)));
+    }
+
+    @Test
+    public void testHeaderOnlyRecordsEncapsulatedPixelData(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createEncapsulatedDicomFile(tempDir, "header.dcm", 3, 1024);
+
+        ParserOptions options = new ParserOptions();
+        options.setHeaderOnly(true);
+        DicomParser header = DicomParser.parseFile(full.getFileName(), options);
+
+        assertThat(header.getEntries().size(), is(full.getEntries().size()));
+        assertThat(header.getLength(), is(full.getLength()));
+        assertThat(header.getSiuid(), is(full.getSiuid()));
+    }
+
+    @Test
+    public void testHeaderOnlyWithoutPixelData(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createComprehensiveDicomFile(tempDir, "nopixel.dcm");
+
+        ParserOptions options = new ParserOptions();
+        options.setHeaderOnly(true);
+        DicomParser header = DicomParser.parseFile(full.getFileName(), options);
+
+        assertThat(header.getEntries().size(), is(full.getEntries().size()));
+        assertThat(header.getModality(), is("CT"));
+    }
+
+    @Test
+    public void testHeaderOnlyStopsAtNativePixelData(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createPaddedDicomFile(tempDir, "native.dcm", false, 4096, 64);
+
+        ParserOptions options = new ParserOptions();
+        options.setHeaderOnly(true);
+        DicomParser header = DicomParser.parseFile(full.getFileName(), options);
+
+        assertThat(rowOf(full.getEntries(), Tag.DataSetTrailingPadding), is(greaterThanOrEqualTo(0)));
+        assertThat(rowOf(header.getEntries(), Tag.DataSetTrailingPadding), is(-1));
+        assertThat(header.getEntries().size(), is(full.getEntries().size() - 1));
+
+        int pixelData = rowOf(header.getEntries(), Tag.PixelData);
+        assertThat(pixelData, is(header.getEntries().size() - 1));
+        assertThat(header.getEntries().getLength(pixelData), is(4096));
+
+        // the pixel data value is not read, a file cut off within it is parsed all the same
+        try (FileChannel channel = FileChannel.open(Path.of(full.getFileName()), StandardOpenOption.WRITE))
+        {
+            channel.truncate(header.getEntries().getOffset(pixelData) + 8 + 16);
+        }
+        DicomParser truncated = DicomParser.parseFile(full.getFileName(), options);
+
+        assertThat(truncated.getEntries().size(), is(header.getEntries().size()));
+        assertThat(truncated.getEntries().getLength(pixelData), is(4096));
+    }
+
+    @Test
+    public void testHeaderOnlyStopsBehindEncapsulatedPixelData(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser full = DicomTestUtils.createPaddedDicomFile(tempDir, "encapsulated.dcm", true, 4096, 64);
+
+        ParserOptions options = new ParserOptions();
+        options.setHeaderOnly(true);
+        DicomParser header = DicomParser.parseFile(full.getFileName(), options);
+
+        assertThat(rowOf(full.getEntries(), Tag.DataSetTrailingPadding), is(greaterThanOrEqualTo(0)));
+        assertThat(rowOf(header.getEntries(), Tag.DataSetTrailingPadding), is(-1));
+        assertThat(header.getEntries().size(), is(full.getEntries().size() - 1));
+
+        int pixelData = rowOf(header.getEntries(), Tag.PixelData);
+        assertThat(header.getEntries().getLength(pixelData), is(-1));
+        assertThat(header.getFrameCount(), is(1));
+    }
+
+    @Test
+    public void testParseBytesMatchesFileParse(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser file = DicomTestUtils.createComprehensiveDicomFile(tempDir, "bytes.dcm");
+        byte[] data = Files.readAllBytes(Path.of(file.getFileName()));
+
+        DicomParser bytes = DicomParser.parseBytes("received-object", data);
+
+        assertThat(bytes.getFileName(), is("received-object"));
+        assertThat(bytes.getEntries().size(), is(file.getEntries().size()));
+        assertThat(bytes.getLength(), is(file.getLength()));
+        assertThat(bytes.getSiuid(), is(file.getSiuid()));
+    }
+
+    @Test
+    public void testParseBufferKeepsPosition(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser file = DicomTestUtils.createMinimalDicomFile(tempDir);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Path.of(file.getFileName())));
+
+        DicomParser parsed = DicomParser.parseBuffer("buffer", buffer);
+
+        assertThat(buffer.position(), is(0));
+        assertThat(parsed.getEntries().size(), is(file.getEntries().size()));
+        assertThat(parsed.getSeuid(), is(file.getSeuid()));
+    }
+
+    @Test
+    public void testParseStreamWithoutMarkSupport(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser file = DicomTestUtils.createComprehensiveDicomFile(tempDir, "stream.dcm");
+        byte[] data = Files.readAllBytes(Path.of(file.getFileName()));
+
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(data))
+        {
+            @Override
+            public boolean markSupported()
+            {
+                return false;
+            }
+        };
+
+        DicomParser parsed = DicomParser.parseStream("stream", in);
+
+        assertThat(parsed.getEntries().size(), is(file.getEntries().size()));
+        assertThat(parsed.getModality(), is("CT"));
+    }
+
+    @Test
+    public void testParseNullSources()
+    {
+        assertThrows(IllegalArgumentException.class, () -> DicomParser.parseBytes("null", null));
+        assertThrows(IllegalArgumentException.class, () -> DicomParser.parseBuffer("null", null));
+        assertThrows(IllegalArgumentException.class, () -> DicomParser.parseStream("null", null));
+    }
+
+    @Test
+    public void testParseInvalidBytes()
+    {
+        RuntimeException exception = assertThrows(
+            RuntimeException.class,
+            () -> DicomParser.parseBytes("invalid", "This is not a valid DICOM file".getBytes()),
+            "Expected parseBytes() to throw RuntimeException for invalid content"
+        );
+
+        assertThat(exception.getMessage(), containsString("Failed to read DICOM file: invalid"));
+    }
+
+    @Test
+    public void testDeflatedMatchesExplicitLittleEndian(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser explicit = DicomTestUtils.createComprehensiveDicomFile(tempDir, "explicit.dcm",
+            UID.ExplicitVRLittleEndian);
+        DicomParser deflated = DicomTestUtils.createComprehensiveDicomFile(tempDir, "deflated.dcm",
+            UID.DeflatedExplicitVRLittleEndian);
+
+        DicomEntryTable expected = explicit.getEntries();
+        DicomEntryTable entries = deflated.getEntries();
+
+        // the transfer syntax UIDs differ in length, so only offsets within the data set are compared
+        int datasetRow = 0;
+        while (entries.getGroup(datasetRow) == 0x0002)
+        {
+            datasetRow++;
+        }
+
+        assertThat(entries.size(), is(expected.size()));
+        for (int row = 0; row < entries.size(); row++)
+        {
+            assertThat(entries.getTag(row), is(expected.getTag(row)));
+            assertThat(entries.getVr(row), is(expected.getVr(row)));
+            assertThat(entries.getLength(row), is(expected.getLength(row)));
+
+            if (row >= datasetRow)
+            {
+                assertThat(entries.getOffset(row) - entries.getOffset(datasetRow),
+                    is(expected.getOffset(row) - expected.getOffset(datasetRow)));
+            }
+        }
+
+        assertThat(deflated.getSiuid(), is(explicit.getSiuid()));
+        assertThat(deflated.getModality(), is("CT"));
+        assertThat(deflated.getDeflatedLength(), is(greaterThan(0L)));
+        assertThat(deflated.getInflateNanos(), is(greaterThanOrEqualTo(0L)));
+        assertThat(explicit.getDeflatedLength(), is(-1L));
+    }
+
+    @Test
+    public void testDeflatedFileOffsets(@TempDir Path tempDir) throws Exception
+    {
+        ParserOptions options = new ParserOptions();
+        options.setInflateBufferSize(16);
+
+        DicomParser written = DicomTestUtils.createComprehensiveDicomFile(tempDir, "deflated.dcm",
+            UID.DeflatedExplicitVRLittleEndian);
+        DicomParser deflated = DicomParser.parseFile(written.getFileName(), options);
+        long fileSize = Files.size(Path.of(written.getFileName()));
+
+        DicomEntryTable entries = deflated.getEntries();
+        assertThat(entries.hasFileOffsets(), is(true));
+        assertThat(entries.size(), is(written.getEntries().size()));
+
+        long previous = 0;
+        for (int row = 0; row < entries.size(); row++)
+        {
+            long fileOffset = entries.getFileOffset(row);
+            assertThat(fileOffset, is(greaterThanOrEqualTo(previous)));
+            assertThat(fileOffset, is(lessThanOrEqualTo(fileSize)));
+            assertThat(fileOffset, is(lessThanOrEqualTo(entries.getOffset(row))));
+            previous = fileOffset;
+
+            // the file meta information is not deflated
+            if (entries.getGroup(row) == 0x0002)
+            {
+                assertThat(fileOffset, is(entries.getOffset(row)));
+            }
+        }
+    }
+
+    @Test
+    public void testDeflatedFromStream(@TempDir Path tempDir) throws Exception
+    {
+        DicomParser written = DicomTestUtils.createComprehensiveDicomFile(tempDir, "deflated.dcm",
+            UID.DeflatedExplicitVRLittleEndian);
+        byte[] data = Files.readAllBytes(Path.of(written.getFileName()));
+
+        DicomParser parsed = DicomParser.parseStream("stream", new ByteArrayInputStream(data));
+
+        assertThat(parsed.getEntries().size(), is(written.getEntries().size()));
+        assertThat(parsed.getDeflatedLength(), is(written.getDeflatedLength()));
+    }
+
+    /**
+     * Finds the first top level row of a tag, or -1 if the tag is missing.
+     */
+    private static int rowOf(DicomEntryTable entries, int tag)
+    {
+        for (int row = 0; row < entries.size(); row++)
+        {
+            if (entries.getLevel(row) == 0 && entries.getTag(row) == tag)
+            {
+                return row;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,142 @@
+import de.famst.dicom.visualizer.InflatingInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for InflatingInputStream
+ */
+public class TestInflatingInputStream
+{
+  @Test
+  public void testConstructorWithInvalidArguments()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new InflatingInputStream(null),
+      "Expected constructor to throw IllegalArgumentException for null stream"
+    );
+    assertThat(exception.getMessage(), containsString("Input stream cannot be null"));
+
+    exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new InflatingInputStream(new ByteArrayInputStream(new byte[0]), 0),
+      "Expected constructor to throw IllegalArgumentException for zero buffer size"
+    );
+    assertThat(exception.getMessage(), containsString("Buffer size must be positive, got: 0"));
+  }
+
+  @Test
+  public void testInflateRawDeflate() throws IOException
+  {
+    byte[] content = createContent(100_000);
+    byte[] deflated = deflate(content, true);
+
+    try (InflatingInputStream in = new InflatingInputStream(new ByteArrayInputStream(deflated), 64))
+    {
+      assertThat(in.readAllBytes(), is(content));
+      assertThat(in.getInflatedBytes(), is((long) content.length));
+      assertThat(in.getCompressedBytes(), is((long) deflated.length));
+      assertThat(in.getInflateNanos(), is(greaterThanOrEqualTo(0L)));
+    }
+  }
+
+  @Test
+  public void testInflateWithZlibHeader() throws IOException
+  {
+    byte[] content = createContent(10_000);
+    byte[] deflated = deflate(content, false);
+
+    try (InflatingInputStream in = new InflatingInputStream(new BufferedInputStream(new ByteArrayInputStream(deflated))))
+    {
+      assertThat(in.readAllBytes(), is(content));
+    }
+  }
+
+  @Test
+  public void testSkipInflatesContent() throws IOException
+  {
+    byte[] content = createContent(50_000);
+
+    try (InflatingInputStream in = new InflatingInputStream(new ByteArrayInputStream(deflate(content, true)), 128))
+    {
+      assertThat(in.skip(30_000), is(30_000L));
+      assertThat(in.read(), is(content[30_000] & 0xFF));
+      assertThat(in.skip(100_000), is(19_999L));
+      assertThat(in.read(), is(-1));
+    }
+  }
+
+  @Test
+  public void testCompressedPositionsAscend() throws IOException
+  {
+    byte[] content = createContent(200_000);
+    byte[] deflated = deflate(content, true);
+
+    try (InflatingInputStream in = new InflatingInputStream(new ByteArrayInputStream(deflated), 32))
+    {
+      byte[] buffer = new byte[256];
+      long inflated = 0;
+      long previous = 0;
+
+      int count;
+      while ((count = in.read(buffer, 0, buffer.length)) > 0)
+      {
+        long compressed = in.getCompressedPosition(inflated);
+        assertThat(compressed, is(greaterThanOrEqualTo(previous)));
+        assertThat(compressed, is(lessThanOrEqualTo((long) deflated.length)));
+        previous = compressed;
+        inflated += count;
+      }
+
+      assertThat(previous, is(greaterThan(0L)));
+    }
+  }
+
+  @Test
+  public void testTruncatedInput()
+  {
+    byte[] deflated = deflate(createContent(50_000), true);
+    byte[] truncated = Arrays.copyOf(deflated, deflated.length / 2);
+
+    assertThrows(EOFException.class,
+      () -> new InflatingInputStream(new ByteArrayInputStream(truncated)).readAllBytes());
+  }
+
+  private static byte[] createContent(int length)
+  {
+    byte[] content = new byte[length];
+    Random random = new Random(42);
+    for (int i = 0; i < length; i++)
+    {
+      content[i] = (byte) ('A' + random.nextInt(8));
+    }
+    return content;
+  }
+
+  private static byte[] deflate(byte[] content, boolean nowrap)
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap)))
+    {
+      deflater.write(content);
+    }
+    catch (IOException e)
+    {
+      throw new RuntimeException(e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,109 @@
+import de.famst.dicom.visualizer.DetectedDicomFile;
+import de.famst.dicom.visualizer.DicomFileDetector;
+import de.famst.dicom.visualizer.DicomParser;
+import de.famst.dicom.visualizer.InstanceHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for InstanceHeader
+ */
+public class TestInstanceHeader
+{
+  @Test
+  public void testScanWithNullPath()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> InstanceHeader.scan(null),
+      "Expected scan() to throw IllegalArgumentException for null path"
+    );
+
+    assertThat(exception.getMessage(), containsString("Path cannot be null"));
+  }
+
+  @Test
+  public void testScanInvalidFile(@TempDir Path tempDir) throws Exception
+  {
+    Path file = tempDir.resolve("invalid.dcm");
+    Files.writeString(file, "This is not a valid DICOM file");
+
+    RuntimeException exception = assertThrows(
+      RuntimeException.class,
+      () -> InstanceHeader.scan(file),
+      "Expected scan() to throw RuntimeException for invalid file"
+    );
+
+    assertThat(exception.getMessage(), containsString("Failed to scan DICOM file"));
+  }
+
+  @Test
+  public void testScanMatchesParse(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser parser = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(parser.getFileName());
+
+    InstanceHeader header = InstanceHeader.scan(file);
+
+    assertThat(header.getPath(), is(file));
+    assertThat(header.getStuid(), is(parser.getStuid()));
+    assertThat(header.getSeuid(), is(parser.getSeuid()));
+    assertThat(header.getSiuid(), is(parser.getSiuid()));
+    assertThat(header.getModality(), is(parser.getModality()));
+  }
+
+  @Test
+  public void testScanDetectedFileMatchesScan(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser parser = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(parser.getFileName());
+
+    DetectedDicomFile detected = DicomFileDetector.detect(file, Files.readAttributes(file, BasicFileAttributes.class));
+    InstanceHeader header = InstanceHeader.scanDetectedFile(detected);
+    InstanceHeader expected = InstanceHeader.scan(file);
+
+    assertThat(header.getPath(), is(file));
+    assertThat(header.getStuid(), is(expected.getStuid()));
+    assertThat(header.getSeuid(), is(expected.getSeuid()));
+    assertThat(header.getSiuid(), is(expected.getSiuid()));
+    assertThat(header.getModality(), is(expected.getModality()));
+
+    assertThrows(IllegalArgumentException.class, () -> InstanceHeader.scanDetectedFile(null));
+  }
+
+  @Test
+  public void testScanStopsBeforePixelData(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser parser = DicomTestUtils.createEncapsulatedDicomFile(tempDir, "encapsulated.dcm", 4, 1024);
+    Path file = Path.of(parser.getFileName());
+
+    // cut the file inside the pixel data, a complete parse cannot read it anymore
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 2048));
+
+    InstanceHeader header = InstanceHeader.scan(file);
+
+    assertThat(header.getSeuid(), is(parser.getSeuid()));
+    assertThat(header.getSiuid(), is(parser.getSiuid()));
+  }
+
+  @Test
+  public void testScanWithSequence(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser parser = DicomTestUtils.createDicomFileWithSequence(tempDir);
+
+    InstanceHeader header = InstanceHeader.scan(Path.of(parser.getFileName()));
+
+    assertThat(header.getSeuid(), is(parser.getSeuid()));
+    assertThat(header.getModality(), is("CT"));
+  }
+}
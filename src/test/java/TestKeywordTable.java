@@ -0,0 +1,56 @@
+import de.famst.dicom.visualizer.KeywordTable;
+import org.dcm4che3.data.ElementDictionary;
+import org.dcm4che3.data.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Test class for KeywordTable
+ */
+public class TestKeywordTable
+{
+  @Test
+  public void testGeneratedTableIsLoaded()
+  {
+    assertThat(KeywordTable.size(), is(greaterThan(1000)));
+  }
+
+  @Test
+  public void testStandardKeywords()
+  {
+    assertThat(KeywordTable.keywordOf(Tag.PatientName), is("PatientName"));
+    assertThat(KeywordTable.keywordOf(Tag.TransferSyntaxUID), is("TransferSyntaxUID"));
+    assertThat(KeywordTable.keywordOf(Tag.PixelData), is("PixelData"));
+    assertThat(KeywordTable.keywordOf(Tag.Item), is("Item"));
+  }
+
+  @Test
+  public void testMatchesDictionaryForAllStandardTags() throws Exception
+  {
+    for (Field field : Tag.class.getFields())
+    {
+      if (field.getType() == int.class && Modifier.isStatic(field.getModifiers()))
+      {
+        int tag = field.getInt(null);
+        assertThat(field.getName(), KeywordTable.keywordOf(tag), is(ElementDictionary.keywordOf(tag, null)));
+      }
+    }
+  }
+
+  @Test
+  public void testFallbackForTagsNotInTable()
+  {
+    int privateCreator = 0x00090010;
+    int privateElement = 0x00091001;
+    int overlayData = 0x60023000;
+
+    assertThat(KeywordTable.keywordOf(privateCreator), is(ElementDictionary.keywordOf(privateCreator, null)));
+    assertThat(KeywordTable.keywordOf(privateElement), is(ElementDictionary.keywordOf(privateElement, null)));
+    assertThat(KeywordTable.keywordOf(overlayData), is(ElementDictionary.keywordOf(overlayData, null)));
+  }
+}
@@ -0,0 +1,180 @@
+import de.famst.dicom.visualizer.DicomEntryTable;
+import de.famst.dicom.visualizer.LayoutEngine;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LayoutEngine
+ */
+public class TestLayoutEngine
+{
+  private static DicomEntryTable createTable(int... lengths)
+  {
+    DicomEntryTable table = new DicomEntryTable(lengths.length);
+    long offset = 132;
+    for (int length : lengths)
+    {
+      table.add(Tag.PatientName, VR.PN, 0, offset, length);
+      offset += 8 + Math.max(length, 0);
+    }
+    return table;
+  }
+
+  @Test
+  public void testFileLayoutMatchesLogScale()
+  {
+    DicomEntryTable table = createTable(4, 100, -1, 1_000_000);
+
+    float total = LayoutEngine.forFile(table).layout(table);
+
+    double range = Math.log(1.2E7f) - 1.0;
+    assertThat((double) table.getLogLength(0), closeTo(1.0, 1e-5));
+    assertThat((double) table.getLogLength(1), closeTo(69.0 * (Math.log(100) - Math.log(1)) / range + 1.0, 1e-4));
+    assertThat((double) table.getLogLength(3), closeTo(69.0 * Math.log(1_000_000) / range + 1.0, 1e-4));
+
+    // undefined length counts as length 1, which is the minimum here
+    assertThat(table.getLogLength(2), is(table.getLogLength(0)));
+    assertThat(total, greaterThan(0.0f));
+  }
+
+  @Test
+  public void testPositionsArePrefixSums()
+  {
+    DicomEntryTable table = createTable(12, 0, 400, 8, 65536);
+
+    float total = LayoutEngine.forFile(table).layout(table);
+
+    float pos = 0.0f;
+    for (int row = 0; row < table.size(); row++)
+    {
+      assertThat(table.getLogPosition(row), is(pos));
+      pos += table.getLogLength(row);
+    }
+    assertThat(total, is(pos));
+  }
+
+  @Test
+  public void testReferenceLengthChangesScale()
+  {
+    DicomEntryTable table = createTable(1, 1000);
+
+    LayoutEngine.forFile(table, 1000.0f).layout(table);
+    float shortReference = table.getLogLength(1);
+
+    LayoutEngine.forFile(table).layout(table);
+    float defaultReference = table.getLogLength(1);
+
+    assertThat(shortReference, greaterThan(defaultReference));
+  }
+
+  @Test
+  public void testStudyLayoutScalesEqualLengthsEqually()
+  {
+    DicomEntryTable small = createTable(10, 20, 30);
+    DicomEntryTable large = createTable(2, 30, 1_000_000);
+
+    LayoutEngine engine = LayoutEngine.forStudy(List.of(small, large));
+    engine.layout(small);
+    engine.layout(large);
+
+    assertThat(engine.getMinLength(), is(2.0f));
+    assertThat(small.getLogLength(2), is(large.getLogLength(1)));
+    assertThat((double) large.getLogLength(0), closeTo(LayoutEngine.MIN_SCALED_LENGTH, 1e-5));
+    assertThat((double) large.getLogLength(2), closeTo(LayoutEngine.MAX_SCALED_LENGTH, 1e-4));
+  }
+
+  @Test
+  public void testStudyLayoutWithEqualLengths()
+  {
+    DicomEntryTable first = createTable(16, 16);
+    DicomEntryTable second = createTable(16);
+
+    LayoutEngine engine = LayoutEngine.forStudy(List.of(first, second, new DicomEntryTable()));
+
+    assertThat(engine.layout(first), is(2 * LayoutEngine.MIN_SCALED_LENGTH));
+    assertThat(engine.layout(second), is(LayoutEngine.MIN_SCALED_LENGTH));
+  }
+
+  @Test
+  public void testSameScale()
+  {
+    DicomEntryTable small = createTable(10, 20, 30);
+    DicomEntryTable large = createTable(2, 30, 1_000_000);
+
+    LayoutEngine engine = LayoutEngine.forStudy(List.of(small, large));
+
+    // a table within the range does not change the scale
+    assertThat(engine.hasSameScale(LayoutEngine.forStudy(List.of(small, large, createTable(100)))), is(true));
+    assertThat(engine.hasSameScale(LayoutEngine.forStudy(List.of(small, large, createTable(1)))), is(false));
+    assertThat(engine.hasSameScale(LayoutEngine.forStudy(List.of(small))), is(false));
+    assertThat(engine.hasSameScale(null), is(false));
+  }
+
+  @Test
+  public void testTotalLengthWithoutLayout()
+  {
+    DicomEntryTable small = createTable(10, 20, 30, -1);
+    DicomEntryTable large = createTable(2, 30, 1_000_000, 65536);
+
+    LayoutEngine engine = LayoutEngine.forRange(2, 1_000_000);
+
+    assertThat(engine.hasSameScale(LayoutEngine.forStudy(List.of(small, large))), is(true));
+    assertThat((double) engine.getTotalLength(small.size(), small.getLogLengthSum()),
+      closeTo(engine.layout(small), 1e-3));
+    assertThat((double) engine.getTotalLength(large.size(), large.getLogLengthSum()),
+      closeTo(engine.layout(large), 1e-3));
+    assertThat(engine.getTotalLength(0, new DicomEntryTable().getLogLengthSum()), is(0.0f));
+  }
+
+  @Test
+  public void testEmptyTable()
+  {
+    DicomEntryTable table = new DicomEntryTable();
+
+    assertThat(LayoutEngine.forFile(table).layout(table), is(0.0f));
+    assertThat(LayoutEngine.forStudy(List.of()).layout(table), is(0.0f));
+  }
+
+  @Test
+  public void testNullArguments()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> LayoutEngine.forFile(null),
+      "Expected forFile to throw IllegalArgumentException for null table"
+    );
+    assertThat(exception.getMessage(), containsString("Entry table cannot be null"));
+
+    exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> LayoutEngine.forStudy(null),
+      "Expected forStudy to throw IllegalArgumentException for null tables"
+    );
+    assertThat(exception.getMessage(), containsString("Entry tables cannot be null"));
+
+    LayoutEngine engine = LayoutEngine.forStudy(List.of());
+    assertThrows(IllegalArgumentException.class, () -> engine.layout(null),
+      "Expected layout to throw IllegalArgumentException for null table");
+  }
+
+  @Test
+  public void testInvalidReferenceLength()
+  {
+    DicomEntryTable table = createTable(10);
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> LayoutEngine.forFile(table, 1.0f),
+      "Expected forFile to throw IllegalArgumentException for a reference length of 1"
+    );
+
+    assertThat(exception.getMessage(), containsString("Reference length must be greater than 1"));
+  }
+}
@@ -0,0 +1,132 @@
+import de.famst.dicom.visualizer.DicomParser;
+import de.famst.dicom.visualizer.MappedFileInputStream;
+import de.famst.dicom.visualizer.ParserOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MappedFileInputStream
+ */
+public class TestMappedFileInputStream
+{
+  private static Path createFile(Path tempDir, int length) throws IOException
+  {
+    byte[] content = new byte[length];
+    for (int i = 0; i < length; i++)
+    {
+      content[i] = (byte) i;
+    }
+
+    Path file = tempDir.resolve("content.bin");
+    Files.write(file, content);
+    return file;
+  }
+
+  @Test
+  public void testReadAcrossWindows(@TempDir Path tempDir) throws IOException
+  {
+    Path file = createFile(tempDir, 1000);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (MappedFileInputStream in = new MappedFileInputStream(FileChannel.open(file, StandardOpenOption.READ), 64))
+    {
+      byte[] buffer = new byte[100];
+      int count;
+      while ((count = in.read(buffer, 0, buffer.length)) != -1)
+      {
+        out.write(buffer, 0, count);
+      }
+    }
+
+    assertArrayEquals(Files.readAllBytes(file), out.toByteArray());
+  }
+
+  @Test
+  public void testSingleByteRead(@TempDir Path tempDir) throws IOException
+  {
+    Path file = createFile(tempDir, 3);
+
+    try (MappedFileInputStream in = new MappedFileInputStream(file))
+    {
+      assertThat(in.read(), is(0));
+      assertThat(in.read(), is(1));
+      assertThat(in.read(), is(2));
+      assertThat(in.read(), is(-1));
+    }
+  }
+
+  @Test
+  public void testSkipMovesPosition(@TempDir Path tempDir) throws IOException
+  {
+    Path file = createFile(tempDir, 500);
+
+    try (MappedFileInputStream in = new MappedFileInputStream(FileChannel.open(file, StandardOpenOption.READ), 64))
+    {
+      assertThat(in.skip(300), is(300L));
+      assertThat(in.getPosition(), is(300L));
+      assertThat(in.read(), is(300 & 0xFF));
+      assertThat(in.skip(1000), is(199L));
+      assertThat(in.read(), is(-1));
+    }
+  }
+
+  @Test
+  public void testMarkAndReset(@TempDir Path tempDir) throws IOException
+  {
+    Path file = createFile(tempDir, 200);
+
+    try (MappedFileInputStream in = new MappedFileInputStream(FileChannel.open(file, StandardOpenOption.READ), 64))
+    {
+      assertThat(in.markSupported(), is(true));
+
+      in.skip(10);
+      in.mark(200);
+      in.skip(100);
+      in.reset();
+
+      assertThat(in.read(), is(10));
+    }
+  }
+
+  @Test
+  public void testInvalidWindowSize(@TempDir Path tempDir) throws IOException
+  {
+    Path file = createFile(tempDir, 10);
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      IllegalArgumentException exception = assertThrows(
+        IllegalArgumentException.class,
+        () -> new MappedFileInputStream(channel, 0),
+        "Expected constructor to throw IllegalArgumentException for zero window size"
+      );
+
+      assertThat(exception.getMessage(), containsString("Window size must be between"));
+    }
+  }
+
+  @Test
+  public void testMemoryMappedParseMatchesStreamParse(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser stream = DicomTestUtils.createComprehensiveDicomFile(tempDir, "mapped.dcm");
+
+    ParserOptions options = new ParserOptions();
+    options.setMemoryMapped(true);
+    DicomParser mapped = DicomParser.parseFile(stream.getFileName(), options);
+
+    assertThat(mapped.getEntries().size(), is(stream.getEntries().size()));
+    assertThat(mapped.getLength(), is(stream.getLength()));
+    assertThat(mapped.getSiuid(), is(stream.getSiuid()));
+  }
+}
@@ -0,0 +1,347 @@
+import de.famst.dicom.visualizer.DetectedDicomFile;
+import de.famst.dicom.visualizer.DicomEntryTable;
+import de.famst.dicom.visualizer.DicomFileDetector;
+import de.famst.dicom.visualizer.DicomParser;
+import de.famst.dicom.visualizer.InstanceHeader;
+import de.famst.dicom.visualizer.ParseCache;
+import de.famst.dicom.visualizer.ParserOptions;
+import de.famst.dicom.visualizer.StudyDrawer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ParseCache
+ */
+public class TestParseCache
+{
+  @Test
+  public void testConstructorWithInvalidArguments(@TempDir Path tempDir)
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new ParseCache(null),
+      "Expected constructor to throw IllegalArgumentException for null directory"
+    );
+    assertThat(exception.getMessage(), containsString("Cache directory cannot be null"));
+
+    exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new ParseCache(tempDir, 0),
+      "Expected constructor to throw IllegalArgumentException for zero size"
+    );
+    assertThat(exception.getMessage(), containsString("Max cache size must be positive, got: 0"));
+  }
+
+  @Test
+  public void testCachedResultMatchesParse(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    DicomParser first = cache.parse(file, new ParserOptions());
+    DicomParser second = cache.parse(file, new ParserOptions());
+
+    assertThat(cache.getSize(), is(greaterThan(0L)));
+    assertThat(second.getAllocatedBytes(), is(-1L));
+    assertThat(second.getSiuid(), is(first.getSiuid()));
+    assertThat(second.getSeuid(), is(first.getSeuid()));
+    assertThat(second.getStuid(), is(first.getStuid()));
+    assertThat(second.getModality(), is(first.getModality()));
+    assertThat(second.getLength(), is(first.getLength()));
+    assertThat(second.getEntries().size(), is(first.getEntries().size()));
+
+    for (int row = 0; row < first.getEntries().size(); row++)
+    {
+      assertThat(second.getEntries().getTag(row), is(first.getEntries().getTag(row)));
+      assertThat(second.getEntries().getVr(row), is(first.getEntries().getVr(row)));
+      assertThat(second.getEntries().getLevel(row), is(first.getEntries().getLevel(row)));
+      assertThat(second.getEntries().getOffset(row), is(first.getEntries().getOffset(row)));
+      assertThat(second.getEntries().getLength(row), is(first.getEntries().getLength(row)));
+      assertThat(second.getEntries().getLogPosition(row), is(first.getEntries().getLogPosition(row)));
+    }
+  }
+
+  @Test
+  public void testUnchangedFileIsNotRead(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createMinimalDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+    cache.parse(file, new ParserOptions());
+
+    // same size and modification time, the content is never looked at
+    FileTime modified = Files.getLastModifiedTime(file);
+    Files.write(file, new byte[(int) Files.size(file)]);
+    Files.setLastModifiedTime(file, modified);
+
+    DicomParser cached = cache.parse(file, new ParserOptions());
+
+    assertThat(cached.getSiuid(), is(original.getSiuid()));
+  }
+
+  @Test
+  public void testParseWithAttributesSharesEntry(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createMinimalDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    cache.parse(file, attributes, new ParserOptions());
+    assertThat(cache.getSize(), is(greaterThan(0L)));
+
+    // the entry stored under the attributes of the walk is found by a plain parse
+    Files.write(file, new byte[(int) attributes.size()]);
+    Files.setLastModifiedTime(file, attributes.lastModifiedTime());
+
+    DicomParser cached = cache.parse(file, new ParserOptions());
+
+    assertThat(cached.getSiuid(), is(original.getSiuid()));
+
+    assertThrows(IllegalArgumentException.class, () -> cache.parse(file, null, new ParserOptions()));
+  }
+
+  @Test
+  public void testParseDetectedFile(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    DicomParser parsed = cache.parse(DicomFileDetector.detect(file,
+      Files.readAttributes(file, BasicFileAttributes.class)), new ParserOptions());
+    DicomParser cached = cache.parse(DicomFileDetector.detect(file,
+      Files.readAttributes(file, BasicFileAttributes.class)), new ParserOptions());
+
+    assertThat(parsed.getEntries().size(), is(original.getEntries().size()));
+    assertThat(cached.getAllocatedBytes(), is(-1L));
+    assertThat(cached.getSiuid(), is(original.getSiuid()));
+    assertThat(cached.getEntries().size(), is(original.getEntries().size()));
+
+    // the entry is shared with the parse by path
+    assertThat(cache.parse(file, new ParserOptions()).getAllocatedBytes(), is(-1L));
+    assertThrows(IllegalArgumentException.class, () -> cache.parse((DetectedDicomFile) null, new ParserOptions()));
+  }
+
+  @Test
+  public void testReadHeader(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createComprehensiveDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    assertThat(cache.readHeader(file, attributes, new ParserOptions()), is(nullValue()));
+
+    cache.parse(file, attributes, new ParserOptions());
+    InstanceHeader header = cache.readHeader(file, attributes, new ParserOptions());
+
+    assertThat(header.getPath(), is(file));
+    assertThat(header.getAttributes(), is(sameInstance(attributes)));
+    assertThat(header.getStuid(), is(original.getStuid()));
+    assertThat(header.getSeuid(), is(original.getSeuid()));
+    assertThat(header.getSiuid(), is(original.getSiuid()));
+    assertThat(header.getModality(), is(original.getModality()));
+
+    // other options or a modified file have no entry
+    ParserOptions headerOnly = new ParserOptions();
+    headerOnly.setHeaderOnly(true);
+    assertThat(cache.readHeader(file, attributes, headerOnly), is(nullValue()));
+
+    Files.setLastModifiedTime(file, FileTime.fromMillis(attributes.lastModifiedTime().toMillis() + 2000));
+    BasicFileAttributes modified = Files.readAttributes(file, BasicFileAttributes.class);
+    assertThat(cache.readHeader(file, modified, new ParserOptions()), is(nullValue()));
+
+    assertThrows(IllegalArgumentException.class, () -> cache.readHeader(null, attributes, new ParserOptions()));
+    assertThrows(IllegalArgumentException.class, () -> cache.readHeader(file, null, new ParserOptions()));
+    assertThrows(IllegalArgumentException.class, () -> cache.readHeader(file, attributes, null));
+  }
+
+  @Test
+  public void testModifiedFileIsParsedAgain(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createMinimalDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+    cache.parse(file, new ParserOptions());
+
+    Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+
+    DicomParser parsed = cache.parse(file, new ParserOptions());
+
+    assertThat(parsed.getAllocatedBytes(), is(not(-1L)));
+    assertThat(parsed.getSiuid(), is(original.getSiuid()));
+  }
+
+  @Test
+  public void testCorruptEntryIsParsedAgain(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createMinimalDicomFile(tempDir);
+    Path file = Path.of(original.getFileName());
+    Path cacheDir = tempDir.resolve("cache");
+    ParseCache cache = new ParseCache(cacheDir);
+    cache.parse(file, new ParserOptions());
+
+    try (Stream<Path> entries = Files.list(cacheDir))
+    {
+      for (Path entry : entries.toList())
+      {
+        Files.write(entry, new byte[]{1, 2, 3});
+      }
+    }
+
+    DicomParser parsed = cache.parse(file, new ParserOptions());
+
+    assertThat(parsed.getSiuid(), is(original.getSiuid()));
+    assertThat(parsed.getEntries().size(), is(original.getEntries().size()));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted(@TempDir Path tempDir) throws Exception
+  {
+    Path first = Path.of(DicomTestUtils.createComprehensiveDicomFile(tempDir, "first.dcm").getFileName());
+    Path second = Path.of(DicomTestUtils.createComprehensiveDicomFile(tempDir, "second.dcm").getFileName());
+    Path third = Path.of(DicomTestUtils.createComprehensiveDicomFile(tempDir, "third.dcm").getFileName());
+
+    ParseCache probe = new ParseCache(tempDir.resolve("probe"));
+    probe.parse(second, new ParserOptions());
+    long maxSize = probe.getSize() * 5 / 2;
+
+    Path cacheDir = tempDir.resolve("cache");
+    ParseCache cache = new ParseCache(cacheDir, maxSize);
+    cache.parse(first, new ParserOptions());
+    cache.parse(second, new ParserOptions());
+
+    try (Stream<Path> entries = Files.list(cacheDir))
+    {
+      for (Path entry : entries.toList())
+      {
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(1000));
+      }
+    }
+
+    // using the first entry makes the second one the least recently used
+    assertThat(cache.parse(first, new ParserOptions()).getAllocatedBytes(), is(-1L));
+    cache.parse(third, new ParserOptions());
+
+    assertThat(cache.getSize(), is(lessThanOrEqualTo(maxSize)));
+    assertThat(cache.parse(first, new ParserOptions()).getAllocatedBytes(), is(-1L));
+    assertThat(cache.parse(third, new ParserOptions()).getAllocatedBytes(), is(-1L));
+    try (Stream<Path> entries = Files.list(cacheDir))
+    {
+      assertThat(entries.count(), is(2L));
+    }
+  }
+
+  @Test
+  public void testHeaderOnlyIsCachedSeparately(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createEncapsulatedDicomFile(tempDir, "encapsulated.dcm", 2, 16);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    ParserOptions headerOnly = new ParserOptions();
+    headerOnly.setHeaderOnly(true);
+
+    DicomParser full = cache.parse(file, new ParserOptions());
+    DicomParser header = cache.parse(file, headerOnly);
+
+    assertThat(cache.parse(file, new ParserOptions()).getEntries().size(), is(full.getEntries().size()));
+    assertThat(cache.parse(file, headerOnly).getEntries().size(), is(header.getEntries().size()));
+  }
+
+  @Test
+  public void testFragmentRunsAreCached(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createMultiFrameDicomFile(tempDir, "frames.dcm", 50, 32, false);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    cache.parse(file, new ParserOptions());
+    DicomParser cached = cache.parse(file, new ParserOptions());
+
+    DicomEntryTable entries = cached.getEntries();
+    assertThat(entries.getRunEntries(), is(1));
+    for (int row = 0; row < entries.size(); row++)
+    {
+      assertThat(entries.getRunCount(row), is(original.getEntries().getRunCount(row)));
+      assertThat(entries.getRunLength(row), is(original.getEntries().getRunLength(row)));
+    }
+    assertThat(cached.getFrameCount(), is(50));
+    assertThat(cached.getLength(), is(original.getLength()));
+  }
+
+  @Test
+  public void testAggregatesAreCachedPerDepth(@TempDir Path tempDir) throws Exception
+  {
+    DicomParser original = DicomTestUtils.createNestedDicomFile(tempDir, "report.dcm", 8);
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    ParserOptions bounded = new ParserOptions();
+    bounded.setMaxDepth(1);
+
+    DicomParser parsed = cache.parse(file, bounded);
+    DicomParser cached = cache.parse(file, bounded);
+
+    DicomEntryTable entries = cached.getEntries();
+    assertThat(entries.getAggregateEntries(), is(1));
+    for (int row = 0; row < entries.size(); row++)
+    {
+      assertThat(entries.getAggregateLength(row), is(parsed.getEntries().getAggregateLength(row)));
+      assertThat(entries.getAggregateElements(row), is(parsed.getEntries().getAggregateElements(row)));
+      assertThat(entries.getAggregateDepth(row), is(parsed.getEntries().getAggregateDepth(row)));
+    }
+    assertThat(cached.getLength(), is(parsed.getLength()));
+
+    assertThat(cache.parse(file, new ParserOptions()).getEntries().size(), is(original.getEntries().size()));
+  }
+
+  @Test
+  public void testStudyDrawerUsesCache(@TempDir Path tempDir) throws Exception
+  {
+    Path folder = Files.createDirectory(tempDir.resolve("study"));
+    DicomTestUtils.createMinimalDicomFile(folder, "one.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(folder, "two.dcm");
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+
+    StudyDrawer cold = new StudyDrawer(folder.toString(), new ParserOptions(), cache);
+    StudyDrawer warm = new StudyDrawer(folder.toString(), new ParserOptions(), cache);
+
+    assertThat(warm.getSeries().keySet(), is(cold.getSeries().keySet()));
+    assertThat(warm.getMaxLength(), is(cold.getMaxLength()));
+    warm.getSeries().values().forEach(parsers ->
+      parsers.forEach(parser -> assertThat(parser.getAllocatedBytes(), is(-1L))));
+  }
+
+  @Test
+  public void testWarmStudyIsNotPreScanned(@TempDir Path tempDir) throws Exception
+  {
+    Path folder = Files.createDirectory(tempDir.resolve("study"));
+    DicomParser original = DicomTestUtils.createMinimalDicomFile(folder, "one.dcm");
+    Path file = Path.of(original.getFileName());
+    ParseCache cache = new ParseCache(tempDir.resolve("cache"));
+    new StudyDrawer(folder.toString(), new ParserOptions(), cache).getSeries();
+
+    // same size and modification time, a pre-scan would no longer detect the file
+    FileTime modified = Files.getLastModifiedTime(file);
+    Files.write(file, new byte[(int) Files.size(file)]);
+    Files.setLastModifiedTime(file, modified);
+
+    StudyDrawer warm = new StudyDrawer(folder.toString(), new ParserOptions(), cache);
+
+    assertThat(warm.getFiles(), contains(file));
+    assertThat(warm.getSeries().keySet(), contains(original.getSeuid()));
+  }
+}
@@ -0,0 +1,127 @@
+import de.famst.dicom.visualizer.InflatingInputStream;
+import de.famst.dicom.visualizer.ParserOptions;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ParserOptions
+ */
+public class TestParserOptions
+{
+  @Test
+  public void testDefaults()
+  {
+    ParserOptions options = new ParserOptions();
+
+    assertThat(options.isStructureOnly(), is(false));
+    assertThat(options.getMaxValueLength(), is(ParserOptions.DEFAULT_MAX_VALUE_LENGTH));
+    assertThat(options.isHeaderOnly(), is(false));
+    assertThat(options.isMemoryMapped(), is(false));
+    assertThat(options.isCollapseRepeatedItems(), is(true));
+    assertThat(options.getMaxDepth(), is(ParserOptions.UNLIMITED_DEPTH));
+  }
+
+  @Test
+  public void testSetMemoryMapped()
+  {
+    ParserOptions options = new ParserOptions();
+    options.setMemoryMapped(true);
+
+    assertThat(options.isMemoryMapped(), is(true));
+  }
+
+  @Test
+  public void testSetCollapseRepeatedItems()
+  {
+    ParserOptions options = new ParserOptions();
+    options.setCollapseRepeatedItems(false);
+
+    assertThat(options.isCollapseRepeatedItems(), is(false));
+  }
+
+  @Test
+  public void testSetMaxDepth()
+  {
+    ParserOptions options = new ParserOptions();
+    options.setMaxDepth(0);
+
+    assertThat(options.getMaxDepth(), is(0));
+  }
+
+  @Test
+  public void testSetNegativeMaxDepth()
+  {
+    ParserOptions options = new ParserOptions();
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> options.setMaxDepth(-1),
+      "Expected setMaxDepth() to throw IllegalArgumentException for negative depth"
+    );
+
+    assertThat(exception.getMessage(), containsString("Max depth must be non-negative, got: -1"));
+  }
+
+  @Test
+  public void testSetHeaderOnly()
+  {
+    ParserOptions options = new ParserOptions();
+    options.setHeaderOnly(true);
+
+    assertThat(options.isHeaderOnly(), is(true));
+  }
+
+  @Test
+  public void testSetStructureOnly()
+  {
+    ParserOptions options = new ParserOptions();
+    options.setStructureOnly(true);
+
+    assertThat(options.isStructureOnly(), is(true));
+  }
+
+  @Test
+  public void testSetMaxValueLength()
+  {
+    ParserOptions options = new ParserOptions();
+    options.setMaxValueLength(1024);
+
+    assertThat(options.getMaxValueLength(), is(1024));
+  }
+
+  @Test
+  public void testSetNegativeMaxValueLength()
+  {
+    ParserOptions options = new ParserOptions();
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> options.setMaxValueLength(-1),
+      "Expected setMaxValueLength() to throw IllegalArgumentException for negative length"
+    );
+
+    assertThat(exception.getMessage(), containsString("Max value length must be non-negative"));
+    assertThat(exception.getMessage(), containsString("-1"));
+  }
+
+  @Test
+  public void testSetInflateBufferSize()
+  {
+    ParserOptions options = new ParserOptions();
+    assertThat(options.getInflateBufferSize(), is(InflatingInputStream.DEFAULT_BUFFER_SIZE));
+
+    options.setInflateBufferSize(512);
+    assertThat(options.getInflateBufferSize(), is(512));
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> options.setInflateBufferSize(0),
+      "Expected setInflateBufferSize() to throw IllegalArgumentException for zero size"
+    );
+
+    assertThat(exception.getMessage(), containsString("Inflate buffer size must be positive, got: 0"));
+  }
+}
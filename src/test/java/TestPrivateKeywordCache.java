@@ -0,0 +1,72 @@
+import de.famst.dicom.visualizer.KeywordTable;
+import de.famst.dicom.visualizer.PrivateKeywordCache;
+import org.dcm4che3.data.ElementDictionary;
+import org.dcm4che3.data.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Test class for PrivateKeywordCache
+ */
+public class TestPrivateKeywordCache
+{
+  private static final String CREATOR = "SIEMENS CSA HEADER";
+
+  @Test
+  public void testStandardTagsUseKeywordTable()
+  {
+    PrivateKeywordCache cache = new PrivateKeywordCache();
+    Object dataset = new Object();
+
+    assertThat(cache.keywordOf(dataset, 0, Tag.PatientName), is(KeywordTable.keywordOf(Tag.PatientName)));
+    assertThat(cache.keywordOf(dataset, 0, 0x00290010), is(KeywordTable.keywordOf(0x00290010)));
+  }
+
+  @Test
+  public void testPrivateElementResolvedThroughCreator()
+  {
+    PrivateKeywordCache cache = new PrivateKeywordCache();
+    Object dataset = new Object();
+
+    cache.addCreator(dataset, 0, 0x00290010, CREATOR + " ");
+
+    String expected = ElementDictionary.keywordOf(0x00291010, CREATOR);
+    assertThat(cache.keywordOf(dataset, 0, 0x00291010), is(expected == null ? "" : expected));
+
+    // resolved keywords are cached and returned again
+    assertThat(cache.keywordOf(dataset, 0, 0x00291010), is(cache.keywordOf(null, 0, 0x00291010)));
+  }
+
+  @Test
+  public void testCreatorsAreScopedToTheirDataset()
+  {
+    PrivateKeywordCache cache = new PrivateKeywordCache();
+    Object item = new Object();
+    Object nextItem = new Object();
+
+    cache.addCreator(item, 1, 0x00290011, CREATOR);
+
+    // another block, another dataset on the same level and another level have no creator
+    assertThat(cache.keywordOf(item, 1, 0x00291010), is(KeywordTable.keywordOf(0x00291010)));
+    assertThat(cache.keywordOf(nextItem, 1, 0x00291110), is(KeywordTable.keywordOf(0x00291110)));
+    assertThat(cache.keywordOf(item, 0, 0x00291110), is(KeywordTable.keywordOf(0x00291110)));
+    assertThat(cache.keywordOf(item, 5, 0x00291110), is(KeywordTable.keywordOf(0x00291110)));
+
+    // a creator of the next dataset on the level replaces the blocks of the previous one
+    cache.addCreator(nextItem, 1, 0x00290010, CREATOR);
+    assertThat(cache.keywordOf(item, 1, 0x00291110), is(KeywordTable.keywordOf(0x00291110)));
+  }
+
+  @Test
+  public void testNullCreatorIsIgnored()
+  {
+    PrivateKeywordCache cache = new PrivateKeywordCache();
+    Object dataset = new Object();
+
+    cache.addCreator(dataset, 0, 0x00090010, null);
+
+    assertThat(cache.keywordOf(dataset, 0, 0x00091001), is(KeywordTable.keywordOf(0x00091001)));
+  }
+}
@@ -1,9 +1,12 @@
+import de.famst.dicom.visualizer.DicomEntryTable;
+import de.famst.dicom.visualizer.LayoutEngine;
 import de.famst.dicom.visualizer.StudyDrawer;
 import org.jfree.graphics2d.svg.SVGGraphics2D;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.awt.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -156,5 +159,242 @@ public class TestStudyDrawer
     assertThat(drawer.getSeries(), is(instanceOf(java.util.Map.class)));
     assertThat(drawer.getMaxLength(), is(instanceOf(Float.class)));
   }
-}
 
+  @Test
+  public void testLoadFromZipArchive(@TempDir Path tempDir) throws Exception
+  {
+    Path folder = Files.createDirectory(tempDir.resolve("folder"));
+    DicomTestUtils.createMinimalDicomFile(folder, "one.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(folder, "two.dcm");
+    Files.writeString(folder.resolve("readme.txt"), "not a DICOM file");
+
+    Path archive = DicomTestUtils.createZipArchive(tempDir.resolve("study.zip"),
+      folder.resolve("one.dcm"), folder.resolve("two.dcm"), folder.resolve("readme.txt"));
+
+    StudyDrawer fromFolder = new StudyDrawer(folder.toString());
+    StudyDrawer fromArchive = new StudyDrawer(archive.toString());
+
+    assertThat(fromArchive.getFiles().size(), is(2));
+    assertThat(fromArchive.getFiles(), hasItem(archive.resolve("study/one.dcm")));
+    assertThat(fromArchive.getSeries().keySet(), is(fromFolder.getSeries().keySet()));
+    assertThat(fromArchive.getMaxLength(), is(fromFolder.getMaxLength()));
+  }
+
+  @Test
+  public void testLoadFromTarArchive(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    DicomTestUtils.createDicomFileWithSequence(tempDir, "two.dcm");
+
+    Path archive = DicomTestUtils.createTarArchive(tempDir.resolve("study.tar"),
+      tempDir.resolve("one.dcm"), tempDir.resolve("two.dcm"));
+
+    StudyDrawer drawer = new StudyDrawer(archive.toString());
+
+    assertThat(drawer.getFiles().size(), is(2));
+    assertThat(drawer.getSeries().values().stream().mapToInt(java.util.List::size).sum(), is(2));
+    assertThat(drawer.getMaxLength(), is(greaterThan(0.0f)));
+  }
+
+  @Test
+  public void testFilesAreParsedLazily(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(tempDir, "two.dcm");
+
+    StudyDrawer drawer = new StudyDrawer(tempDir.toString());
+
+    assertThat(drawer.getInstances().size(), is(1));
+    assertThat(drawer.getInstances().values().iterator().next().size(), is(2));
+
+    // the files are only read again for the full parse
+    Files.delete(tempDir.resolve("one.dcm"));
+
+    assertThat(drawer.getSeries().values().iterator().next().size(), is(1));
+    assertThat(drawer.getMaxLength(), is(greaterThan(0.0f)));
+  }
+
+  @Test
+  public void testOnlyDetectedFilesAreScanned(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(Files.createDirectory(tempDir.resolve("sub")), "two.dcm");
+    Files.writeString(tempDir.resolve("notes.txt"), "not a DICOM file");
+    Files.write(tempDir.resolve("short.dcm"), new byte[64]);
+
+    // links reach the same files and directories again
+    Files.createSymbolicLink(tempDir.resolve("link.dcm"), tempDir.resolve("one.dcm"));
+    Files.createLink(tempDir.resolve("hard.dcm"), tempDir.resolve("one.dcm"));
+    Files.createSymbolicLink(tempDir.resolve("sub").resolve("loop"), tempDir);
+
+    StudyDrawer drawer = new StudyDrawer(tempDir.toString());
+
+    assertThat(drawer.getFiles().size(), is(2));
+    assertThat(drawer.getInstances().values().iterator().next().size(), is(2));
+  }
+
+  @Test
+  public void testInstancesAreTakenFromDicomDir(@TempDir Path tempDir) throws Exception
+  {
+    Path dir = Files.createDirectory(tempDir.resolve("DIR1"));
+    DicomTestUtils.createMinimalDicomFile(dir, "IM1");
+    DicomTestUtils.createComprehensiveDicomFile(dir, "IM2");
+    DicomTestUtils.createDicomDir(tempDir, dir.resolve("IM1"), dir.resolve("IM2"));
+
+    // files not listed in the DICOMDIR are not walked
+    DicomTestUtils.createMinimalDicomFile(tempDir, "unlisted.dcm");
+
+    StudyDrawer drawer = new StudyDrawer(tempDir.toString());
+
+    assertThat(drawer.getFiles(), contains(dir.resolve("IM1"), dir.resolve("IM2")));
+    assertThat(drawer.getInstances().values().iterator().next().size(), is(2));
+
+    // the listed files are only read for the full parse
+    Files.delete(dir.resolve("IM1"));
+
+    assertThat(drawer.getSeries().values().iterator().next().size(), is(1));
+  }
+
+  @Test
+  public void testUnreadableDicomDirFallsBackToWalk(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    Files.writeString(tempDir.resolve("DICOMDIR"), "This is not a valid DICOMDIR");
+
+    StudyDrawer drawer = new StudyDrawer(tempDir.toString());
+
+    assertThat(drawer.getFiles(), contains(tempDir.resolve("one.dcm")));
+    assertThat(drawer.getInstances().values().iterator().next().size(), is(1));
+  }
+
+  @Test
+  public void testSetInvalidParallelism(@TempDir Path tempDir)
+  {
+    StudyDrawer drawer = new StudyDrawer(tempDir.toString());
+
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> drawer.setParallelism(0),
+      "Expected setParallelism to throw IllegalArgumentException for zero threads"
+    );
+
+    assertThat(exception.getMessage(), containsString("Parallelism must be positive, got: 0"));
+    assertThat(drawer.getParallelism(), is(StudyDrawer.DEFAULT_PARALLELISM));
+  }
+
+  @Test
+  public void testParallelParseMatchesSequentialParse(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "1.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(tempDir, "2.dcm");
+    DicomTestUtils.createMultiFrameDicomFile(tempDir, "3.dcm", 8, 4096, false);
+    DicomTestUtils.createEncapsulatedDicomFile(tempDir, "4.dcm", 4, 1024);
+    DicomTestUtils.createSeriesDicomFile(tempDir, "5.dcm", "1.2.840.113619.2.1.1.4", "1.2.840.113619.2.1.1.5");
+    Files.writeString(tempDir.resolve("6.dcm"), "not a DICOM file");
+
+    StudyDrawer sequential = new StudyDrawer(tempDir.toString());
+    sequential.setParallelism(1);
+    StudyDrawer parallel = new StudyDrawer(tempDir.toString());
+    parallel.setParallelism(4);
+
+    assertThat(parallel.getMaxLength(), is(sequential.getMaxLength()));
+    assertThat(parallel.getSeries().keySet(), is(sequential.getSeries().keySet()));
+
+    int width = (int) sequential.getMaxLength();
+    int height = 70 * sequential.getFiles().size() + 20 * sequential.getSeries().size();
+    SVGGraphics2D sequentialGraph = new SVGGraphics2D(width, height);
+    SVGGraphics2D parallelGraph = new SVGGraphics2D(width, height);
+    // the default key prefix of the definitions differs per graphics context
+    sequentialGraph.setDefsKeyPrefix("study");
+    parallelGraph.setDefsKeyPrefix("study");
+    sequential.draw(sequentialGraph);
+    parallel.draw(parallelGraph);
+
+    assertThat(parallelGraph.getSVGDocument(), is(sequentialGraph.getSVGDocument()));
+  }
+
+  @Test
+  public void testStreamingMatchesParsedDrawing(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "1.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(tempDir, "2.dcm");
+    DicomTestUtils.createMultiFrameDicomFile(tempDir, "3.dcm", 8, 4096, false);
+    DicomTestUtils.createSeriesDicomFile(tempDir, "4.dcm", "1.2.840.113619.2.1.1.4", "1.2.840.113619.2.1.1.5");
+
+    StudyDrawer parsed = new StudyDrawer(tempDir.toString());
+    StudyDrawer streamed = new StudyDrawer(tempDir.toString());
+    streamed.setStreaming(true);
+
+    assertThat(streamed.isStreaming(), is(true));
+    assertThat((double) streamed.getMaxLength(), closeTo(parsed.getMaxLength(), 1e-3));
+
+    int width = (int) parsed.getMaxLength();
+    int height = 70 * parsed.getFiles().size() + 20 * parsed.getSeries().size();
+    SVGGraphics2D parsedGraph = new SVGGraphics2D(width, height);
+    SVGGraphics2D streamedGraph = new SVGGraphics2D(width, height);
+    parsedGraph.setDefsKeyPrefix("study");
+    streamedGraph.setDefsKeyPrefix("study");
+    parsed.draw(parsedGraph);
+    streamed.draw(streamedGraph);
+
+    assertThat(streamedGraph.getSVGDocument(), is(parsedGraph.getSVGDocument()));
+  }
+
+  @Test
+  public void testInstancesAreGroupedByStructure(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "1.dcm");
+    DicomTestUtils.createSeriesDicomFile(tempDir, "2.dcm", "1.2.840.113619.2.1.1.2", "1.2.840.113619.2.1.1.6");
+    DicomTestUtils.createComprehensiveDicomFile(tempDir, "3.dcm");
+
+    StudyDrawer parsed = new StudyDrawer(tempDir.toString());
+    assertThat(parsed.getHeight(), is(20 + 3 * 70));
+
+    parsed.setGroupByStructure(true);
+    StudyDrawer streamed = new StudyDrawer(tempDir.toString());
+    streamed.setGroupByStructure(true);
+    streamed.setStreaming(true);
+
+    // the two minimal files share one drawing, the comprehensive file is drawn on its own
+    assertThat(parsed.isGroupByStructure(), is(true));
+    assertThat(parsed.getHeight(), is(20 + 2 * 70));
+    assertThat(streamed.getHeight(), is(parsed.getHeight()));
+
+    int width = (int) parsed.getMaxLength();
+    SVGGraphics2D parsedGraph = new SVGGraphics2D(width, parsed.getHeight());
+    SVGGraphics2D streamedGraph = new SVGGraphics2D(width, parsed.getHeight());
+    parsedGraph.setDefsKeyPrefix("study");
+    streamedGraph.setDefsKeyPrefix("study");
+    parsed.draw(parsedGraph);
+    streamed.draw(streamedGraph);
+
+    assertThat(parsedGraph.getSVGDocument(), containsString("2 instances"));
+    assertThat(streamedGraph.getSVGDocument(), is(parsedGraph.getSVGDocument()));
+  }
+
+  @Test
+  public void testStudyIsLaidOutOverCommonRange(@TempDir Path tempDir) throws Exception
+  {
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    DicomTestUtils.createComprehensiveDicomFile(tempDir, "two.dcm");
+
+    StudyDrawer drawer = new StudyDrawer(tempDir.toString());
+
+    // equal lengths get equal scaled lengths in all instances of the study
+    java.util.Map<Integer, Float> scaled = new java.util.HashMap<>();
+    drawer.getSeries().values().forEach(parsers -> parsers.forEach(parser -> {
+      DicomEntryTable entries = parser.getEntries();
+      for (int row = 0; row < entries.size(); row++)
+      {
+        Float previous = scaled.putIfAbsent(entries.getLength(row), entries.getLogLength(row));
+        if (previous != null)
+        {
+          assertThat(entries.getLogLength(row), is(previous));
+        }
+      }
+    }));
+
+    assertThat(scaled.size(), is(greaterThan(1)));
+    assertThat((double) java.util.Collections.max(scaled.values()), closeTo(LayoutEngine.MAX_SCALED_LENGTH, 1e-4));
+  }
+}
@@ -0,0 +1,148 @@
+import de.famst.dicom.visualizer.ParserOptions;
+import de.famst.dicom.visualizer.StudyWatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for StudyWatcher
+ */
+public class TestStudyWatcher
+{
+  private static final String SERIES_A = "1.2.840.113619.2.1.1.2";
+  private static final String SERIES_B = "1.2.840.113619.2.1.1.4";
+  private static final long QUIET_MILLIS = 100;
+
+  @Test
+  public void testConstructorWithInvalidArguments(@TempDir Path tempDir) throws Exception
+  {
+    Path output = tempDir.resolve("study.svg");
+    ParserOptions options = new ParserOptions();
+
+    assertThrows(IllegalArgumentException.class, () -> new StudyWatcher(null, output, options, null));
+    assertThrows(IllegalArgumentException.class, () -> new StudyWatcher(tempDir, null, options, null));
+    assertThrows(IllegalArgumentException.class, () -> new StudyWatcher(tempDir, output, null, null));
+
+    DicomTestUtils.createMinimalDicomFile(tempDir, "one.dcm");
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new StudyWatcher(tempDir.resolve("one.dcm"), output, options, null),
+      "Expected constructor to throw IllegalArgumentException for a file"
+    );
+    assertThat(exception.getMessage(), containsString("Watched path must be a directory"));
+
+    exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> new StudyWatcher(tempDir, output, options, null, -1),
+      "Expected constructor to throw IllegalArgumentException for a negative quiet time"
+    );
+    assertThat(exception.getMessage(), containsString("Quiet time must be non-negative, got: -1"));
+  }
+
+  @Test
+  public void testLoadDrawsAllSeries(@TempDir Path tempDir) throws Exception
+  {
+    Path study = createStudy(tempDir);
+    Path output = tempDir.resolve("study.svg");
+
+    try (StudyWatcher watcher = new StudyWatcher(study, output, new ParserOptions(), null, QUIET_MILLIS))
+    {
+      watcher.load();
+
+      assertThat(watcher.getRenderedSeries(), is(2));
+      assertThat(watcher.getSeries().keySet(), contains(SERIES_A, SERIES_B));
+      assertThat(watcher.getSeries().get(SERIES_A).size(), is(2));
+
+      String svg = Files.readString(output);
+      assertThat(svg, containsString(SERIES_A));
+      assertThat(svg, containsString(SERIES_B));
+    }
+  }
+
+  @Test
+  public void testNewInstanceDrawsOnlyItsSeries(@TempDir Path tempDir) throws Exception
+  {
+    Path study = createStudy(tempDir);
+    Path output = tempDir.resolve("study.svg");
+
+    try (StudyWatcher watcher = new StudyWatcher(study, output, new ParserOptions(), null, QUIET_MILLIS))
+    {
+      watcher.load();
+
+      DicomTestUtils.createSeriesDicomFile(study, "b2.dcm", SERIES_B, "1.2.840.113619.2.1.1.6");
+      Files.writeString(study.resolve("notes.txt"), "not a DICOM file");
+
+      assertThat(watcher.update(10, TimeUnit.SECONDS), is(1));
+      assertThat(watcher.getRenderedSeries(), is(1));
+      assertThat(watcher.getSeries().get(SERIES_B).size(), is(2));
+    }
+  }
+
+  @Test
+  public void testRemovedInstancesAreDropped(@TempDir Path tempDir) throws Exception
+  {
+    Path study = createStudy(tempDir);
+    Path output = tempDir.resolve("study.svg");
+
+    try (StudyWatcher watcher = new StudyWatcher(study, output, new ParserOptions(), null, QUIET_MILLIS))
+    {
+      watcher.load();
+
+      Files.delete(study.resolve("b1.dcm"));
+
+      assertThat(watcher.update(10, TimeUnit.SECONDS), is(1));
+      assertThat(watcher.getRenderedSeries(), is(0));
+      assertThat(watcher.getSeries().keySet(), contains(SERIES_A));
+      assertThat(Files.readString(output), not(containsString(SERIES_B)));
+    }
+  }
+
+  @Test
+  public void testNewDirectoriesAreWatched(@TempDir Path tempDir) throws Exception
+  {
+    Path study = createStudy(tempDir);
+    Path output = tempDir.resolve("study.svg");
+
+    try (StudyWatcher watcher = new StudyWatcher(study, output, new ParserOptions(), null, QUIET_MILLIS))
+    {
+      watcher.load();
+
+      Path sub = Files.createDirectory(study.resolve("sub"));
+      DicomTestUtils.createSeriesDicomFile(sub, "b2.dcm", SERIES_B, "1.2.840.113619.2.1.1.6");
+      awaitInstances(watcher, SERIES_B, 2);
+
+      // files created later are reported by the new directory itself
+      DicomTestUtils.createSeriesDicomFile(sub, "b3.dcm", SERIES_B, "1.2.840.113619.2.1.1.7");
+      awaitInstances(watcher, SERIES_B, 3);
+    }
+  }
+
+  /**
+   * Creates a study of two series, with two instances of series A and one of series B.
+   */
+  private static Path createStudy(Path tempDir) throws Exception
+  {
+    Path study = Files.createDirectory(tempDir.resolve("study"));
+    DicomTestUtils.createMinimalDicomFile(study, "a1.dcm");
+    DicomTestUtils.createSeriesDicomFile(study, "a2.dcm", SERIES_A, "1.2.840.113619.2.1.1.8");
+    DicomTestUtils.createSeriesDicomFile(study, "b1.dcm", SERIES_B, "1.2.840.113619.2.1.1.5");
+    return study;
+  }
+
+  private static void awaitInstances(StudyWatcher watcher, String seriesUID, int count) throws Exception
+  {
+    for (int i = 0; i < 10 && watcher.getSeries().get(seriesUID).size() < count; i++)
+    {
+      watcher.update(1, TimeUnit.SECONDS);
+    }
+
+    assertThat(watcher.getSeries().get(seriesUID).size(), is(count));
+  }
+}
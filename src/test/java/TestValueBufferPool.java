@@ -0,0 +1,86 @@
+import de.famst.dicom.visualizer.ValueBufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ValueBufferPool
+ */
+public class TestValueBufferPool
+{
+  @Test
+  public void testAcquireReturnsRequestedLength()
+  {
+    byte[] buffer = ValueBufferPool.get().acquire(1000);
+
+    assertThat(buffer.length, is(greaterThanOrEqualTo(1000)));
+  }
+
+  @Test
+  public void testAcquireReusesBuffer()
+  {
+    ValueBufferPool pool = ValueBufferPool.get();
+
+    byte[] first = pool.acquire(100);
+    byte[] second = pool.acquire(50);
+
+    assertSame(first, second);
+  }
+
+  @Test
+  public void testPoolIsThreadConfined() throws Exception
+  {
+    ValueBufferPool[] other = new ValueBufferPool[1];
+    Thread thread = new Thread(() -> other[0] = ValueBufferPool.get());
+    thread.start();
+    thread.join();
+
+    assertNotSame(ValueBufferPool.get(), other[0]);
+  }
+
+  @Test
+  public void testLargeBufferIsNotRetained()
+  {
+    ValueBufferPool pool = ValueBufferPool.get();
+
+    byte[] large = pool.acquire(ValueBufferPool.MAX_POOLED_LENGTH + 1);
+    byte[] small = pool.acquire(10);
+
+    assertThat(large.length, is(ValueBufferPool.MAX_POOLED_LENGTH + 1));
+    assertNotSame(large, small);
+  }
+
+  @Test
+  public void testAcquireNegativeLength()
+  {
+    IllegalArgumentException exception = assertThrows(
+      IllegalArgumentException.class,
+      () -> ValueBufferPool.get().acquire(-1),
+      "Expected acquire() to throw IllegalArgumentException for negative length"
+    );
+
+    assertThat(exception.getMessage(), containsString("Length must be non-negative"));
+  }
+
+  @Test
+  public void testDecodeAsciiRemovesPadding()
+  {
+    byte[] uid = "1.2.3\0".getBytes(StandardCharsets.US_ASCII);
+    byte[] modality = " CT ".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(ValueBufferPool.decodeAscii(uid, uid.length), is("1.2.3"));
+    assertThat(ValueBufferPool.decodeAscii(modality, modality.length), is("CT"));
+  }
+
+  @Test
+  public void testDecodeAsciiUsesGivenLength()
+  {
+    byte[] buffer = "1.2.3.4.5".getBytes(StandardCharsets.US_ASCII);
+
+    assertThat(ValueBufferPool.decodeAscii(buffer, 5), is("1.2.3"));
+  }
+}